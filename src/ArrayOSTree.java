@@ -0,0 +1,349 @@
+import java.util.Arrays;
+
+/**
+ * An OS tree that keeps its nodes in parallel arrays instead of node objects.
+ * A node is the index of its slot, deleted slots are kept in a free list and reused.
+ */
+public class ArrayOSTree {
+
+	// Index of the empty node, its slot is never used so its size stays 0
+	public static final int NIL = 0;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int[] keys;
+	private int[] sizes;
+	private int[] lefts;
+	private int[] rights;
+	private Object[] data;
+
+	private int root;
+
+	// Next slot that was never used, and the head of the list of freed slots (linked through lefts)
+	private int nextSlot;
+	private int freeHead;
+
+	/**
+	 * Constructor for an array OS tree
+	 */
+	public ArrayOSTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor for an array OS tree with room for a given number of nodes
+	 * @param capacity
+	 */
+	public ArrayOSTree(int capacity) {
+		capacity = Math.max(capacity, 1) + 1;
+		keys = new int[capacity];
+		sizes = new int[capacity];
+		lefts = new int[capacity];
+		rights = new int[capacity];
+		data = new Object[capacity];
+		root = NIL;
+		nextSlot = 1;
+		freeHead = NIL;
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return sizes[root];
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	public int insert (int key, Object data) {
+
+		int node = allocate(key, data);
+
+		if (isEmpty()) {
+			root = node;
+			return node;
+		}
+
+		// Go down to the place of the new node and increase the size of every node on the way
+		int tempNode = root;
+		int tempFather = tempNode;
+		while (tempNode != NIL) {
+			tempFather = tempNode;
+			sizes[tempNode]++;
+			if (keys[tempNode] < key) {
+				tempNode = rights[tempNode];
+			} else {
+				tempNode = lefts[tempNode];
+			}
+		}
+
+		// Insert the node in its right place
+		if (key > keys[tempFather]) {
+			rights[tempFather] = node;
+		} else {
+			lefts[tempFather] = node;
+		}
+		return node;
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (int key) {
+
+		if (find(key) == NIL) {
+			return false;
+		}
+
+		// Go down to the node and decrease the size of every node on the way
+		int tempNode = root;
+		int tempFather = NIL;
+		while (keys[tempNode] != key) {
+			sizes[tempNode]--;
+			tempFather = tempNode;
+			if (key < keys[tempNode]) {
+				tempNode = lefts[tempNode];
+			} else {
+				tempNode = rights[tempNode];
+			}
+		}
+
+		// Case 2: node has two children, the successor's key and data move into the node
+		// and the successor is taken out instead
+		if (lefts[tempNode] != NIL && rights[tempNode] != NIL) {
+			int node = tempNode;
+			sizes[node]--;
+			tempFather = node;
+			tempNode = rights[node];
+			while (lefts[tempNode] != NIL) {
+				sizes[tempNode]--;
+				tempFather = tempNode;
+				tempNode = lefts[tempNode];
+			}
+			keys[node] = keys[tempNode];
+			data[node] = data[tempNode];
+		}
+
+		// Case 1: node has at most one child, the child takes its place
+		int child = lefts[tempNode] != NIL ? lefts[tempNode] : rights[tempNode];
+		if (tempFather == NIL) {
+			root = child;
+		} else if (lefts[tempFather] == tempNode) {
+			lefts[tempFather] = child;
+		} else {
+			rights[tempFather] = child;
+		}
+
+		free(tempNode);
+		return true;
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or NIL if key wasn't found
+	 */
+	public int find (int key) {
+		int tempNode = root;
+		while (tempNode != NIL && keys[tempNode] != key) {
+			if (key < keys[tempNode]) {
+				tempNode = lefts[tempNode];
+			} else {
+				tempNode = rights[tempNode];
+			}
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or NIL if the tree is empty
+	 */
+	public int findMin() {
+		int tempNode = root;
+		while (tempNode != NIL && lefts[tempNode] != NIL) {
+			tempNode = lefts[tempNode];
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or NIL if the tree is empty
+	 */
+	public int findMax() {
+		int tempNode = root;
+		while (tempNode != NIL && rights[tempNode] != NIL) {
+			tempNode = rights[tempNode];
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the node with the smallest key bigger than the key of a given node
+	 * @param node
+	 * @return the successor or NIL if there is none
+	 */
+	public int successor (int node) {
+		int key = keys[node];
+		int found = NIL;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (key < keys[tempNode]) {
+				found = tempNode;
+				tempNode = lefts[tempNode];
+			} else {
+				tempNode = rights[tempNode];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find and return the node with the biggest key smaller than the key of a given node
+	 * @param node
+	 * @return the predecessor or NIL if there is none
+	 */
+	public int predecessor (int node) {
+		int key = keys[node];
+		int found = NIL;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (keys[tempNode] < key) {
+				found = tempNode;
+				tempNode = rights[tempNode];
+			} else {
+				tempNode = lefts[tempNode];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or NIL if there is no such node
+	 */
+	public int select (int i) {
+		int tempNode = root;
+		while (tempNode != NIL) {
+			int leftSize = sizes[lefts[tempNode]];
+			if (i <= leftSize) {
+				tempNode = lefts[tempNode];
+			} else if (i == leftSize + 1) {
+				return tempNode;
+			} else {
+				i -= leftSize + 1;
+				tempNode = rights[tempNode];
+			}
+		}
+		return NIL;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		int counter = 0;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (keys[tempNode] <= key) {
+				counter += sizes[lefts[tempNode]] + 1;
+				tempNode = rights[tempNode];
+			} else {
+				tempNode = lefts[tempNode];
+			}
+		}
+		return counter;
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	public int getKey (int node) {
+		return keys[node];
+	}
+
+	public Object getData (int node) {
+		return data[node];
+	}
+
+	public void setData (int node, Object data) {
+		this.data[node] = data;
+	}
+
+	public int getSize (int node) {
+		return sizes[node];
+	}
+
+	public int getLeft (int node) {
+		return lefts[node];
+	}
+
+	public int getRight (int node) {
+		return rights[node];
+	}
+
+	/**
+	 * Take a slot from the free list, or a new one if the list is empty, and fill it as a leaf
+	 */
+	private int allocate (int key, Object data) {
+		int node;
+		if (freeHead != NIL) {
+			node = freeHead;
+			freeHead = lefts[node];
+		} else {
+			if (nextSlot == keys.length) {
+				grow();
+			}
+			node = nextSlot++;
+		}
+		keys[node] = key;
+		sizes[node] = 1;
+		lefts[node] = NIL;
+		rights[node] = NIL;
+		this.data[node] = data;
+		return node;
+	}
+
+	/**
+	 * Return a slot to the free list
+	 */
+	private void free (int node) {
+		sizes[node] = 0;
+		rights[node] = NIL;
+		data[node] = null;
+		lefts[node] = freeHead;
+		freeHead = node;
+	}
+
+	/**
+	 * Make room for more nodes in all the arrays
+	 */
+	private void grow() {
+		int capacity = keys.length + (keys.length >> 1) + 1;
+		keys = Arrays.copyOf(keys, capacity);
+		sizes = Arrays.copyOf(sizes, capacity);
+		lefts = Arrays.copyOf(lefts, capacity);
+		rights = Arrays.copyOf(rights, capacity);
+		data = Arrays.copyOf(data, capacity);
+	}
+}
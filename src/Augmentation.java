@@ -0,0 +1,28 @@
+/**
+ * A value kept for every subtree of an AugmentedOSTree, such as a sum or a maximum.
+ * The values of subtrees are combined like a monoid: combine must be associative
+ * and identity must not change a value it is combined with.
+ * The value of a subtree is combine(combine(left, of(node)), right).
+ *
+ * @param <A> the type of the value
+ */
+public interface Augmentation<A> {
+
+	/**
+	 * return the value of an empty subtree
+	 */
+	A identity();
+
+	/**
+	 * return the value of a single node
+	 * @param node
+	 */
+	A of (OSTreeNode node);
+
+	/**
+	 * return the value of two neighbouring subtrees, the left one holds the smaller keys
+	 * @param left
+	 * @param right
+	 */
+	A combine (A left, A right);
+}
@@ -0,0 +1,72 @@
+/**
+ * Common augmentations over node data that holds numbers.
+ * Nodes with no data count as 0 for the sum and are skipped by min and max.
+ */
+public class Augmentations {
+
+	private Augmentations() {
+	}
+
+	/**
+	 * return an augmentation that sums the data of the nodes as longs
+	 */
+	public static Augmentation<Long> sum() {
+		return new Augmentation<Long>() {
+			public Long identity() {
+				return 0L;
+			}
+			public Long of (OSTreeNode node) {
+				return node.getData() == null ? 0L : ((Number) node.getData()).longValue();
+			}
+			public Long combine (Long left, Long right) {
+				return left + right;
+			}
+		};
+	}
+
+	/**
+	 * return an augmentation that keeps the biggest data of the nodes as a long, null if there is none
+	 */
+	public static Augmentation<Long> max() {
+		return new Augmentation<Long>() {
+			public Long identity() {
+				return null;
+			}
+			public Long of (OSTreeNode node) {
+				return node.getData() == null ? null : ((Number) node.getData()).longValue();
+			}
+			public Long combine (Long left, Long right) {
+				if (left == null) {
+					return right;
+				}
+				if (right == null) {
+					return left;
+				}
+				return Math.max(left, right);
+			}
+		};
+	}
+
+	/**
+	 * return an augmentation that keeps the smallest data of the nodes as a long, null if there is none
+	 */
+	public static Augmentation<Long> min() {
+		return new Augmentation<Long>() {
+			public Long identity() {
+				return null;
+			}
+			public Long of (OSTreeNode node) {
+				return node.getData() == null ? null : ((Number) node.getData()).longValue();
+			}
+			public Long combine (Long left, Long right) {
+				if (left == null) {
+					return right;
+				}
+				if (right == null) {
+					return left;
+				}
+				return Math.min(left, right);
+			}
+		};
+	}
+}
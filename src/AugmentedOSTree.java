@@ -0,0 +1,171 @@
+/**
+ * A red-black OS tree that keeps the value of an Augmentation for every subtree.
+ * The values are fixed on every insert, delete and rotation, so a range of keys
+ * can be aggregated by visiting O(log n) nodes.
+ * All nodes in the tree must be AugmentedOSTreeNodes.
+ *
+ * @param <A> the type of the aggregated value
+ */
+public class AugmentedOSTree<A> extends RBOSTree {
+
+	private final Augmentation<A> augmentation;
+
+	/**
+	 * Constructor for an augmented OS tree
+	 * @param augmentation the value to keep for every subtree
+	 */
+	public AugmentedOSTree(Augmentation<A> augmentation) {
+		super();
+		this.augmentation = augmentation;
+	}
+
+	/**
+	 * Insert a new node with the given key and data
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	public AugmentedOSTreeNode<A> insert (int key, Object data) {
+		AugmentedOSTreeNode<A> node = newNode(key, data);
+		insert(node);
+		return node;
+	}
+
+	/**
+	 * Fix the values above a node after its data was changed
+	 * @param node
+	 */
+	public void update (AugmentedOSTreeNode<A> node) {
+		updatePath(node);
+	}
+
+	/**
+	 * return the value of the whole tree
+	 */
+	public A aggregate() {
+		return aggregateOf(getRoot());
+	}
+
+	/**
+	 * return the value of the nodes with a key in [lo, hi], combined in key order
+	 * @param lo
+	 * @param hi
+	 * @return the combined value or the identity if there are no such nodes
+	 */
+	public A aggregate (int lo, int hi) {
+
+		// Go down to the first node inside the range, the two bounds split there
+		AugmentedOSTreeNode<A> tempNode = getRoot();
+		while (tempNode != null && (tempNode.getKey() < lo || tempNode.getKey() > hi)) {
+			if (tempNode.getKey() < lo) {
+				tempNode = tempNode.getRight();
+			} else {
+				tempNode = tempNode.getLeft();
+			}
+		}
+		if (tempNode == null || lo > hi) {
+			return augmentation.identity();
+		}
+
+		A value = augmentation.combine(atLeast(tempNode.getLeft(), lo), augmentation.of(tempNode));
+		return augmentation.combine(value, atMost(tempNode.getRight(), hi));
+	}
+
+	/**
+	 * return the value of the nodes in a subtree with a key of at least lo
+	 */
+	private A atLeast (AugmentedOSTreeNode<A> node, int lo) {
+		A value = augmentation.identity();
+
+		// Going up the right side of the result: every node inside the range adds itself and its right subtree
+		while (node != null) {
+			if (node.getKey() >= lo) {
+				A right = augmentation.combine(augmentation.of(node), aggregateOf(node.getRight()));
+				value = augmentation.combine(right, value);
+				node = node.getLeft();
+			} else {
+				node = node.getRight();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * return the value of the nodes in a subtree with a key of at most hi
+	 */
+	private A atMost (AugmentedOSTreeNode<A> node, int hi) {
+		A value = augmentation.identity();
+
+		// Every node inside the range adds its left subtree and itself
+		while (node != null) {
+			if (node.getKey() <= hi) {
+				A left = augmentation.combine(aggregateOf(node.getLeft()), augmentation.of(node));
+				value = augmentation.combine(value, left);
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Compute the values of a node and all nodes above it
+	 */
+	protected void updatePath (OSTreeNode node) {
+		while (node != null) {
+			recompute(node);
+			node = node.getFather();
+		}
+	}
+
+	/**
+	 * Compute the values of all the nodes of a subtree, children before their father
+	 */
+	protected void updateSubtree (OSTreeNode node) {
+		if (node != null) {
+			updateSubtree(node.getLeft());
+			updateSubtree(node.getRight());
+			recompute(node);
+		}
+	}
+
+	/**
+	 * Nodes added by insertAll must carry a value too
+	 */
+	protected AugmentedOSTreeNode<A> newNode (int key, Object data) {
+		return new AugmentedOSTreeNode<A>(key, data);
+	}
+
+	/**
+	 * Return a new empty tree with the same augmentation
+	 */
+	protected RBOSTree newEmptyTree() {
+		return new AugmentedOSTree<A>(augmentation);
+	}
+
+	/**
+	 * Fix the sizes and then the values of the two nodes that took part in a rotation
+	 */
+	protected void updateAfterRotation (SearchTreeNode lower, SearchTreeNode upper) {
+		super.updateAfterRotation(lower, upper);
+		recompute((OSTreeNode) lower);
+		recompute((OSTreeNode) upper);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void recompute (OSTreeNode node) {
+		AugmentedOSTreeNode<A> augmentedNode = (AugmentedOSTreeNode<A>) node;
+		A value = augmentation.combine(aggregateOf(augmentedNode.getLeft()), augmentation.of(node));
+		augmentedNode.aggregate = augmentation.combine(value, aggregateOf(augmentedNode.getRight()));
+	}
+
+	private A aggregateOf (AugmentedOSTreeNode<A> node) {
+		return node == null ? augmentation.identity() : node.aggregate;
+	}
+
+	@SuppressWarnings("unchecked")
+	public AugmentedOSTreeNode<A> getRoot() {
+		return (AugmentedOSTreeNode<A>) super.getRoot();
+	}
+}
@@ -0,0 +1,33 @@
+public class AugmentedOSTreeNode<A> extends OSTreeNode {
+	A aggregate;
+
+	public AugmentedOSTreeNode(int key, Object data) {
+		super(key, data);
+	}
+
+	public AugmentedOSTreeNode(int key) {
+		super(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	public AugmentedOSTreeNode<A> getFather() {
+		return (AugmentedOSTreeNode<A>) super.getFather();
+	}
+
+	@SuppressWarnings("unchecked")
+	public AugmentedOSTreeNode<A> getLeft() {
+		return (AugmentedOSTreeNode<A>) super.getLeft();
+	}
+
+	@SuppressWarnings("unchecked")
+	public AugmentedOSTreeNode<A> getRight() {
+		return (AugmentedOSTreeNode<A>) super.getRight();
+	}
+
+	/**
+	 * return the value of the augmentation for the subtree of this node
+	 */
+	public A getAggregate() {
+		return aggregate;
+	}
+}
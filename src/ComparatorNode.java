@@ -0,0 +1,37 @@
+/**
+ * The OSTreeNode a ComparatorOSTree keeps in its red-black tree.
+ * The int key of an OSTreeNode is not used, getKey throws so it can't be taken for the object key.
+ *
+ * @param <K> the type of the key
+ */
+final class ComparatorNode<K> extends OSTreeNode implements ComparatorOSTreeNode<K> {
+	final K objectKey;
+
+	ComparatorNode(K key, Object data) {
+		super(0, data);
+		this.objectKey = key;
+	}
+
+	public K getObjectKey() {
+		return objectKey;
+	}
+
+	public int getKey() {
+		throw new UnsupportedOperationException("The key of a ComparatorOSTreeNode is an object, use getObjectKey");
+	}
+
+	@SuppressWarnings("unchecked")
+	public ComparatorNode<K> getFather() {
+		return (ComparatorNode<K>) super.getFather();
+	}
+
+	@SuppressWarnings("unchecked")
+	public ComparatorNode<K> getLeft() {
+		return (ComparatorNode<K>) super.getLeft();
+	}
+
+	@SuppressWarnings("unchecked")
+	public ComparatorNode<K> getRight() {
+		return (ComparatorNode<K>) super.getRight();
+	}
+}
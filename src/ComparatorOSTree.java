@@ -0,0 +1,262 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * A red-black OS tree whose keys are objects, ordered by a Comparator
+ * or by their natural order. Equal keys go left, the same way OSTree places them.
+ * The nodes are kept and rebalanced by an RBOSTree, so split and join are O(log n)
+ * and the batch operations rebuild the tree the same way they do there.
+ *
+ * @param <K> the type of the keys
+ */
+public class ComparatorOSTree<K> extends KeyedOSTree<ComparatorNode<K>, ComparatorOSTreeNode<K>> {
+
+	private final Comparator<? super K> comparator;
+
+	/**
+	 * Constructor for a tree of keys in their natural order, the keys must be Comparable
+	 */
+	public ComparatorOSTree() {
+		this(null);
+	}
+
+	/**
+	 * Constructor for a tree of keys in the order of a comparator
+	 * @param comparator the order of the keys, or null for their natural order
+	 */
+	public ComparatorOSTree(Comparator<? super K> comparator) {
+		this(new RBOSTree(), comparator);
+	}
+
+	private ComparatorOSTree(RBOSTree tree, Comparator<? super K> comparator) {
+		super(tree);
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	public ComparatorOSTreeNode<K> insert (K key, Object data) {
+		ComparatorNode<K> node = newNode(key, data);
+
+		// Go down to the place of the new node and increase the size of every node on the way
+		ComparatorNode<K> tempNode = root();
+		ComparatorNode<K> tempFather = null;
+		boolean right = false;
+		while (tempNode != null) {
+			tempFather = tempNode;
+			tempNode.size++;
+			right = compare(tempNode.objectKey, key) < 0;
+			tempNode = right ? tempNode.getRight() : tempNode.getLeft();
+		}
+		insertAt(node, tempFather, right);
+		return node;
+	}
+
+	/**
+	 * Insert a batch of keys to the tree, a big batch is merged in and the tree linked again
+	 * @param keys the keys, in any order
+	 * @param data the data of every key or null for no data
+	 */
+	public void insertAll (K[] keys, Object[] data) {
+		if (data != null && data.length != keys.length) {
+			throw new IllegalArgumentException("Got " + keys.length + " keys but " + data.length + " data items");
+		}
+		@SuppressWarnings("unchecked")
+		ComparatorNode<K>[] nodes = (ComparatorNode<K>[]) new ComparatorNode<?>[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			nodes[i] = newNode(keys[i], data == null ? null : data[i]);
+		}
+		insertBatch(nodes);
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (K key) {
+		ComparatorOSTreeNode<K> node = find(key);
+		if (node == null) {
+			return false;
+		}
+		delete(node);
+		return true;
+	}
+
+	/**
+	 * Delete a given node from the tree and rebalance it, the node itself is unlinked
+	 * @param node
+	 */
+	public void delete (ComparatorOSTreeNode<K> node) {
+		deleteNode(node);
+	}
+
+	/**
+	 * Delete one node for every key of a batch, keys that are not in the tree are skipped
+	 * @param keys the keys, in any order
+	 * @return the number of nodes deleted
+	 */
+	public int deleteAll (K[] keys) {
+		@SuppressWarnings("unchecked")
+		ComparatorNode<K>[] probes = (ComparatorNode<K>[]) new ComparatorNode<?>[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			probes[i] = newNode(keys[i], null);
+		}
+		Arrays.sort(probes, new Comparator<ComparatorNode<K>>() {
+			public int compare (ComparatorNode<K> a, ComparatorNode<K> b) {
+				return ComparatorOSTree.this.compare(a, b);
+			}
+		});
+		return deleteBatch(probes);
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public ComparatorOSTreeNode<K> find (K key) {
+		ComparatorNode<K> tempNode = root();
+		while (tempNode != null) {
+			int comparison = compare(key, tempNode.objectKey);
+			if (comparison == 0) {
+				return tempNode;
+			}
+			tempNode = comparison < 0 ? tempNode.getLeft() : tempNode.getRight();
+		}
+		return null;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (K key) {
+		return countBelow(key, true);
+	}
+
+	/**
+	 * return the rank of a node
+	 * @param node
+	 * @return the rank of the node
+	 */
+	public int rank (ComparatorOSTreeNode<K> node) {
+		return rankOf(node);
+	}
+
+	/**
+	 * return the number of nodes with a key in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 * @return the number of nodes with lo <= key <= hi
+	 */
+	public int countInRange (K lo, K hi) {
+		if (compare(lo, hi) > 0) {
+			return 0;
+		}
+		return countBelow(hi, true) - countBelow(lo, false);
+	}
+
+	/**
+	 * return the nodes with a key in [lo, hi] in key order.
+	 * The nodes are found one by one while iterating, the tree must not change meanwhile.
+	 * @param lo
+	 * @param hi
+	 * @return the nodes with lo <= key <= hi
+	 */
+	public Iterable<ComparatorOSTreeNode<K>> range (K lo, K hi) {
+		if (compare(lo, hi) > 0) {
+			return between(1, 0);
+		}
+		return between(countBelow(lo, false) + 1, countBelow(hi, true));
+	}
+
+	/**
+	 * return an iterator over the nodes with a key bigger than or equal to the given key, in key order
+	 * @param fromKey
+	 */
+	public Iterator<ComparatorOSTreeNode<K>> iterator (K fromKey) {
+		int from = countBelow(fromKey, false);
+		return walk(select(from + 1), false, size() - from);
+	}
+
+	/**
+	 * return an iterator over the nodes with a key smaller than or equal to the given key,
+	 * from the biggest key to the smallest
+	 * @param fromKey
+	 */
+	public Iterator<ComparatorOSTreeNode<K>> descendingIterator (K fromKey) {
+		int to = countBelow(fromKey, true);
+		return walk(select(to), true, to);
+	}
+
+	/**
+	 * Move all the nodes with a key bigger than the given key to a new tree with the same comparator.
+	 * This tree keeps the nodes with a key smaller than or equal to the key. The work is O(log n).
+	 * @param key
+	 * @return a tree with the nodes bigger than key
+	 */
+	public ComparatorOSTree<K> split (K key) {
+		return new ComparatorOSTree<K>(tree.splitAfter(rank(key)), comparator);
+	}
+
+	/**
+	 * Move all the nodes of a given tree to the end of this tree.
+	 * Every key in the given tree must be bigger than or equal to every key in this tree,
+	 * in the order of this tree. The given tree is left empty. The work is O(log n).
+	 * @param right
+	 */
+	public void join (ComparatorOSTree<K> right) {
+		append(right);
+	}
+
+	/**
+	 * return the comparator of the keys, or null if they are in their natural order
+	 */
+	public Comparator<? super K> comparator() {
+		return comparator;
+	}
+
+	int compare (ComparatorNode<K> a, ComparatorNode<K> b) {
+		return compare(a.objectKey, b.objectKey);
+	}
+
+	private static <K> ComparatorNode<K> newNode (K key, Object data) {
+		if (key == null) {
+			throw new NullPointerException("Keys can't be null");
+		}
+		return new ComparatorNode<K>(key, data);
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than the given key, or equal to it too
+	 */
+	private int countBelow (K key, boolean inclusive) {
+		int counter = 0;
+		ComparatorNode<K> tempNode = root();
+		while (tempNode != null) {
+			int comparison = compare(tempNode.objectKey, key);
+			if (comparison < 0 || (inclusive && comparison == 0)) {
+				counter += OSTree.size(tempNode.getLeft()) + 1;
+				tempNode = tempNode.getRight();
+			} else {
+				tempNode = tempNode.getLeft();
+			}
+		}
+		return counter;
+	}
+
+	@SuppressWarnings("unchecked")
+	private int compare (K a, K b) {
+		if (comparator != null) {
+			return comparator.compare(a, b);
+		}
+		return ((Comparable<? super K>) a).compareTo(b);
+	}
+}
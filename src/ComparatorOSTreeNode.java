@@ -0,0 +1,20 @@
+/**
+ * A node of a ComparatorOSTree, its key is any object.
+ * It is not an OSTreeNode, so its key can't be taken for the int key of one.
+ *
+ * @param <K> the type of the key
+ */
+public interface ComparatorOSTreeNode<K> {
+
+	K getObjectKey();
+
+	Object getData();
+
+	void setData(Object data);
+
+	ComparatorOSTreeNode<K> getFather();
+
+	ComparatorOSTreeNode<K> getLeft();
+
+	ComparatorOSTreeNode<K> getRight();
+}
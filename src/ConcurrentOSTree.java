@@ -0,0 +1,452 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An OS tree that can be used by many threads at once.
+ *
+ * The top of the tree is a layer of stripes split by key ranges, and every stripe holds
+ * a subtree of its own: a PersistentOSTree, which never changes once it is made, and a lock.
+ * A writer locks only the stripe of its key, builds the next version of that subtree,
+ * which copies only the changed path, and publishes it. Writers of different stripes never
+ * wait for each other or touch the same memory, and writers of the same stripe wait for
+ * the lock instead of copying a path that another writer would make stale.
+ *
+ * Readers never lock. An operation inside one stripe reads its subtree once. An operation that
+ * needs several stripes, such as rank, select or size, reads their versions twice and again until
+ * two reads agree: every version is a new object, so agreeing reads were all current at one moment,
+ * and the sizes an answer adds up always belong to the same state of the whole tree.
+ *
+ * The stripes are split by key, so keys that all fall in one stripe are written one thread
+ * at a time. Give split keys that spread the keys that are written the most, or let the tree
+ * choose them: the default tree splits its stripes again at the quantiles of its own keys
+ * whenever one stripe outgrows the others. The split copies every node once, after the tree
+ * got a share of new keys in proportion to its size, so it adds O(K) per insert, amortized.
+ * A split publishes a whole new layout of stripes, and writers that wait on an old stripe
+ * go to the new layout.
+ */
+public class ConcurrentOSTree {
+
+	// Stripes of the default tree once it has enough keys to split
+	private static final int DEFAULT_STRIPES = 64;
+
+	// The default tree splits its stripes again when one holds more than this many keys
+	// and more than STRIPE_SKEW times the average of the last split
+	private static final int MIN_SPLIT_SIZE = 1024;
+	private static final int STRIPE_SKEW = 2;
+
+	private volatile Layout layout;
+
+	// True for the default tree, which chooses its own split keys
+	private final boolean adaptive;
+
+	// Held by the thread that splits the stripes again
+	private final ReentrantLock splitLock = new ReentrantLock();
+
+	/**
+	 * Constructor for a concurrent OS tree that chooses its split keys from its keys.
+	 * It starts with one stripe.
+	 */
+	public ConcurrentOSTree() {
+		layout = new Layout(new int[0], new Stripe[] { new Stripe(PersistentOSTree.empty()) }, MIN_SPLIT_SIZE);
+		adaptive = true;
+	}
+
+	/**
+	 * Constructor for a concurrent OS tree with the given bounds between the stripes
+	 * @param splitKeys the first key of every stripe but the first, sorted, one less than the number of stripes
+	 */
+	public ConcurrentOSTree(int[] splitKeys) {
+		for (int i = 1; i < splitKeys.length; i++) {
+			if (splitKeys[i] <= splitKeys[i - 1]) {
+				throw new IllegalArgumentException("Split keys are not sorted at index " + i);
+			}
+		}
+		Stripe[] stripes = new Stripe[splitKeys.length + 1];
+		for (int s = 0; s < stripes.length; s++) {
+			stripes[s] = new Stripe(PersistentOSTree.empty());
+		}
+		layout = new Layout(splitKeys.clone(), stripes, Integer.MAX_VALUE);
+		adaptive = false;
+	}
+
+	/**
+	 * Return the subtrees of all the stripes in key order, as they all were at one moment.
+	 * They will not see later changes.
+	 * @return the current version of every stripe
+	 */
+	public PersistentOSTree[] snapshot() {
+		Layout layout = this.layout;
+		Version[] versions = read(layout, 0, layout.stripes.length);
+		PersistentOSTree[] trees = new PersistentOSTree[versions.length];
+		for (int s = 0; s < versions.length; s++) {
+			trees[s] = versions[s].tree;
+		}
+		return trees;
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		Layout layout = this.layout;
+		return sizeOf(read(layout, 0, layout.stripes.length), layout.stripes.length);
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param data
+	 */
+	public void insert (int key, Object data) {
+		while (true) {
+			Layout layout = this.layout;
+			Stripe stripe = layout.stripes[layout.stripeOf(key)];
+			int size;
+			stripe.lock.lock();
+			try {
+				if (stripe.retired) {
+					continue;
+				}
+				stripe.current = new Version(stripe.current.tree.insert(key, data));
+				size = stripe.current.size;
+			} finally {
+				stripe.lock.unlock();
+			}
+			if (size > layout.splitSize) {
+				splitAgain(layout);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (int key) {
+		while (true) {
+			Layout layout = this.layout;
+			Stripe stripe = layout.stripes[layout.stripeOf(key)];
+
+			// A key that is not there now is not deleted, and no lock is needed to see that
+			if (stripe.current.tree.find(key) == null) {
+				return false;
+			}
+			stripe.lock.lock();
+			try {
+				if (stripe.retired) {
+					continue;
+				}
+				PersistentOSTree tree = stripe.current.tree;
+				PersistentOSTree newTree = tree.delete(key);
+				if (newTree == tree) {
+					return false;
+				}
+				stripe.current = new Version(newTree);
+				return true;
+			} finally {
+				stripe.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public ImmutableOSTreeNode find (int key) {
+		Layout layout = this.layout;
+		return layout.stripes[layout.stripeOf(key)].current.tree.find(key);
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or null if the tree is empty
+	 */
+	public ImmutableOSTreeNode findMin() {
+		Layout layout = this.layout;
+		for (Version version : read(layout, 0, layout.stripes.length)) {
+			if (version.size > 0) {
+				return version.tree.findMin();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or null if the tree is empty
+	 */
+	public ImmutableOSTreeNode findMax() {
+		Layout layout = this.layout;
+		Version[] versions = read(layout, 0, layout.stripes.length);
+		for (int s = versions.length - 1; s >= 0; s--) {
+			if (versions[s].size > 0) {
+				return versions[s].tree.findMax();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find and return the node with the smallest key bigger than the given key
+	 * @param key
+	 * @return the successor or null if there is none
+	 */
+	public ImmutableOSTreeNode successor (int key) {
+		Layout layout = this.layout;
+		int stripe = layout.stripeOf(key);
+		ImmutableOSTreeNode node = layout.stripes[stripe].current.tree.successor(key);
+		if (node != null) {
+			return node;
+		}
+
+		// The successor is the smallest key of a later stripe, read them all at one moment
+		Version[] versions = read(layout, stripe, layout.stripes.length);
+		node = versions[0].tree.successor(key);
+		for (int s = 1; node == null && s < versions.length; s++) {
+			node = versions[s].tree.findMin();
+		}
+		return node;
+	}
+
+	/**
+	 * Find and return the node with the biggest key smaller than the given key
+	 * @param key
+	 * @return the predecessor or null if there is none
+	 */
+	public ImmutableOSTreeNode predecessor (int key) {
+		Layout layout = this.layout;
+		int stripe = layout.stripeOf(key);
+		ImmutableOSTreeNode node = layout.stripes[stripe].current.tree.predecessor(key);
+		if (node != null) {
+			return node;
+		}
+
+		// The predecessor is the biggest key of an earlier stripe, read them all at one moment
+		Version[] versions = read(layout, 0, stripe + 1);
+		node = versions[stripe].tree.predecessor(key);
+		for (int s = stripe - 1; node == null && s >= 0; s--) {
+			node = versions[s].tree.findMax();
+		}
+		return node;
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or null if there is no such node
+	 */
+	public ImmutableOSTreeNode select (int i) {
+		if (i < 1) {
+			return null;
+		}
+		Layout layout = this.layout;
+		for (Version version : read(layout, 0, layout.stripes.length)) {
+			if (i <= version.size) {
+				return version.tree.select(i);
+			}
+			i -= version.size;
+		}
+		return null;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		Layout layout = this.layout;
+		int stripe = layout.stripeOf(key);
+		Version[] versions = read(layout, 0, stripe + 1);
+		return sizeOf(versions, stripe) + versions[stripe].tree.rank(key);
+	}
+
+	/**
+	 * return the number of stripes
+	 */
+	public int stripeCount() {
+		return layout.stripes.length;
+	}
+
+	/**
+	 * Split the stripes of the default tree again at the quantiles of its keys, unless another
+	 * thread already did or is doing it. Every stripe is locked while its tree is copied, and
+	 * the old stripes are retired, so a writer that waited on one goes to the new layout.
+	 * Readers of the old layout still see one moment of the tree: its stripes never change again.
+	 */
+	private void splitAgain (Layout old) {
+		if (!adaptive || !splitLock.tryLock()) {
+			return;
+		}
+		try {
+			if (layout != old) {
+				return;
+			}
+			for (Stripe stripe : old.stripes) {
+				stripe.lock.lock();
+			}
+			try {
+				int size = 0;
+				for (Stripe stripe : old.stripes) {
+					size += stripe.current.size;
+				}
+				ImmutableOSTreeNode[] nodes = new ImmutableOSTreeNode[size];
+				int count = 0;
+				for (Stripe stripe : old.stripes) {
+					count = stripe.current.tree.collect(nodes, count);
+				}
+
+				// A split key is the key at a quantile, all the copies of a key stay in one stripe
+				int[] splitKeys = new int[DEFAULT_STRIPES - 1];
+				int splits = 0;
+				for (int s = 1; s < DEFAULT_STRIPES; s++) {
+					int key = nodes[(int) ((long) size * s / DEFAULT_STRIPES)].key;
+					if (splits == 0 || key > splitKeys[splits - 1]) {
+						splitKeys[splits++] = key;
+					}
+				}
+				splitKeys = Arrays.copyOf(splitKeys, splits);
+
+				Stripe[] stripes = new Stripe[splits + 1];
+				int from = 0;
+				for (int s = 0; s < stripes.length; s++) {
+					int to = from;
+					while (to < size && (s == splits || nodes[to].key < splitKeys[s])) {
+						to++;
+					}
+					stripes[s] = new Stripe(PersistentOSTree.fromSorted(nodes, from, to));
+					from = to;
+				}
+				layout = new Layout(splitKeys, stripes, Math.max(MIN_SPLIT_SIZE, STRIPE_SKEW * size / stripes.length));
+				for (Stripe stripe : old.stripes) {
+					stripe.retired = true;
+				}
+			} finally {
+				for (Stripe stripe : old.stripes) {
+					stripe.lock.unlock();
+				}
+			}
+		} finally {
+			splitLock.unlock();
+		}
+	}
+
+	/**
+	 * Read the current versions of the stripes from to to (exclusive) as they all were at one moment.
+	 * The versions are read again until a read finds the same ones as the read before it;
+	 * a new read is needed only when a writer published in between, so some writer always makes progress.
+	 */
+	private static Version[] read (Layout layout, int from, int to) {
+		Stripe[] stripes = layout.stripes;
+		Version[] versions = new Version[to - from];
+		for (int s = from; s < to; s++) {
+			versions[s - from] = stripes[s].current;
+		}
+		boolean same = false;
+		while (!same) {
+			same = true;
+			for (int s = from; s < to; s++) {
+				Version version = stripes[s].current;
+				if (version != versions[s - from]) {
+					versions[s - from] = version;
+					same = false;
+				}
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * return the number of nodes in the first count versions
+	 */
+	private static int sizeOf (Version[] versions, int count) {
+		int size = 0;
+		for (int s = 0; s < count; s++) {
+			size += versions[s].size;
+		}
+		return size;
+	}
+
+	/**
+	 * The stripes of the tree and the keys that split them. A new layout replaces the whole object.
+	 */
+	private static final class Layout {
+
+		// The first key of every stripe but the first
+		final int[] splitKeys;
+		final Stripe[] stripes;
+
+		// A stripe that grows past this size makes the default tree split its stripes again
+		final int splitSize;
+
+		Layout(int[] splitKeys, Stripe[] stripes, int splitSize) {
+			this.splitKeys = splitKeys;
+			this.stripes = stripes;
+			this.splitSize = splitSize;
+		}
+
+		/**
+		 * return the index of the stripe that holds a key
+		 */
+		int stripeOf (int key) {
+			int low = 0;
+			int high = splitKeys.length;
+
+			// The number of split keys smaller than or equal to the key
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (splitKeys[middle] <= key) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * A subtree of the top layer and the lock its writers take
+	 */
+	private static final class Stripe {
+		final ReentrantLock lock = new ReentrantLock();
+		volatile Version current;
+
+		// Set, under the lock, when a new layout replaced this stripe
+		boolean retired;
+
+		Stripe(PersistentOSTree tree) {
+			current = new Version(tree);
+		}
+	}
+
+	/**
+	 * A published version of a stripe's subtree. A new one is made for every change, also when
+	 * the subtree is the same object as before (such as the empty tree), so two reads of a stripe
+	 * find the same version only if no writer published in between.
+	 */
+	private static final class Version {
+		final PersistentOSTree tree;
+
+		// The size of the tree, kept here so adding up the stripes does not go into their trees
+		final int size;
+
+		Version(PersistentOSTree tree) {
+			this.tree = tree;
+			this.size = tree.size();
+		}
+	}
+}
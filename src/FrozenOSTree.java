@@ -0,0 +1,164 @@
+/**
+ * A copy of an OS tree that can not change, laid out in arrays for fast reads.
+ *
+ * The keys are kept twice: in key order, so select is a single array read, and in
+ * Eytzinger order (the tree in breadth first order, the children of slot k are in
+ * slots 2k and 2k+1), so a search reads the top levels from the same few cache lines
+ * every time and the next levels are next to each other in memory.
+ * The search loop does nothing but the comparison and the index step, so while a slot is
+ * still being loaded the CPU already loads the slot it guesses comes next. A loop without a
+ * branch, adding the comparison to the index, was slower in Java: with no prefetch
+ * instruction every level then waits for the level above.
+ * For every Eytzinger slot the position of its key in key order is kept, so a search
+ * ends with the rank of the key.
+ *
+ * Ranks are 1 based, the same as OSTree.select and OSTree.rank.
+ */
+public class FrozenOSTree {
+
+	// Keys and data in key order
+	private final int[] sorted;
+	private final Object[] data;
+
+	// Keys in Eytzinger order from slot 1, and the number of keys before each one in key order
+	private final int[] layout;
+	private final int[] before;
+
+	/**
+	 * Copy a tree into a frozen tree, later changes to the tree are not seen
+	 * @param tree
+	 */
+	public FrozenOSTree(OSTree tree) {
+
+		// A node that holds several copies of its key, in a MultisetOSTree, takes a slot for every copy
+		int count = OSTree.size(tree.getRoot());
+		sorted = new int[count];
+		data = new Object[count];
+		int i = 0;
+		for (OSTreeNode node : OSTree.inOrder(tree)) {
+			for (int copy = 0; copy < node.getCount(); copy++) {
+				sorted[i] = node.getKey();
+				data[i] = node.getData();
+				i++;
+			}
+		}
+
+		layout = new int[count + 1];
+		before = new int[count + 1];
+		fill(1, 0);
+	}
+
+	/**
+	 * Put the keys from the given position in key order into the Eytzinger subtree of slot k
+	 * @return the position after the last key put in the subtree
+	 */
+	private int fill (int k, int position) {
+		if (k < layout.length) {
+			position = fill(2 * k, position);
+			layout[k] = sorted[position];
+			before[k] = position;
+			position = fill(2 * k + 1, position + 1);
+		}
+		return position;
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return sorted.length;
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return sorted.length == 0;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+
+		int[] layout = this.layout;
+		int count = layout.length;
+		int k = 1;
+
+		// Go down to the right when the slot's key is smaller than or equal to key
+		while (k < count) {
+			if (layout[k] <= key) {
+				k = 2 * k + 1;
+			} else {
+				k = 2 * k;
+			}
+		}
+
+		// The last slot the search went left from holds the first key bigger than key,
+		// going up removes the right turns at the end of the path and then that left turn
+		k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+		return k == 0 ? sorted.length : before[k];
+	}
+
+	/**
+	 * Find a key in the tree
+	 * @param key
+	 * @return the rank of the last node with the given key or 0 if key wasn't found
+	 */
+	public int find (int key) {
+		int rank = rank(key);
+		return rank > 0 && sorted[rank - 1] == key ? rank : 0;
+	}
+
+	/**
+	 * Checks if a key is in the tree
+	 * @param key
+	 * @return true if a node has the given key
+	 */
+	public boolean contains (int key) {
+		return find(key) != 0;
+	}
+
+	/**
+	 * return the key of the i-th node in the list
+	 * @param i
+	 * @return the key of the i-th node
+	 * @throws IndexOutOfBoundsException if there is no such node
+	 */
+	public int select (int i) {
+		if (i < 1 || i > sorted.length) {
+			throw new IndexOutOfBoundsException("No node number " + i + " in a tree of " + sorted.length);
+		}
+		return sorted[i - 1];
+	}
+
+	/**
+	 * return the data of the i-th node in the list
+	 * @param i
+	 * @return the data of the i-th node
+	 * @throws IndexOutOfBoundsException if there is no such node
+	 */
+	public Object getData (int i) {
+		if (i < 1 || i > sorted.length) {
+			throw new IndexOutOfBoundsException("No node number " + i + " in a tree of " + sorted.length);
+		}
+		return data[i - 1];
+	}
+
+	/**
+	 * return the number of nodes with a key in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 * @return the number of nodes with lo <= key <= hi
+	 */
+	public int countInRange (int lo, int hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		return rank(hi) - (lo == Integer.MIN_VALUE ? 0 : rank(lo - 1));
+	}
+}
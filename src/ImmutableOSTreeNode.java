@@ -0,0 +1,48 @@
+/**
+ * A node of an OS tree that never changes after it is created.
+ * Trees made of these nodes can share subtrees and be read without locking.
+ */
+public final class ImmutableOSTreeNode {
+	final int key;
+	final Object data;
+	final ImmutableOSTreeNode leftChild;
+	final ImmutableOSTreeNode rightChild;
+	final int size;
+
+	ImmutableOSTreeNode(int key, Object data, ImmutableOSTreeNode leftChild, ImmutableOSTreeNode rightChild) {
+		this.key = key;
+		this.data = data;
+		this.leftChild = leftChild;
+		this.rightChild = rightChild;
+		this.size = size(leftChild) + size(rightChild) + 1;
+	}
+	
+	/**
+	 * return the size of the subtree of a node
+	 * @param node
+	 * @return the size of the subtree or 0 if node is null
+	 */
+	static int size (ImmutableOSTreeNode node) {
+		return node == null ? 0 : node.size;
+	}
+
+	public int getKey() {
+		return key;
+	}
+
+	public Object getData() {
+		return data;
+	}
+
+	public ImmutableOSTreeNode getLeft() {
+		return leftChild;
+	}
+
+	public ImmutableOSTreeNode getRight() {
+		return rightChild;
+	}
+
+	public int getSize() {
+		return size;
+	}
+}
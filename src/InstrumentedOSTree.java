@@ -0,0 +1,173 @@
+/**
+ * An OS tree that measures its operations: how long they take, how many nodes
+ * they visit, and how balanced the tree is. The metrics can be read through getMetrics()
+ * or through JMX once they are registered.
+ *
+ * The wrapped tree itself is not changed, so a tree that is used directly pays nothing.
+ * Every operation is passed to the wrapped tree, so subclasses such as LazyDeleteOSTree answer
+ * the same through the wrapper. The path lengths are counted by the operation itself, through
+ * the variants of find, insert, successor and predecessor that return them, so nothing walks the
+ * tree a second time: the nodes a find visits, the links a successor or predecessor follows,
+ * and for an insert the depth of the spot the new node is linked at, before the tree rebalances.
+ *
+ * Like the trees it wraps this class is not thread-safe. The metrics can be read by another thread,
+ * such as JMX, at any time: the histograms are atomic, and the size and the deepest insert are
+ * single fields, so reading them never walks or locks the tree.
+ */
+public class InstrumentedOSTree {
+
+	private final OSTree tree;
+	private final OSTreeMetrics metrics;
+
+	// The path length of the last operation, filled in by the tree
+	private final int[] pathLength = new int[1];
+
+	/**
+	 * Constructor for an instrumented OS tree
+	 * @param tree the tree to measure, it must not be changed other than through this object
+	 */
+	public InstrumentedOSTree(OSTree tree) {
+		this.tree = tree;
+		this.metrics = new OSTreeMetrics(this);
+	}
+
+	/**
+	 * return the metrics of this tree
+	 */
+	public OSTreeMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * return the wrapped tree
+	 */
+	public OSTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Insert a given OS node to the tree
+	 * @param node
+	 */
+	public void insert (OSTreeNode node) {
+		long start = System.nanoTime();
+		int depth = tree.insertWithDepth(node);
+		metrics.insertLatency.record(System.nanoTime() - start);
+		metrics.recordInsertDepth(depth);
+	}
+
+	/**
+	 * Delete a given node from the tree
+	 * @param node
+	 */
+	public void delete (OSTreeNode node) {
+		long start = System.nanoTime();
+		tree.delete(node);
+		metrics.deleteLatency.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public OSTreeNode find (int key) {
+		long start = System.nanoTime();
+		OSTreeNode node = (OSTreeNode) tree.find(key, pathLength);
+		metrics.findLatency.record(System.nanoTime() - start);
+		metrics.findPathLength.record(pathLength[0]);
+		return node;
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or null if the tree is empty
+	 */
+	public OSTreeNode findMin() {
+		return (OSTreeNode) tree.findMin();
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or null if the tree is empty
+	 */
+	public OSTreeNode findMax() {
+		return (OSTreeNode) tree.findMax();
+	}
+
+	/**
+	 * Find and return the successor of a node
+	 * @param node
+	 * @return the successor or null if node is the max node
+	 */
+	public OSTreeNode successor (OSTreeNode node) {
+		long start = System.nanoTime();
+		OSTreeNode result = (OSTreeNode) tree.successor(node, pathLength);
+		metrics.successorLatency.record(System.nanoTime() - start);
+		metrics.successorPathLength.record(pathLength[0]);
+		return result;
+	}
+
+	/**
+	 * Find and return the predecessor of a node
+	 * @param node
+	 * @return the predecessor or null if node is the min node
+	 */
+	public OSTreeNode predecessor (OSTreeNode node) {
+		long start = System.nanoTime();
+		OSTreeNode result = (OSTreeNode) tree.predecessor(node, pathLength);
+		metrics.predecessorLatency.record(System.nanoTime() - start);
+		metrics.predecessorPathLength.record(pathLength[0]);
+		return result;
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or null if there is no such node
+	 */
+	public OSTreeNode select (int i) {
+		long start = System.nanoTime();
+		OSTreeNode node = tree.select(i);
+		metrics.selectLatency.record(System.nanoTime() - start);
+		return node;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		long start = System.nanoTime();
+		int rank = tree.rank(key);
+		metrics.rankLatency.record(System.nanoTime() - start);
+		return rank;
+	}
+
+	/**
+	 * return the rank of a node
+	 * @param node
+	 * @return the rank of the node
+	 */
+	public int rank (OSTreeNode node) {
+		long start = System.nanoTime();
+		int rank = tree.rank(node);
+		metrics.rankLatency.record(System.nanoTime() - start);
+		return rank;
+	}
+
+	/**
+	 * return the number of nodes in the tree
+	 */
+	public int size() {
+		return OSTree.size(tree.getRoot());
+	}
+
+	/**
+	 * return the height of the tree, this visits every node
+	 */
+	public int height() {
+		return tree.height(tree.getRoot());
+	}
+}
@@ -0,0 +1,301 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The part of an OS tree with keys other than int that does not look at the keys.
+ * The nodes are kept in an RBOSTree, which links them in, takes them out, rebalances,
+ * splits, joins and rebuilds, so all the red-black trees share one engine.
+ * Subclasses hold the key in their node type and find the place of a key with
+ * their own loop, so a long key is compared as a primitive.
+ * The int key every OSTreeNode has is not used, so the public methods return
+ * the nodes as a node type of the subclass that is not an OSTreeNode.
+ *
+ * @param <N> the type of the nodes in the red-black tree
+ * @param <E> the type the nodes are returned as, every N is an E
+ */
+abstract class KeyedOSTree<N extends OSTreeNode, E> implements Iterable<E> {
+
+	final RBOSTree tree;
+
+	// Orders the nodes by key, for the batch operations
+	private final Comparator<OSTreeNode> order = new Comparator<OSTreeNode>() {
+		public int compare (OSTreeNode a, OSTreeNode b) {
+			return KeyedOSTree.this.compare(node(a), node(b));
+		}
+	};
+
+	/**
+	 * Constructor for a keyed tree over the nodes of a red-black tree
+	 * @param tree
+	 */
+	KeyedOSTree(RBOSTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return tree.isEmpty();
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return OSTree.size(tree.getRoot());
+	}
+
+	/**
+	 * return root
+	 */
+	public E getRoot() {
+		return entry(tree.getRoot());
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or null if the tree is empty
+	 */
+	public E findMin() {
+		return entry(tree.findMin());
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or null if the tree is empty
+	 */
+	public E findMax() {
+		return entry(tree.findMax());
+	}
+
+	/**
+	 * Find and return the successor of a node
+	 * @param node
+	 * @return the successor or null if node is the max node
+	 */
+	public E successor (E node) {
+		return entry(tree.successor(node(node)));
+	}
+
+	/**
+	 * Find and return the predecessor of a node
+	 * @param node
+	 * @return the predecessor or null if node is the min node
+	 */
+	public E predecessor (E node) {
+		return entry(tree.predecessor(node(node)));
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or null if there is no such node
+	 */
+	public E select (int i) {
+		return entry(tree.select(i));
+	}
+
+	/**
+	 * return the rank of a node, for the rank of the subclasses that takes their node type.
+	 * E erases to Object, so a public rank(E) would clash with a rank that takes an object key.
+	 * @param node
+	 * @return the rank of the node
+	 */
+	int rankOf (E node) {
+		return tree.rank(node(node));
+	}
+
+	/**
+	 * Delete a given node from the tree and rebalance it, the node itself is unlinked
+	 * @param node
+	 */
+	void deleteNode (E node) {
+		tree.delete(node(node));
+	}
+
+	/**
+	 * return an iterator over all the nodes in key order
+	 */
+	public Iterator<E> iterator() {
+		return walk(findMin(), false, size());
+	}
+
+	/**
+	 * return an iterator over all the nodes from the biggest key to the smallest
+	 */
+	public Iterator<E> descendingIterator() {
+		return walk(findMax(), true, size());
+	}
+
+	/**
+	 * Compare the keys of two nodes
+	 * @return less than, equal to or more than 0 when the key of a is smaller than, equal to or bigger than the key of b
+	 */
+	abstract int compare (N a, N b);
+
+	/**
+	 * return the root as the node type of the red-black tree, for the descents of the subclasses
+	 */
+	@SuppressWarnings("unchecked")
+	N root() {
+		return (N) tree.getRoot();
+	}
+
+	/**
+	 * Link a new node in as a child of the given father and rebalance.
+	 * The caller found the place by the keys and already increased the sizes on the path to it.
+	 * @param node the new node
+	 * @param father the node it hangs from, null if the tree is empty
+	 * @param right true to make it the right child
+	 */
+	void insertAt (N node, N father, boolean right) {
+		tree.insertAt(node, father, right);
+	}
+
+	/**
+	 * return the nodes with a rank from fromRank to toRank (inclusive), in key order.
+	 * The nodes are found one by one while iterating, the tree must not change meanwhile.
+	 */
+	Iterable<E> between (final int fromRank, final int toRank) {
+		return new Iterable<E>() {
+			public Iterator<E> iterator() {
+				int count = Math.max(toRank - fromRank + 1, 0);
+				return walk(count > 0 ? select(fromRank) : null, false, count);
+			}
+		};
+	}
+
+	/**
+	 * return an iterator over at most count nodes, from a given node on by successor or predecessor.
+	 * A whole scan goes over every link twice, so a step is O(1) amortized.
+	 * @param first the first node to return, or null for none
+	 */
+	Iterator<E> walk (final E first, final boolean descending, final int count) {
+		return new Iterator<E>() {
+
+			private E next = first;
+			private int left = count;
+
+			public boolean hasNext() {
+				return next != null && left > 0;
+			}
+
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				E node = next;
+				left--;
+				next = left == 0 ? null : descending ? predecessor(node) : successor(node);
+				return node;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Insert a batch of new nodes, the same way OSTree.insertAll does.
+	 * A big batch is merged with the nodes of the tree and the tree is linked again,
+	 * a small batch goes down the tree in one descent.
+	 * @param nodes the new nodes, in any order
+	 */
+	void insertBatch (N[] nodes) {
+
+		// A stable sort, so equal keys keep the order of the batch
+		Arrays.sort(nodes, order);
+
+		if ((long) nodes.length * OSTree.REBUILD_FACTOR < size()) {
+			tree.insertSorted(nodes, order);
+			return;
+		}
+
+		// Merge the batch into the nodes of the tree, on equal keys the nodes already in the tree come first
+		OSTreeNode[] old = OSTree.inOrder(tree);
+		OSTreeNode[] merged = new OSTreeNode[old.length + nodes.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (j < nodes.length) {
+			if (i < old.length && compare(node(old[i]), nodes[j]) <= 0) {
+				merged[k++] = old[i++];
+			} else {
+				merged[k++] = nodes[j++];
+			}
+		}
+		while (i < old.length) {
+			merged[k++] = old[i++];
+		}
+		tree.rebuild(merged, merged.length);
+	}
+
+	/**
+	 * Delete one node for every key of a batch, the same way OSTree.deleteAll does.
+	 * Keys that are not in the tree are skipped.
+	 * @param probes nodes that hold the keys, sorted by key, they are not in the tree
+	 * @return the number of nodes deleted
+	 */
+	int deleteBatch (N[] probes) {
+
+		if ((long) probes.length * OSTree.REBUILD_FACTOR < size()) {
+			return tree.deleteSorted(probes, order);
+		}
+
+		// Keep the nodes whose key is not next in the batch
+		OSTreeNode[] nodes = OSTree.inOrder(tree);
+		int j = 0;
+		int k = 0;
+		for (OSTreeNode node : nodes) {
+			while (j < probes.length && compare(probes[j], node(node)) < 0) {
+				j++;
+			}
+			if (j < probes.length && compare(probes[j], node(node)) == 0) {
+				j++;
+				node.setLeft(null);
+				node.setRight(null);
+				node.setFather(null);
+				node.size = node.count;
+			} else {
+				nodes[k++] = node;
+			}
+		}
+		tree.rebuild(nodes, k);
+		return nodes.length - k;
+	}
+
+	/**
+	 * Move all the nodes of a given tree to the end of this tree.
+	 * Every key in the given tree must be bigger than or equal to every key in this tree.
+	 * The given tree is left empty. The work is O(log n).
+	 * @param right
+	 */
+	void append (KeyedOSTree<N, E> right) {
+		if (!isEmpty() && !right.isEmpty() && compare(node(findMax()), node(right.findMin())) > 0) {
+			throw new IllegalArgumentException("Keys of the right tree must not be smaller than keys of this tree");
+		}
+		tree.append(right.tree);
+	}
+
+	/**
+	 * return a node of the tree as the node type of the red-black tree
+	 */
+	@SuppressWarnings("unchecked")
+	private N node (Object node) {
+		return (N) node;
+	}
+
+	/**
+	 * return a node of the tree as the node type the public methods return
+	 */
+	@SuppressWarnings("unchecked")
+	private E entry (SearchTreeNode node) {
+		return (E) node;
+	}
+}
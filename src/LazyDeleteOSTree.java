@@ -0,0 +1,245 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A red-black OS tree whose delete only marks the node as deleted, for workloads that delete in bursts.
+ *
+ * A deleted node (a tombstone) stays where it is with a count of 0, so it adds nothing to the sizes
+ * and select, rank and countInRange skip it. A delete only walks up from the node to take it out
+ * of the sizes: no successor search, no rotations and no recolouring.
+ * When more than a given part of the nodes are tombstones, all of them are taken out in one pass
+ * and the live nodes are linked again as a balanced tree, in time linear in the size of the tree.
+ *
+ * find, findMin, findMax, successor and predecessor never return a tombstone. The iterators, split,
+ * join and the batch operations compact the tree first. A deleted node must not be inserted again.
+ */
+public class LazyDeleteOSTree extends RBOSTree {
+
+	private static final double DEFAULT_MAX_TOMBSTONE_RATIO = 0.25;
+
+	private final double maxTombstoneRatio;
+	private int tombstones;
+
+	/**
+	 * Constructor for a lazy delete OS tree that compacts when a quarter of its nodes are tombstones
+	 */
+	public LazyDeleteOSTree() {
+		this(DEFAULT_MAX_TOMBSTONE_RATIO);
+	}
+
+	/**
+	 * Constructor for a lazy delete OS tree
+	 * @param maxTombstoneRatio the part of the nodes that may be tombstones before the tree is compacted,
+	 *        between 0 and 1 (exclusive)
+	 */
+	public LazyDeleteOSTree(double maxTombstoneRatio) {
+		super();
+		if (!(maxTombstoneRatio > 0 && maxTombstoneRatio < 1)) {
+			throw new IllegalArgumentException("maxTombstoneRatio must be between 0 and 1, got " + maxTombstoneRatio);
+		}
+		this.maxTombstoneRatio = maxTombstoneRatio;
+	}
+
+	/**
+	 * Mark a given node as deleted, and compact the tree if there are too many tombstones
+	 * @param node
+	 */
+	public void delete (OSTreeNode node) {
+		int removed = node.count;
+		if (removed == 0) {
+			return;
+		}
+		node.count = 0;
+		for (OSTreeNode tempNode = node; tempNode != null; tempNode = tempNode.getFather()) {
+			tempNode.size -= removed;
+		}
+		tombstones++;
+		if (tombstones > maxTombstoneRatio * (size(getRoot()) + tombstones)) {
+			compact();
+		}
+	}
+
+	/**
+	 * A small batch marks its nodes one by one, the same way delete does
+	 */
+	protected int deleteSorted (int[] keys) {
+		int deleted = 0;
+		for (int key : keys) {
+			OSTreeNode node = (OSTreeNode) find(key);
+			if (node != null) {
+				delete(node);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Take all the tombstones out of the tree and link the live nodes again as a balanced tree
+	 */
+	public void compact() {
+		if (tombstones == 0) {
+			return;
+		}
+
+		// Collect the live nodes in key order, the stack holds the nodes whose left side is being visited
+		OSTreeNode[] live = new OSTreeNode[size(getRoot())];
+		int count = 0;
+		ArrayDeque<OSTreeNode> stack = new ArrayDeque<OSTreeNode>();
+		OSTreeNode node = getRoot();
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				stack.push(node);
+				node = node.getLeft();
+			}
+			node = stack.pop();
+			OSTreeNode right = node.getRight();
+			if (node.count > 0) {
+				live[count++] = node;
+			} else {
+				node.setLeft(null);
+				node.setRight(null);
+				node.setFather(null);
+				node.count = 1;
+				node.size = 1;
+				recycle(node);
+			}
+			node = right;
+		}
+
+		tombstones = 0;
+		rebuild(live, count);
+	}
+
+	/**
+	 * return the number of deleted nodes still in the tree
+	 */
+	public int tombstoneCount() {
+		return tombstones;
+	}
+
+	public boolean isEmpty() {
+		return size(getRoot()) == 0;
+	}
+
+	/**
+	 * Find and return a live node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public SearchTreeNode find (int key) {
+		return liveCopy((OSTreeNode) super.find(key), key);
+	}
+
+	public SearchTreeNode find (int key, int[] pathLength) {
+		return liveCopy((OSTreeNode) super.find(key, pathLength), key);
+	}
+
+	public SearchTreeNode findMin() {
+		return select(1);
+	}
+
+	public SearchTreeNode findMax() {
+		return select(size(getRoot()));
+	}
+
+	public SearchTreeNode successor (SearchTreeNode node) {
+		SearchTreeNode next = super.successor(node);
+		while (next != null && ((OSTreeNode) next).count == 0) {
+			next = super.successor(next);
+		}
+		return next;
+	}
+
+	/**
+	 * The links followed over the tombstones on the way are counted too
+	 */
+	public SearchTreeNode successor (SearchTreeNode node, int[] pathLength) {
+		SearchTreeNode next = super.successor(node, pathLength);
+		int steps = pathLength[0];
+		while (next != null && ((OSTreeNode) next).count == 0) {
+			next = super.successor(next, pathLength);
+			steps += pathLength[0];
+		}
+		pathLength[0] = steps;
+		return next;
+	}
+
+	public SearchTreeNode predecessor (SearchTreeNode node) {
+		SearchTreeNode previous = super.predecessor(node);
+		while (previous != null && ((OSTreeNode) previous).count == 0) {
+			previous = super.predecessor(previous);
+		}
+		return previous;
+	}
+
+	/**
+	 * The links followed over the tombstones on the way are counted too
+	 */
+	public SearchTreeNode predecessor (SearchTreeNode node, int[] pathLength) {
+		SearchTreeNode previous = super.predecessor(node, pathLength);
+		int steps = pathLength[0];
+		while (previous != null && ((OSTreeNode) previous).count == 0) {
+			previous = super.predecessor(previous, pathLength);
+			steps += pathLength[0];
+		}
+		pathLength[0] = steps;
+		return previous;
+	}
+
+	public Iterator<SearchTreeNode> iterator() {
+		compact();
+		return super.iterator();
+	}
+
+	public Iterator<SearchTreeNode> iterator (int fromKey) {
+		compact();
+		return super.iterator(fromKey);
+	}
+
+	public Iterator<SearchTreeNode> descendingIterator() {
+		compact();
+		return super.descendingIterator();
+	}
+
+	public Iterator<SearchTreeNode> descendingIterator (int fromKey) {
+		compact();
+		return super.descendingIterator(fromKey);
+	}
+
+	public RBOSTree split (int key) {
+		compact();
+		return super.split(key);
+	}
+
+	public void join (RBOSTree right) {
+		compact();
+		super.join(right);
+	}
+
+	/**
+	 * join takes the smallest node out of the right tree with unlink, so the right tree is compacted first
+	 */
+	protected void unlink (OSTreeNode node) {
+		compact();
+		super.unlink(node);
+	}
+
+	protected RBOSTree newEmptyTree() {
+		return new LazyDeleteOSTree(maxTombstoneRatio);
+	}
+
+	/**
+	 * return a live node with the key of a node found by the search, or null if there is none
+	 */
+	private OSTreeNode liveCopy (OSTreeNode node, int key) {
+		if (node == null || node.count > 0) {
+			return node;
+		}
+
+		// The first node found is a tombstone, a live copy of the key is the last node of rank(key)
+		int rank = rank(key);
+		node = rank == 0 ? null : select(rank);
+		return node != null && node.getKey() == key ? node : null;
+	}
+}
@@ -0,0 +1,528 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An OS tree whose changes are written to a log before they are applied, so they survive a crash.
+ *
+ * The directory holds generations of a snapshot ("snapshot-N", written by OSTreeSnapshot)
+ * and the log of all changes made after it ("log-N"). On opening, the newest snapshot is read
+ * and its log is replayed on top of it. checkpoint() writes a new snapshot and starts a new,
+ * empty log, which keeps the log short.
+ *
+ * Log records are written by a background thread that collects the records of all threads for
+ * the commit interval and syncs them with one fsync (group commit). A change is applied to the
+ * tree only after its record is on disk, so readers never see a change that a crash could lose.
+ * insert and delete return once their change is applied, so a thread sees its own changes.
+ *
+ * Of several nodes with the same key, delete removes the first in key order. Equal keys are
+ * inserted before the ones already in the tree, so replaying the log deletes the same nodes
+ * again and recovery gives back the nodes with their data, not only the keys.
+ *
+ * Record layout: type (1 byte), key (4 bytes), data length plus one (4 bytes, 0 for no data),
+ * data bytes, CRC32 of everything before it in the record (4 bytes).
+ */
+public class LoggedOSTree implements Closeable {
+
+	private static final byte INSERT = 1;
+	private static final byte DELETE = 2;
+
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String LOG_PREFIX = "log-";
+
+	// The log is replayed through a buffer of this size, a bigger record gets a buffer of its own
+	private static final int REPLAY_CHUNK = 1 << 16;
+
+	private final File directory;
+	private final PayloadCodec codec;
+	private final long commitInterval;
+
+	private final RBOSTree tree;
+
+	// Records waiting for the committer and their changes, not applied yet, guarded by this
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private List<Change> changes = new ArrayList<Change>();
+	private final Map<Integer, Integer> pendingCounts = new HashMap<Integer, Integer>();
+	private long appended;
+	private long durable;
+	private IOException failure;
+	private boolean closed;
+
+	// Held while the log file is written, so checkpoint() does not switch logs under the committer
+	private final Object logLock = new Object();
+	private int generation;
+	private RandomAccessFile log;
+
+	private final Thread committer;
+
+	/**
+	 * Open the tree kept in a directory, or start an empty tree if there is none
+	 * @param directory
+	 * @param codec writes and reads the data of the nodes, or null to keep only the keys
+	 * @param commitInterval milliseconds to collect records before each fsync
+	 * @throws IOException if the snapshot or log can not be read
+	 */
+	public LoggedOSTree(File directory, PayloadCodec codec, long commitInterval) throws IOException {
+
+		this.directory = directory;
+		this.codec = codec;
+		this.commitInterval = commitInterval;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can not create directory " + directory);
+		}
+
+		// Find the newest snapshot, generation 0 has no snapshot
+		generation = 0;
+		String[] names = directory.list();
+		for (String name : names) {
+			if (name.startsWith(SNAPSHOT_PREFIX)) {
+				try {
+					generation = Math.max(generation, Integer.parseInt(name.substring(SNAPSHOT_PREFIX.length())));
+				} catch (NumberFormatException e) {
+					// Not one of ours, a left over temporary file for example
+				}
+			}
+		}
+
+		tree = generation == 0 ? new RBOSTree() : OSTreeSnapshot.read(snapshotFile(generation), codec);
+		log = new RandomAccessFile(logFile(generation), "rw");
+		syncDirectory();
+		replay();
+		deleteOlderThan(generation);
+
+		committer = new Thread("LoggedOSTree committer") {
+			public void run() {
+				commitLoop();
+			}
+		};
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	/**
+	 * Insert a new key to the tree, returns when the change is on disk and applied
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 * @throws IOException if the log can not be written, the tree is then left without the change
+	 */
+	public OSTreeNode insert (int key, Object data) throws IOException {
+		long record;
+		OSTreeNode node = new OSTreeNode(key, data);
+		synchronized (this) {
+			record = append(INSERT, key, data);
+			changes.add(new Change(INSERT, key, node));
+			addPending(key, 1);
+		}
+		waitDurable(record);
+		return node;
+	}
+
+	/**
+	 * Delete the first node with the given key from the tree, returns when the change is on disk
+	 * and applied. Changes still waiting for the disk count when deciding if the key is there.
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 * @throws IOException if the log can not be written, the tree is then left without the change
+	 */
+	public boolean delete (int key) throws IOException {
+		long record;
+		synchronized (this) {
+			Integer waiting = pendingCounts.get(key);
+			if (count(key) + (waiting == null ? 0 : waiting) <= 0) {
+				return false;
+			}
+			record = append(DELETE, key, null);
+			changes.add(new Change(DELETE, key, null));
+			addPending(key, -1);
+		}
+		waitDurable(record);
+		return true;
+	}
+
+	public synchronized OSTreeNode find (int key) {
+		return (OSTreeNode) tree.find(key);
+	}
+
+	public synchronized OSTreeNode select (int i) {
+		return tree.select(i);
+	}
+
+	public synchronized int rank (int key) {
+		return tree.rank(key);
+	}
+
+	public synchronized int countInRange (int lo, int hi) {
+		return tree.countInRange(lo, hi);
+	}
+
+	public synchronized int size() {
+		return OSTree.size(tree.getRoot());
+	}
+
+	/**
+	 * Write a snapshot of the tree and start a new empty log.
+	 * Changes wait while the snapshot is written.
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (logLock) {
+			synchronized (this) {
+				checkOpen();
+
+				// The records still waiting go to the old log, so the snapshot holds every change made so far
+				commit();
+				int next = generation + 1;
+
+				// Write the snapshot under a temporary name so a crash never leaves half a snapshot
+				File temporary = new File(directory, SNAPSHOT_PREFIX + next + ".tmp");
+				OSTreeSnapshot.write(tree, temporary, codec);
+				Files.move(temporary.toPath(), snapshotFile(next).toPath(),
+						StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				syncDirectory();
+
+				log.close();
+				generation = next;
+				log = new RandomAccessFile(logFile(generation), "rw");
+				syncDirectory();
+
+				// Only now that the new generation is on disk the old one can go
+				deleteOlderThan(generation);
+			}
+		}
+	}
+
+	/**
+	 * Write the records that are still waiting and close the log
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (logLock) {
+			commit();
+			log.close();
+		}
+	}
+
+	/**
+	 * Add a record to the pending records, must be called holding this
+	 * @return the number of the record
+	 */
+	private long append (byte type, int key, Object data) throws IOException {
+		checkOpen();
+
+		byte[] bytes = data == null || codec == null ? null : codec.encode(data);
+		ByteArrayOutputStream record = new ByteArrayOutputStream(13 + (bytes == null ? 0 : bytes.length));
+		DataOutputStream out = new DataOutputStream(record);
+		out.writeByte(type);
+		out.writeInt(key);
+		out.writeInt(bytes == null ? 0 : bytes.length + 1);
+		if (bytes != null) {
+			out.write(bytes);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.toByteArray());
+		out.writeInt((int) crc.getValue());
+
+		record.writeTo(pending);
+		notifyAll();
+		return ++appended;
+	}
+
+	/**
+	 * Add to the number of copies of a key that changes still waiting will add, must be called holding this
+	 */
+	private void addPending (int key, int delta) {
+		Integer count = pendingCounts.get(key);
+		int sum = (count == null ? 0 : count) + delta;
+		if (sum == 0) {
+			pendingCounts.remove(key);
+		} else {
+			pendingCounts.put(key, sum);
+		}
+	}
+
+	/**
+	 * return the number of nodes with the given key in the tree
+	 */
+	private int count (int key) {
+		return tree.rank(key) - (key == Integer.MIN_VALUE ? 0 : tree.rank(key - 1));
+	}
+
+	/**
+	 * Apply a change to the tree, a delete takes the first node with its key
+	 */
+	private void apply (byte type, int key, OSTreeNode node) {
+		if (type == INSERT) {
+			tree.insert(node);
+		} else {
+			OSTreeNode first = tree.select(key == Integer.MIN_VALUE ? 1 : tree.rank(key - 1) + 1);
+			if (first != null && first.getKey() == key) {
+				tree.delete(first);
+			}
+		}
+	}
+
+	/**
+	 * Wait until a record is on disk and its change is applied
+	 */
+	private synchronized void waitDurable (long record) throws IOException {
+		boolean interrupted = false;
+		while (durable < record && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (durable < record) {
+			throw new IOException("Could not write the log", failure);
+		}
+	}
+
+	private void checkOpen() throws IOException {
+		if (failure != null) {
+			throw new IOException("Log failed earlier", failure);
+		}
+		if (closed) {
+			throw new IOException("Tree is closed");
+		}
+	}
+
+	/**
+	 * Runs in the committer thread: wait for records, let more collect, then write them together
+	 */
+	private void commitLoop() {
+		while (true) {
+			synchronized (this) {
+				while (pending.size() == 0 && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+			}
+			try {
+				if (commitInterval > 0) {
+					Thread.sleep(commitInterval);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+			synchronized (logLock) {
+				try {
+					commit();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write all pending records to the log, sync it and apply their changes, must be called holding logLock
+	 */
+	private void commit() throws IOException {
+		byte[] records;
+		List<Change> committed;
+		long last;
+		synchronized (this) {
+			records = pending.toByteArray();
+			committed = changes;
+			last = appended;
+			pending.reset();
+			changes = new ArrayList<Change>();
+		}
+		if (records.length > 0) {
+			try {
+				FileChannel channel = log.getChannel();
+				ByteBuffer buffer = ByteBuffer.wrap(records);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer, channel.size());
+				}
+				channel.force(false);
+			} catch (IOException e) {
+
+				// The changes are never applied, their writers get the failure
+				synchronized (this) {
+					failure = e;
+					notifyAll();
+				}
+				throw e;
+			}
+		}
+		synchronized (this) {
+			for (Change change : committed) {
+				apply(change.type, change.key, change.node);
+				addPending(change.key, change.type == INSERT ? -1 : 1);
+			}
+			durable = Math.max(durable, last);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Apply the records of the current log to the tree, reading the log in chunks.
+	 * A record that fails its checks, one cut by a crash for example, and everything after it,
+	 * is dropped from the log.
+	 */
+	private void replay() throws IOException {
+		FileChannel channel = log.getChannel();
+		long end = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(REPLAY_CHUNK);
+		buffer.flip();
+
+		// valid is the end of the last good record, and the file position of the buffer's position
+		CRC32 crc = new CRC32();
+		long valid = 0;
+		while (valid < end) {
+			buffer = fill(channel, buffer, valid, 9);
+			if (buffer.remaining() < 9) {
+				break;
+			}
+			int start = buffer.position();
+			byte type = buffer.get();
+			int key = buffer.getInt();
+			int length = buffer.getInt() - 1;
+			if ((type != INSERT && type != DELETE) || length < -1 || length > Integer.MAX_VALUE - 13
+					|| end - valid < 13L + Math.max(length, 0)) {
+				break;
+			}
+
+			int recordLength = 13 + Math.max(length, 0);
+			buffer.position(start);
+			buffer = fill(channel, buffer, valid, recordLength);
+			if (buffer.remaining() < recordLength) {
+				break;
+			}
+			start = buffer.position();
+			crc.reset();
+			crc.update(buffer.array(), start, recordLength - 4);
+			if (buffer.getInt(start + recordLength - 4) != (int) crc.getValue()) {
+				break;
+			}
+
+			byte[] bytes = null;
+			if (length >= 0) {
+				bytes = new byte[length];
+				buffer.position(start + 9);
+				buffer.get(bytes);
+			}
+			buffer.position(start + recordLength);
+			Object data = bytes == null || codec == null ? null : codec.decode(bytes);
+			apply(type, key, type == INSERT ? new OSTreeNode(key, data) : null);
+			valid += recordLength;
+		}
+
+		if (valid < end) {
+			channel.truncate(valid);
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Make a buffer hold at least count bytes of the log from its position on, reading the log
+	 * until the buffer is full or the log ends. A count more than the buffer holds gets a new buffer.
+	 * @param start the file position of the buffer's position
+	 * @return the buffer, with fewer than count bytes left only at the end of the log
+	 */
+	private static ByteBuffer fill (FileChannel channel, ByteBuffer buffer, long start, int count) throws IOException {
+		if (buffer.remaining() >= count) {
+			return buffer;
+		}
+		if (buffer.capacity() < count) {
+			buffer = ByteBuffer.allocate(count).put(buffer);
+		} else {
+			buffer.compact();
+		}
+		long next = start + buffer.position();
+		int read;
+		while (buffer.hasRemaining() && (read = channel.read(buffer, next)) > 0) {
+			next += read;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Sync the directory itself, so the files created and renamed in it survive a crash
+	 */
+	private void syncDirectory() throws IOException {
+		FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private File snapshotFile (int generation) {
+		return new File(directory, SNAPSHOT_PREFIX + generation);
+	}
+
+	private File logFile (int generation) {
+		return new File(directory, LOG_PREFIX + generation);
+	}
+
+	/**
+	 * Remove the snapshots and logs that a newer generation replaced
+	 */
+	private void deleteOlderThan (int generation) {
+		for (int older = generation - 1; older >= 0; older--) {
+			File snapshot = snapshotFile(older);
+			File log = logFile(older);
+			if (!snapshot.exists() && !log.exists()) {
+				break;
+			}
+			snapshot.delete();
+			log.delete();
+		}
+	}
+
+	/**
+	 * An insert or delete whose record is not on disk yet
+	 */
+	private static class Change {
+		final byte type;
+		final int key;
+		final OSTreeNode node;
+
+		Change (byte type, int key, OSTreeNode node) {
+			this.type = type;
+			this.key = key;
+			this.node = node;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/**
+ * The OSTreeNode a LongOSTree keeps in its red-black tree.
+ * The int key of an OSTreeNode is not used, getKey throws so it can't be taken for the long key.
+ */
+final class LongNode extends OSTreeNode implements LongOSTreeNode {
+	final long longKey;
+
+	LongNode(long key, Object data) {
+		super(0, data);
+		this.longKey = key;
+	}
+
+	public long getLongKey() {
+		return longKey;
+	}
+
+	public int getKey() {
+		throw new UnsupportedOperationException("The key of a LongOSTreeNode is a long, use getLongKey");
+	}
+
+	public LongNode getFather() {
+		return (LongNode) super.getFather();
+	}
+
+	public LongNode getLeft() {
+		return (LongNode) super.getLeft();
+	}
+
+	public LongNode getRight() {
+		return (LongNode) super.getRight();
+	}
+}
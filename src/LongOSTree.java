@@ -0,0 +1,227 @@
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A red-black OS tree with long keys, for 64 bit ids and timestamps that do not fit an int.
+ * Keys are compared as primitives on every path, nothing is boxed.
+ * Equal keys go left, the same way OSTree places them.
+ * The nodes are kept and rebalanced by an RBOSTree, so split and join are O(log n)
+ * and the batch operations rebuild the tree the same way they do there.
+ */
+public class LongOSTree extends KeyedOSTree<LongNode, LongOSTreeNode> {
+
+	/**
+	 * Constructor for a long OS tree
+	 */
+	public LongOSTree() {
+		super(new RBOSTree());
+	}
+
+	private LongOSTree(RBOSTree tree) {
+		super(tree);
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	public LongOSTreeNode insert (long key, Object data) {
+		LongNode node = new LongNode(key, data);
+
+		// Go down to the place of the new node and increase the size of every node on the way
+		LongNode tempNode = root();
+		LongNode tempFather = null;
+		boolean right = false;
+		while (tempNode != null) {
+			tempFather = tempNode;
+			tempNode.size++;
+			right = tempNode.longKey < key;
+			tempNode = right ? tempNode.getRight() : tempNode.getLeft();
+		}
+		insertAt(node, tempFather, right);
+		return node;
+	}
+
+	/**
+	 * Insert a batch of keys to the tree, a big batch is merged in and the tree linked again
+	 * @param keys the keys, in any order
+	 * @param data the data of every key or null for no data
+	 */
+	public void insertAll (long[] keys, Object[] data) {
+		if (data != null && data.length != keys.length) {
+			throw new IllegalArgumentException("Got " + keys.length + " keys but " + data.length + " data items");
+		}
+		LongNode[] nodes = new LongNode[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			nodes[i] = new LongNode(keys[i], data == null ? null : data[i]);
+		}
+		insertBatch(nodes);
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (long key) {
+		LongOSTreeNode node = find(key);
+		if (node == null) {
+			return false;
+		}
+		delete(node);
+		return true;
+	}
+
+	/**
+	 * Delete a given node from the tree and rebalance it, the node itself is unlinked
+	 * @param node
+	 */
+	public void delete (LongOSTreeNode node) {
+		deleteNode(node);
+	}
+
+	/**
+	 * Delete one node for every key of a batch, keys that are not in the tree are skipped
+	 * @param keys the keys, in any order
+	 * @return the number of nodes deleted
+	 */
+	public int deleteAll (long[] keys) {
+		long[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		LongNode[] probes = new LongNode[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			probes[i] = new LongNode(sorted[i], null);
+		}
+		return deleteBatch(probes);
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public LongOSTreeNode find (long key) {
+		LongNode tempNode = root();
+		while (tempNode != null && tempNode.longKey != key) {
+			tempNode = key < tempNode.longKey ? tempNode.getLeft() : tempNode.getRight();
+		}
+		return tempNode;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (long key) {
+		int counter = 0;
+		LongNode tempNode = root();
+		while (tempNode != null) {
+			if (tempNode.longKey <= key) {
+				counter += OSTree.size(tempNode.getLeft()) + 1;
+				tempNode = tempNode.getRight();
+			} else {
+				tempNode = tempNode.getLeft();
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * return the rank of a node
+	 * @param node
+	 * @return the rank of the node
+	 */
+	public int rank (LongOSTreeNode node) {
+		return rankOf(node);
+	}
+
+	/**
+	 * return the number of nodes with a key in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 * @return the number of nodes with lo <= key <= hi
+	 */
+	public int countInRange (long lo, long hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		return rank(hi) - countLess(lo);
+	}
+
+	/**
+	 * return the nodes with a key in [lo, hi] in key order.
+	 * The nodes are found one by one while iterating, the tree must not change meanwhile.
+	 * @param lo
+	 * @param hi
+	 * @return the nodes with lo <= key <= hi
+	 */
+	public Iterable<LongOSTreeNode> range (long lo, long hi) {
+		if (lo > hi) {
+			return between(1, 0);
+		}
+		return between(countLess(lo) + 1, rank(hi));
+	}
+
+	/**
+	 * return an iterator over the nodes with a key bigger than or equal to the given key, in key order
+	 * @param fromKey
+	 */
+	public Iterator<LongOSTreeNode> iterator (long fromKey) {
+		int from = countLess(fromKey);
+		return walk(select(from + 1), false, size() - from);
+	}
+
+	/**
+	 * return an iterator over the nodes with a key smaller than or equal to the given key,
+	 * from the biggest key to the smallest
+	 * @param fromKey
+	 */
+	public Iterator<LongOSTreeNode> descendingIterator (long fromKey) {
+		int to = rank(fromKey);
+		return walk(select(to), true, to);
+	}
+
+	/**
+	 * Move all the nodes with a key bigger than the given key to a new tree.
+	 * This tree keeps the nodes with a key smaller than or equal to the key. The work is O(log n).
+	 * @param key
+	 * @return a tree with the nodes bigger than key
+	 */
+	public LongOSTree split (long key) {
+		return new LongOSTree(tree.splitAfter(rank(key)));
+	}
+
+	/**
+	 * Move all the nodes of a given tree to the end of this tree.
+	 * Every key in the given tree must be bigger than or equal to every key in this tree.
+	 * The given tree is left empty. The work is O(log n).
+	 * @param right
+	 */
+	public void join (LongOSTree right) {
+		append(right);
+	}
+
+	int compare (LongNode a, LongNode b) {
+		return a.longKey < b.longKey ? -1 : a.longKey == b.longKey ? 0 : 1;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than the given key
+	 */
+	private int countLess (long key) {
+		int counter = 0;
+		LongNode tempNode = root();
+		while (tempNode != null) {
+			if (tempNode.longKey < key) {
+				counter += OSTree.size(tempNode.getLeft()) + 1;
+				tempNode = tempNode.getRight();
+			} else {
+				tempNode = tempNode.getLeft();
+			}
+		}
+		return counter;
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * A node of a LongOSTree, its key is a long.
+ * It is not an OSTreeNode, so its key can't be taken for the int key of one.
+ */
+public interface LongOSTreeNode {
+
+	long getLongKey();
+
+	Object getData();
+
+	void setData(Object data);
+
+	LongOSTreeNode getFather();
+
+	LongOSTreeNode getLeft();
+
+	LongOSTreeNode getRight();
+}
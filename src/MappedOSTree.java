@@ -0,0 +1,456 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An OS tree that keeps its nodes in a memory mapped file instead of the heap.
+ * Opening an existing file maps it as it is, so the tree is ready without rebuilding it.
+ * Every node holds an int key and a long value, a node is the number of its record.
+ *
+ * File layout: a header of HEADER_SIZE bytes and then fixed size records of
+ * key, size, left and right (ints) and value (long), all little endian.
+ * Record 0 is the empty node and always has size 0.
+ */
+public class MappedOSTree implements Closeable {
+
+	// Number of the empty node
+	public static final int NIL = 0;
+
+	private static final int MAGIC   = 0x4f535452;
+	private static final int VERSION = 1;
+
+	// Header fields
+	private static final int MAGIC_OFFSET     = 0;
+	private static final int VERSION_OFFSET   = 4;
+	private static final int ROOT_OFFSET      = 8;
+	private static final int NEXT_SLOT_OFFSET = 12;
+	private static final int FREE_HEAD_OFFSET = 16;
+	private static final int HEADER_SIZE      = 64;
+
+	// Record fields
+	private static final int KEY_OFFSET   = 0;
+	private static final int SIZE_OFFSET  = 4;
+	private static final int LEFT_OFFSET  = 8;
+	private static final int RIGHT_OFFSET = 12;
+	private static final int VALUE_OFFSET = 16;
+	private static final int RECORD_SIZE  = 24;
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	// A single mapping can not be larger than this
+	private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int capacity;
+
+	private int root;
+	private int nextSlot;
+	private int freeHead;
+
+	/**
+	 * Open the tree stored in the given file, or create a new empty tree if the file is empty
+	 * @param file
+	 * @throws IOException if the file can not be mapped or does not hold a tree
+	 */
+	public MappedOSTree(File file) throws IOException {
+
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+
+		try {
+			long length = channel.size();
+			if (length == 0) {
+				map(DEFAULT_CAPACITY);
+				buffer.putInt(MAGIC_OFFSET, MAGIC);
+				buffer.putInt(VERSION_OFFSET, VERSION);
+				setRoot(NIL);
+				setNextSlot(1);
+				setFreeHead(NIL);
+			} else {
+				if (length < HEADER_SIZE + RECORD_SIZE || (length - HEADER_SIZE) / RECORD_SIZE > MAX_CAPACITY) {
+					throw new IOException("Not a tree file: " + file);
+				}
+				map((int) ((length - HEADER_SIZE) / RECORD_SIZE));
+				if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+					throw new IOException("Not a tree file: " + file);
+				}
+				if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+					throw new IOException("Unknown tree file version " + buffer.getInt(VERSION_OFFSET) + ": " + file);
+				}
+				root = buffer.getInt(ROOT_OFFSET);
+				nextSlot = buffer.getInt(NEXT_SLOT_OFFSET);
+				freeHead = buffer.getInt(FREE_HEAD_OFFSET);
+			}
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return getSize(root);
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param value
+	 * @return the new node
+	 */
+	public int insert (int key, long value) {
+
+		int node = allocate(key, value);
+
+		if (isEmpty()) {
+			setRoot(node);
+			return node;
+		}
+
+		// Go down to the place of the new node and increase the size of every node on the way
+		int tempNode = root;
+		int tempFather = tempNode;
+		while (tempNode != NIL) {
+			tempFather = tempNode;
+			setSize(tempNode, getSize(tempNode) + 1);
+			if (getKey(tempNode) < key) {
+				tempNode = getRight(tempNode);
+			} else {
+				tempNode = getLeft(tempNode);
+			}
+		}
+
+		// Insert the node in its right place
+		if (key > getKey(tempFather)) {
+			setRight(tempFather, node);
+		} else {
+			setLeft(tempFather, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (int key) {
+
+		if (find(key) == NIL) {
+			return false;
+		}
+
+		// Go down to the node and decrease the size of every node on the way
+		int tempNode = root;
+		int tempFather = NIL;
+		while (getKey(tempNode) != key) {
+			setSize(tempNode, getSize(tempNode) - 1);
+			tempFather = tempNode;
+			if (key < getKey(tempNode)) {
+				tempNode = getLeft(tempNode);
+			} else {
+				tempNode = getRight(tempNode);
+			}
+		}
+
+		// Case 2: node has two children, the successor's key and value move into the node
+		// and the successor is taken out instead
+		if (getLeft(tempNode) != NIL && getRight(tempNode) != NIL) {
+			int node = tempNode;
+			setSize(node, getSize(node) - 1);
+			tempFather = node;
+			tempNode = getRight(node);
+			while (getLeft(tempNode) != NIL) {
+				setSize(tempNode, getSize(tempNode) - 1);
+				tempFather = tempNode;
+				tempNode = getLeft(tempNode);
+			}
+			buffer.putInt(offset(node) + KEY_OFFSET, getKey(tempNode));
+			buffer.putLong(offset(node) + VALUE_OFFSET, getValue(tempNode));
+		}
+
+		// Case 1: node has at most one child, the child takes its place
+		int child = getLeft(tempNode) != NIL ? getLeft(tempNode) : getRight(tempNode);
+		if (tempFather == NIL) {
+			setRoot(child);
+		} else if (getLeft(tempFather) == tempNode) {
+			setLeft(tempFather, child);
+		} else {
+			setRight(tempFather, child);
+		}
+
+		free(tempNode);
+		return true;
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or NIL if key wasn't found
+	 */
+	public int find (int key) {
+		int tempNode = root;
+		while (tempNode != NIL && getKey(tempNode) != key) {
+			if (key < getKey(tempNode)) {
+				tempNode = getLeft(tempNode);
+			} else {
+				tempNode = getRight(tempNode);
+			}
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or NIL if the tree is empty
+	 */
+	public int findMin() {
+		int tempNode = root;
+		while (tempNode != NIL && getLeft(tempNode) != NIL) {
+			tempNode = getLeft(tempNode);
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or NIL if the tree is empty
+	 */
+	public int findMax() {
+		int tempNode = root;
+		while (tempNode != NIL && getRight(tempNode) != NIL) {
+			tempNode = getRight(tempNode);
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the node with the smallest key bigger than the key of a given node
+	 * @param node
+	 * @return the successor or NIL if there is none
+	 */
+	public int successor (int node) {
+		int key = getKey(node);
+		int found = NIL;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (key < getKey(tempNode)) {
+				found = tempNode;
+				tempNode = getLeft(tempNode);
+			} else {
+				tempNode = getRight(tempNode);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find and return the node with the biggest key smaller than the key of a given node
+	 * @param node
+	 * @return the predecessor or NIL if there is none
+	 */
+	public int predecessor (int node) {
+		int key = getKey(node);
+		int found = NIL;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (getKey(tempNode) < key) {
+				found = tempNode;
+				tempNode = getRight(tempNode);
+			} else {
+				tempNode = getLeft(tempNode);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or NIL if there is no such node
+	 */
+	public int select (int i) {
+		int tempNode = root;
+		while (tempNode != NIL) {
+			int leftSize = getSize(getLeft(tempNode));
+			if (i <= leftSize) {
+				tempNode = getLeft(tempNode);
+			} else if (i == leftSize + 1) {
+				return tempNode;
+			} else {
+				i -= leftSize + 1;
+				tempNode = getRight(tempNode);
+			}
+		}
+		return NIL;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		int counter = 0;
+		int tempNode = root;
+		while (tempNode != NIL) {
+			if (getKey(tempNode) <= key) {
+				counter += getSize(getLeft(tempNode)) + 1;
+				tempNode = getRight(tempNode);
+			} else {
+				tempNode = getLeft(tempNode);
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Write all changes of the mapped file to the storage device
+	 */
+	public void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Write all changes to the storage device and close the file
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		force();
+		file.close();
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	public int getKey (int node) {
+		return buffer.getInt(offset(node) + KEY_OFFSET);
+	}
+
+	public long getValue (int node) {
+		return buffer.getLong(offset(node) + VALUE_OFFSET);
+	}
+
+	public void setValue (int node, long value) {
+		buffer.putLong(offset(node) + VALUE_OFFSET, value);
+	}
+
+	public int getSize (int node) {
+		return buffer.getInt(offset(node) + SIZE_OFFSET);
+	}
+
+	public int getLeft (int node) {
+		return buffer.getInt(offset(node) + LEFT_OFFSET);
+	}
+
+	public int getRight (int node) {
+		return buffer.getInt(offset(node) + RIGHT_OFFSET);
+	}
+
+	private void setSize (int node, int size) {
+		buffer.putInt(offset(node) + SIZE_OFFSET, size);
+	}
+
+	private void setLeft (int node, int left) {
+		buffer.putInt(offset(node) + LEFT_OFFSET, left);
+	}
+
+	private void setRight (int node, int right) {
+		buffer.putInt(offset(node) + RIGHT_OFFSET, right);
+	}
+
+	private void setRoot (int root) {
+		this.root = root;
+		buffer.putInt(ROOT_OFFSET, root);
+	}
+
+	private void setNextSlot (int nextSlot) {
+		this.nextSlot = nextSlot;
+		buffer.putInt(NEXT_SLOT_OFFSET, nextSlot);
+	}
+
+	private void setFreeHead (int freeHead) {
+		this.freeHead = freeHead;
+		buffer.putInt(FREE_HEAD_OFFSET, freeHead);
+	}
+
+	private static int offset (int node) {
+		return HEADER_SIZE + node * RECORD_SIZE;
+	}
+
+	/**
+	 * Take a record from the free list, or a new one if the list is empty, and fill it as a leaf
+	 */
+	private int allocate (int key, long value) {
+		int node;
+		if (freeHead != NIL) {
+			node = freeHead;
+			setFreeHead(getLeft(node));
+		} else {
+			if (nextSlot == capacity) {
+				grow();
+			}
+			node = nextSlot;
+			setNextSlot(nextSlot + 1);
+		}
+		int offset = offset(node);
+		buffer.putInt(offset + KEY_OFFSET, key);
+		buffer.putInt(offset + SIZE_OFFSET, 1);
+		buffer.putInt(offset + LEFT_OFFSET, NIL);
+		buffer.putInt(offset + RIGHT_OFFSET, NIL);
+		buffer.putLong(offset + VALUE_OFFSET, value);
+		return node;
+	}
+
+	/**
+	 * Return a record to the free list
+	 */
+	private void free (int node) {
+		setSize(node, 0);
+		setRight(node, NIL);
+		setLeft(node, freeHead);
+		setFreeHead(node);
+	}
+
+	/**
+	 * Make the file bigger and map it again
+	 */
+	private void grow() {
+		if (capacity == MAX_CAPACITY) {
+			throw new IllegalStateException("Tree file is full (" + MAX_CAPACITY + " records)");
+		}
+		try {
+			buffer.force();
+			map((int) Math.min((long) capacity * 2, MAX_CAPACITY));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not grow tree file", e);
+		}
+	}
+
+	/**
+	 * Map the header and the given number of records, the file grows if it is smaller
+	 */
+	private void map (int capacity) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.capacity = capacity;
+	}
+}
@@ -0,0 +1,284 @@
+import java.util.Arrays;
+
+/**
+ * A red-black OS tree that keeps every key once, with the number of times it was added.
+ * Adding a key that is already in the tree only increases the count of its node,
+ * so many copies of a key take one node and do not make the paths longer.
+ *
+ * Sizes count the copies: select, rank and countInRange work as if every copy were
+ * its own node. select returns the node that holds the copy, and rank of a node is
+ * the rank of its last copy.
+ *
+ * The inherited insert and delete work on copies too: inserting a key that is already in
+ * the tree adds copies to its node, and deleting a node removes one copy of its key.
+ * join puts the copies of the key where the two trees meet into one node.
+ */
+public class MultisetOSTree extends RBOSTree {
+
+	/**
+	 * Constructor for a multiset OS tree
+	 */
+	public MultisetOSTree() {
+		super();
+	}
+
+	/**
+	 * Add one copy of a key
+	 * @param key
+	 * @return the node of the key
+	 */
+	public OSTreeNode add (int key) {
+		return add(key, 1);
+	}
+
+	/**
+	 * Add copies of a key. A new key gets a node with the given data,
+	 * a key that is already in the tree keeps the data of its node.
+	 * @param key
+	 * @param times the number of copies to add, at least 1
+	 * @param data
+	 * @return the node of the key
+	 */
+	public OSTreeNode add (int key, int times, Object data) {
+		if (times < 1) {
+			throw new IllegalArgumentException("Can't add " + times + " copies of a key");
+		}
+		OSTreeNode node = (OSTreeNode) find(key);
+		if (node == null) {
+			node = newNode(key, data);
+			node.count = times;
+			super.insertWithDepth(node);
+		} else {
+			changeCount(node, times);
+		}
+		return node;
+	}
+
+	/**
+	 * Add copies of a key
+	 * @param key
+	 * @param times the number of copies to add, at least 1
+	 * @return the node of the key
+	 */
+	public OSTreeNode add (int key, int times) {
+		return add(key, times, null);
+	}
+
+	/**
+	 * Remove one copy of a key
+	 * @param key
+	 * @return true if a copy was removed or false if the key wasn't found
+	 */
+	public boolean remove (int key) {
+		return remove(key, 1) == 1;
+	}
+
+	/**
+	 * Remove copies of a key, the node is deleted when its last copy is removed
+	 * @param key
+	 * @param times the most copies to remove
+	 * @return the number of copies removed, less than times if the tree had fewer
+	 */
+	public int remove (int key, int times) {
+		OSTreeNode node = (OSTreeNode) find(key);
+		if (node == null || times < 1) {
+			return 0;
+		}
+		if (node.count > times) {
+			changeCount(node, -times);
+			return times;
+		}
+		int removed = node.count;
+		super.delete(node);
+		node.count = 1;
+		node.size = 1;
+		return removed;
+	}
+
+	/**
+	 * Add one copy of a key, the same as add(key, 1, data)
+	 * @param key
+	 * @param data used only if the key is new
+	 * @return the node of the key
+	 */
+	public OSTreeNode insert (int key, Object data) {
+		return add(key, 1, data);
+	}
+
+	/**
+	 * Add the copies a node holds. If its key is already in the tree the copies go to the
+	 * node of the key and the given node is not put in the tree.
+	 * @param node
+	 * @return the depth the node was linked at, or the depth of the node of the key
+	 */
+	public int insertWithDepth (OSTreeNode node) {
+		int[] pathLength = new int[1];
+		OSTreeNode existing = (OSTreeNode) find(node.getKey(), pathLength);
+		if (existing == null) {
+			return super.insertWithDepth(node);
+		}
+		changeCount(existing, node.count);
+		return pathLength[0];
+	}
+
+	/**
+	 * Remove one copy of the key of a node, the node is deleted with its last copy
+	 * @param node a node of this tree
+	 */
+	public void delete (OSTreeNode node) {
+		if (node.count > 1) {
+			changeCount(node, -1);
+		} else {
+			super.delete(node);
+		}
+	}
+
+	/**
+	 * return the number of copies of a key
+	 * @param key
+	 * @return the number of copies, 0 if the key is not in the tree
+	 */
+	public int count (int key) {
+		OSTreeNode node = (OSTreeNode) find(key);
+		return node == null ? 0 : node.count;
+	}
+
+	/**
+	 * return the number of copies of all the keys
+	 */
+	public int size() {
+		return size(getRoot());
+	}
+
+	/**
+	 * return the number of different keys, which is the number of nodes
+	 */
+	public int distinctSize() {
+		int nodes = 0;
+		for (SearchTreeNode node : this) {
+			nodes++;
+		}
+		return nodes;
+	}
+
+	/**
+	 * Add all the keys of a batch, equal keys in the batch become one node
+	 * @param keys the keys, in any order
+	 * @param data the data of every key or null for no data
+	 */
+	public void insertAll (int[] keys, Object[] data) {
+		if (data != null && data.length != keys.length) {
+			throw new IllegalArgumentException("Got " + keys.length + " keys but " + data.length + " data items");
+		}
+
+		// Sort with the index so the data of the first copy of every key can be found
+		long[] order = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			order[i] = ((long) keys[i] << 32) | i;
+		}
+		Arrays.sort(order);
+
+		int i = 0;
+		while (i < order.length) {
+			int key = (int) (order[i] >> 32);
+			int run = i + 1;
+			while (run < order.length && (int) (order[run] >> 32) == key) {
+				run++;
+			}
+			add(key, run - i, data == null ? null : data[(int) order[i]]);
+			i = run;
+		}
+	}
+
+	/**
+	 * Remove one copy for every key of a batch, keys that are not in the tree are skipped
+	 * @param keys the keys, in any order
+	 * @return the number of copies removed
+	 */
+	public int deleteAll (int[] keys) {
+		int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+
+		int removed = 0;
+		int i = 0;
+		while (i < sorted.length) {
+			int run = i + 1;
+			while (run < sorted.length && sorted[run] == sorted[i]) {
+				run++;
+			}
+			removed += remove(sorted[i], run - i);
+			i = run;
+		}
+		return removed;
+	}
+
+	/**
+	 * Move all the copies of a given tree into this tree, keys that are in both trees
+	 * end up in one node. The given tree is left empty.
+	 * @param other
+	 */
+	public void union (RBOSTree other) {
+		for (OSTreeNode node : inOrder(other)) {
+			add(node.getKey(), node.count, node.getData());
+		}
+		other.setRoot(null);
+	}
+
+	/**
+	 * Move all the copies of a given tree to the end of this tree.
+	 * Every key in the given tree must be bigger than or equal to every key in this tree.
+	 * Copies of the key where the trees meet end up in one node. The given tree is left empty.
+	 * @param right
+	 */
+	public void join (RBOSTree right) {
+		if (!isEmpty() && !right.isEmpty()) {
+			OSTreeNode max = (OSTreeNode) findMax();
+			OSTreeNode min = (OSTreeNode) right.findMin();
+			while (min != null && min.getKey() == max.getKey()) {
+				right.unlink(min);
+				changeCount(max, min.count);
+				min.count = 1;
+				min.size = 1;
+				right.recycle(min);
+				min = (OSTreeNode) right.findMin();
+			}
+		}
+		super.join(right);
+	}
+
+	/**
+	 * Move all the copies after the first rank ones to a new tree. A rank that falls inside
+	 * the copies of a key gives the key a node in each tree, each with its part of the copies.
+	 * @param rank the number of copies this tree keeps
+	 * @return a tree with the rest of the copies
+	 */
+	protected RBOSTree splitAfter (int rank) {
+		OSTreeNode node = rank < 1 ? null : select(rank);
+		int above = node == null ? 0 : rank(node) - rank;
+		if (above == 0) {
+			return super.splitAfter(rank);
+		}
+		changeCount(node, -above);
+		MultisetOSTree upper = (MultisetOSTree) super.splitAfter(rank);
+		upper.add(node.getKey(), above, node.getData());
+		return upper;
+	}
+
+	/**
+	 * Return a new empty multiset tree, for the upper part of a split
+	 */
+	protected RBOSTree newEmptyTree() {
+		return new MultisetOSTree();
+	}
+
+	/**
+	 * Change the count of a node and the sizes of it and all the nodes above it
+	 */
+	private void changeCount (OSTreeNode node, int change) {
+		node.count += change;
+		for (OSTreeNode tempNode = node; tempNode != null; tempNode = tempNode.getFather()) {
+			tempNode.size += change;
+		}
+		updatePath(node);
+	}
+}
@@ -1,31 +1,310 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class OSTree extends SearchTree {
 	
+	// Below this number of keys a bulk build is not split between threads
+	private static final int PARALLEL_BUILD_THRESHOLD = 1 << 16;
+	
+	// A batch of at least 1/REBUILD_FACTOR of the tree is merged and the tree rebuilt,
+	// smaller batches go into the tree in one descent that visits every node on their paths once
+	static final int REBUILD_FACTOR = 8;
+	
+	// Deleted nodes go here and new nodes come from here, null when the tree doesn't pool nodes
+	private OSTreeNodePool nodePool;
+	
 	/**
 	 * Constructor for OS Tree
 	 */
 	 public OSTree() { 
 	      super(); 
 	   } 
+	 
+	/**
+	 * Build a balanced OS tree from sorted keys in linear time
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param data the data of every key or null for no data
+	 * @return a tree holding all the keys
+	 */
+	 public static OSTree fromSorted (int[] keys, Object[] data) {
+		 OSTree tree = new OSTree();
+		 tree.setRoot(buildBalanced(keys, data, -1, null));
+		 return tree;
+	 }
+	 
+	/**
+	 * Build a balanced OS tree from sorted keys, the subtrees are built in parallel on the given pool
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param data the data of every key or null for no data
+	 * @param pool the pool that builds the subtrees
+	 * @return a tree holding all the keys
+	 */
+	 public static OSTree fromSortedParallel (int[] keys, Object[] data, ForkJoinPool pool) {
+		 OSTree tree = new OSTree();
+		 tree.setRoot(buildBalanced(keys, data, -1, pool));
+		 return tree;
+	 }
+	 
+	/**
+	 * Build a balanced subtree from sorted keys and return its root.
+	 * Nodes are split around the middle key, so all the empty children are on the last two levels.
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param data the data of every key or null for no data
+	 * @param redDepth nodes at this depth are coloured red, -1 for none
+	 * @param pool the pool used to build in parallel or null to build in this thread
+	 * @return the root of the new subtree or null if there are no keys
+	 */
+	 protected static OSTreeNode buildBalanced (int[] keys, Object[] data, int redDepth, ForkJoinPool pool) {
+		 
+		 if (data != null && data.length != keys.length) {
+			 throw new IllegalArgumentException("Got " + keys.length + " keys but " + data.length + " data items");
+		 }
+		 for (int i = 1; i < keys.length; i++) {
+			 if (keys[i - 1] > keys[i]) {
+				 throw new IllegalArgumentException("Keys are not sorted at index " + i);
+			 }
+		 }
+		 
+		 BuildTask task = new BuildTask(keys, data, 0, keys.length, 0, redDepth);
+		 if (pool == null || keys.length < PARALLEL_BUILD_THRESHOLD) {
+			 return task.compute();
+		 }
+		 return pool.invoke(task);
+	 }
+	 
+	/**
+	 * Link existing nodes, given in key order, into a balanced subtree and return its root.
+	 * Nodes are split around the middle one the same way buildBalanced does.
+	 * @param nodes the nodes in key order
+	 * @param from index of the first node
+	 * @param to index after the last node
+	 * @param depth depth of the subtree's root
+	 * @param redDepth nodes at this depth are coloured red, -1 for none
+	 * @return the root of the subtree or null if there are no nodes
+	 */
+	 protected static OSTreeNode linkBalanced (OSTreeNode[] nodes, int from, int to, int depth, int redDepth) {
+		 if (from >= to) {
+			 return null;
+		 }
+		 int middle = (from + to) >>> 1;
+		 OSTreeNode node = nodes[middle];
+		 OSTreeNode left = linkBalanced(nodes, from, middle, depth + 1, redDepth);
+		 OSTreeNode right = linkBalanced(nodes, middle + 1, to, depth + 1, redDepth);
+		 node.setLeft(left);
+		 node.setRight(right);
+		 node.setFather(null);
+		 if (left != null) {
+			 left.setFather(node);
+		 }
+		 if (right != null) {
+			 right.setFather(node);
+		 }
+		 node.size = size(left) + size(right) + node.count;
+		 node.red = depth == redDepth;
+		 return node;
+	 }
+	 
+	 /**
+	  * Builds the subtree of the keys in [from, to), forking the two halves when they are big enough
+	  */
+	 private static class BuildTask extends RecursiveTask<OSTreeNode> {
+		 
+		 private static final long serialVersionUID = 1L;
+		 
+		 private final int[] keys;
+		 private final Object[] data;
+		 private final int from;
+		 private final int to;
+		 private final int depth;
+		 private final int redDepth;
+		 
+		 BuildTask (int[] keys, Object[] data, int from, int to, int depth, int redDepth) {
+			 this.keys = keys;
+			 this.data = data;
+			 this.from = from;
+			 this.to = to;
+			 this.depth = depth;
+			 this.redDepth = redDepth;
+		 }
+		 
+		 protected OSTreeNode compute() {
+			 if (to - from < PARALLEL_BUILD_THRESHOLD || getPool() == null) {
+				 return build(from, to, depth);
+			 }
+			 
+			 int middle = (from + to) >>> 1;
+			 BuildTask leftTask = new BuildTask(keys, data, from, middle, depth + 1, redDepth);
+			 BuildTask rightTask = new BuildTask(keys, data, middle + 1, to, depth + 1, redDepth);
+			 leftTask.fork();
+			 OSTreeNode right = rightTask.compute();
+			 OSTreeNode left = leftTask.join();
+			 return link(middle, depth, left, right);
+		 }
+		 
+		 private OSTreeNode build (int from, int to, int depth) {
+			 if (from >= to) {
+				 return null;
+			 }
+			 int middle = (from + to) >>> 1;
+			 OSTreeNode left = build(from, middle, depth + 1);
+			 OSTreeNode right = build(middle + 1, to, depth + 1);
+			 return link(middle, depth, left, right);
+		 }
+		 
+		 private OSTreeNode link (int index, int depth, OSTreeNode left, OSTreeNode right) {
+			 OSTreeNode node = new OSTreeNode(keys[index], data == null ? null : data[index]);
+			 node.setLeft(left);
+			 node.setRight(right);
+			 if (left != null) {
+				 left.setFather(node);
+			 }
+			 if (right != null) {
+				 right.setFather(node);
+			 }
+			 node.size = size(left) + size(right) + 1;
+			 node.red = depth == redDepth;
+			 return node;
+		 }
+	 }
 	
+	/**
+	 * Insert a new key to the tree, the node comes from the node pool if the tree has one
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	 public OSTreeNode insert (int key, Object data) {
+		 OSTreeNode node = newNode(key, data);
+		 insert(node);
+		 return node;
+	 }
+	 
 	/**
 	 * Insert a given OS node to the tree
 	 * @param node
 	 */
 	 public void insert (OSTreeNode node) {
+		 insertWithDepth(node);
+	 }
+	 
+	/**
+	 * Insert a given OS node to the tree and return the depth of the spot it was linked at,
+	 * counted on the way down of the insert, before any rebalancing.
+	 * Subclasses that change how a node is inserted override this method rather than insert.
+	 * @param node
+	 * @return the number of nodes from the root to the new node, the new node included
+	 */
+	 public int insertWithDepth (OSTreeNode node) {
 		 
 		 // Increase size for all the nodes above the new node
+		 // (equal keys go left, the same way SearchTree.insert places them)
+		 node.size = node.count;
+		 int depth = 1;
 		 OSTreeNode tempNode = getRoot(); 
 		 while (tempNode != null) { 
-			 tempNode.size++;
-			 if (node.getKey() < tempNode.getKey()) {
-				 tempNode = tempNode.getLeft();
+			 depth++;
+			 tempNode.size += node.count;
+			 if (tempNode.getKey() < node.getKey()) {
+				 tempNode = tempNode.getRight();
 			 } else {
-				 tempNode = tempNode.getRight(); 
+				 tempNode = tempNode.getLeft(); 
 			 }
 	    }
 		// Make in the insert
 		super.insert(node);
+		return depth;
+	}
+	
+	/**
+	 * Find and return a node in the tree with the given key, the same way find does,
+	 * and count the nodes its way down visits
+	 * @param key
+	 * @param pathLength its first cell is set to the number of nodes visited
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public SearchTreeNode find (int key, int[] pathLength) {
+		SearchTreeNode tempNode = getRoot();
+		int visited = 0;
+		while (tempNode != null) {
+			visited++;
+			if (tempNode.getKey() == key) {
+				break;
+			}
+			tempNode = key < tempNode.getKey() ? tempNode.getLeft() : tempNode.getRight();
+		}
+		pathLength[0] = visited;
+		return tempNode;
+	}
+	
+	/**
+	 * Find and return the successor of a node, the same way successor does, and count the links it follows
+	 * @param node
+	 * @param pathLength its first cell is set to the number of links followed, up to the root if there is no successor
+	 * @return the successor or null if node is the max node
+	 */
+	public SearchTreeNode successor (SearchTreeNode node, int[] pathLength) {
+		int steps = 0;
+		SearchTreeNode tempNode = node.getRight();
+		if (tempNode != null) {
+			steps++;
+			while (tempNode.getLeft() != null) {
+				tempNode = tempNode.getLeft();
+				steps++;
+			}
+			pathLength[0] = steps;
+			return tempNode;
+		}
+		
+		// Go up until coming from a left child
+		tempNode = node;
+		SearchTreeNode tempFather = node.getFather();
+		while (tempFather != null) {
+			steps++;
+			if (tempNode != tempFather.getRight()) {
+				break;
+			}
+			tempNode = tempFather;
+			tempFather = tempFather.getFather();
+		}
+		pathLength[0] = steps;
+		return tempFather;
+	}
+	
+	/**
+	 * Find and return the predecessor of a node, the same way predecessor does, and count the links it follows
+	 * @param node
+	 * @param pathLength its first cell is set to the number of links followed, up to the root if there is no predecessor
+	 * @return the predecessor or null if node is the min node
+	 */
+	public SearchTreeNode predecessor (SearchTreeNode node, int[] pathLength) {
+		int steps = 0;
+		SearchTreeNode tempNode = node.getLeft();
+		if (tempNode != null) {
+			steps++;
+			while (tempNode.getRight() != null) {
+				tempNode = tempNode.getRight();
+				steps++;
+			}
+			pathLength[0] = steps;
+			return tempNode;
+		}
+		
+		// Go up until coming from a right child
+		tempNode = node;
+		SearchTreeNode tempFather = node.getFather();
+		while (tempFather != null) {
+			steps++;
+			if (tempNode != tempFather.getLeft()) {
+				break;
+			}
+			tempNode = tempFather;
+			tempFather = tempFather.getFather();
+		}
+		pathLength[0] = steps;
+		return tempFather;
 	}
 	
 	/**
@@ -37,57 +316,581 @@ public class OSTree extends SearchTree {
 		OSTreeNode deletedNode = node;
 		if (!deletedNode.hasOneChild() && !deletedNode.isLeaf()) {
 			deletedNode = (OSTreeNode) successor(deletedNode);
+			
+			// The successor's key and data move into the node, its count goes with them
+			node.count = deletedNode.count;
 		}
+		OSTreeNode father = deletedNode.getFather();
 		
-		// Decrease size of all the nodes above the given node
-		OSTreeNode tempNode = getRoot();
-		while (tempNode != deletedNode) {
-			tempNode.size--;
-			if (deletedNode.getKey() < tempNode.getKey()) {
-				tempNode = tempNode.getLeft();
+		// Delete the node
+		super.delete(node);
+		
+		// Fix the size of all the nodes above the node that was taken out
+		OSTreeNode tempNode = father;
+		while (tempNode != null) {
+			tempNode.size = size(tempNode.getLeft()) + size(tempNode.getRight()) + tempNode.count;
+			tempNode = tempNode.getFather();
+		}
+		
+		// With two children the successor's object is the one that left the tree
+		recycle(deletedNode);
+	}
+	
+	/**
+	 * Insert a batch of keys to the tree.
+	 * The batch is sorted first. A big batch is merged with the nodes of the tree
+	 * and the tree is linked again as a balanced tree in one pass, a small batch goes down
+	 * the tree in one descent with insertSorted.
+	 * @param keys the keys, in any order
+	 * @param data the data of every key or null for no data
+	 */
+	public void insertAll (int[] keys, Object[] data) {
+		
+		if (data != null && data.length != keys.length) {
+			throw new IllegalArgumentException("Got " + keys.length + " keys but " + data.length + " data items");
+		}
+		
+		// Sort the key and its index together, so the data can follow its key
+		long[] order = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			order[i] = ((long) keys[i] << 32) | i;
+		}
+		Arrays.sort(order);
+		
+		int treeSize = size(getRoot());
+		if ((long) keys.length * REBUILD_FACTOR < treeSize) {
+			OSTreeNode[] nodes = new OSTreeNode[order.length];
+			for (int i = 0; i < order.length; i++) {
+				int index = (int) order[i];
+				nodes[i] = newNode((int) (order[i] >> 32), data == null ? null : data[index]);
+			}
+			insertSorted(nodes);
+			return;
+		}
+		
+		// Merge the batch into the nodes of the tree, on equal keys the nodes already in the tree come first
+		OSTreeNode[] nodes = inOrder(this);
+		OSTreeNode[] merged = new OSTreeNode[nodes.length + keys.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (j < order.length) {
+			int key = (int) (order[j] >> 32);
+			if (i < nodes.length && nodes[i].getKey() <= key) {
+				merged[k++] = nodes[i++];
+			} else {
+				int index = (int) order[j++];
+				merged[k++] = newNode(key, data == null ? null : data[index]);
+			}
+		}
+		while (i < nodes.length) {
+			merged[k++] = nodes[i++];
+		}
+		rebuild(merged, merged.length);
+	}
+	
+	/**
+	 * Delete one node for every key of a batch, the same way a delete of each key would.
+	 * Keys that are not in the tree are skipped.
+	 * A big batch is removed while going over the tree in one pass and the tree is linked again,
+	 * a small batch goes down the tree in one descent with deleteSorted.
+	 * @param keys the keys, in any order
+	 * @return the number of nodes deleted
+	 */
+	public int deleteAll (int[] keys) {
+		
+		int[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		
+		int treeSize = size(getRoot());
+		if ((long) sorted.length * REBUILD_FACTOR < treeSize) {
+			return deleteSorted(sorted);
+		}
+		
+		// Keep the nodes whose key is not next in the batch
+		OSTreeNode[] nodes = inOrder(this);
+		int j = 0;
+		int k = 0;
+		for (OSTreeNode node : nodes) {
+			while (j < sorted.length && sorted[j] < node.getKey()) {
+				j++;
+			}
+			if (j < sorted.length && sorted[j] == node.getKey()) {
+				j++;
+				node.setLeft(null);
+				node.setRight(null);
+				node.setFather(null);
+				recycle(node);
 			} else {
-				tempNode = tempNode.getRight(); 
-			} 	 
+				nodes[k++] = node;
+			}
+		}
+		rebuild(nodes, k);
+		return nodes.length - k;
+	}
+	
+	/**
+	 * Insert new nodes, sorted by key, in one descent of the tree.
+	 * The batch is split at every node by the node's key, so a node on the paths of several
+	 * new nodes is visited and has its size fixed once, and the new nodes that reach the same
+	 * empty place are linked there as a balanced subtree. Equal keys go left, the same way insert
+	 * places them. A subtree that the batch would put out of balance is linked again with its part.
+	 * @param nodes the new nodes in key order
+	 */
+	protected void insertSorted (OSTreeNode[] nodes) {
+		
+		// The parts of the batch still to insert, each into the right subtree of a node
+		OSTreeNode[] fathers = new OSTreeNode[nodes.length];
+		int[] froms = new int[nodes.length];
+		int[] tos = new int[nodes.length];
+		int parts = 0;
+		
+		OSTreeNode father = null;
+		boolean right = false;
+		int from = 0;
+		int to = nodes.length;
+		while (from < to || parts > 0) {
+			if (from == to) {
+				parts--;
+				father = fathers[parts];
+				right = true;
+				from = froms[parts];
+				to = tos[parts];
+			}
+			OSTreeNode node = father == null ? getRoot() : right ? father.getRight() : father.getLeft();
+			
+			// An empty place takes the rest of the part as a balanced subtree
+			if (node == null) {
+				OSTreeNode subtree = linkBalanced(nodes, from, to, 0, -1);
+				subtree.setFather(father);
+				if (father == null) {
+					setRoot(subtree);
+				} else if (right) {
+					father.setRight(subtree);
+				} else {
+					father.setLeft(subtree);
+				}
+				updateSubtree(subtree);
+				from = to;
+				continue;
+			}
+			
+			int split = firstAbove(nodes, from, to, node.getKey());
+			int leftSize = size(node.getLeft()) + split - from;
+			int rightSize = size(node.getRight()) + to - split;
+			if (isUnbalanced(leftSize + rightSize + node.count, leftSize, rightSize)) {
+				rebuildSubtree(node, nodes, from, to);
+				from = to;
+				continue;
+			}
+			node.size += to - from;
+			
+			if (from < split && split < to) {
+				fathers[parts] = node;
+				froms[parts] = split;
+				tos[parts] = to;
+				parts++;
+				to = split;
+			}
+			father = node;
+			right = from == split;
 		}
+	}
+	
+	/**
+	 * Delete one node for every key of a sorted batch in one descent of the tree.
+	 * The batch is split at every node by the node's key, and the nodes it reaches are finished
+	 * bottom up, so a node on the paths of several keys is visited and has its size fixed once.
+	 * A node with a key of its part is taken out and the smallest node of its right subtree takes
+	 * its place. More copies of a key in the batch are deleted one by one after the descent.
+	 * A subtree that the deletes put out of balance is linked again.
+	 * @param keys the keys in order
+	 * @return the number of nodes deleted
+	 */
+	protected int deleteSorted (int[] keys) {
 		
-		// Delete the node
-		super.delete(node);
+		// Go down first and list the nodes the batch reaches, every node before its descendants
+		ArrayList<Part> reached = new ArrayList<Part>();
+		ArrayDeque<Part> stack = new ArrayDeque<Part>();
+		if (getRoot() != null && keys.length > 0) {
+			stack.push(new Part(getRoot(), 0, keys.length));
+		}
+		while (!stack.isEmpty()) {
+			Part part = stack.pop();
+			OSTreeNode node = part.node;
+			part.low = firstAbove(keys, part.from, part.to, node.getKey(), true);
+			part.high = firstAbove(keys, part.low, part.to, node.getKey(), false);
+			reached.add(part);
+			if (part.from < part.low && node.getLeft() != null) {
+				stack.push(new Part(node.getLeft(), part.from, part.low));
+			}
+			if (part.high < part.to && node.getRight() != null) {
+				stack.push(new Part(node.getRight(), part.high, part.to));
+			}
+		}
+		
+		// Finish them in reverse, so the subtrees of a node are done before it
+		int deleted = 0;
+		int[] rest = new int[keys.length];
+		int restCount = 0;
+		for (int p = reached.size() - 1; p >= 0; p--) {
+			Part part = reached.get(p);
+			OSTreeNode node = part.node;
+			OSTreeNode left = node.getLeft();
+			OSTreeNode right = node.getRight();
+			
+			if (part.low == part.high) {
+				node.size = size(left) + size(right) + node.count;
+				if (isUnbalanced(node.size, size(left), size(right))) {
+					rebuildSubtree(node, null, 0, 0);
+				}
+				continue;
+			}
+			for (int i = part.low + 1; i < part.high; i++) {
+				rest[restCount++] = keys[i];
+			}
+			
+			if (left == null || right == null) {
+				replaceChild(node, left == null ? right : left);
+			} else {
+				
+				// The smallest node of the right subtree moves up into the node's place
+				OSTreeNode scapegoat = null;
+				OSTreeNode min = right;
+				while (min.getLeft() != null) {
+					min = min.getLeft();
+				}
+				if (min != right) {
+					OSTreeNode tempNode = min.getFather();
+					replaceChild(min, min.getRight());
+					for (; tempNode != node; tempNode = tempNode.getFather()) {
+						tempNode.size -= min.count;
+						if (isUnbalanced(tempNode.size, size(tempNode.getLeft()), size(tempNode.getRight()))) {
+							scapegoat = tempNode;
+						}
+					}
+					min.setRight(right);
+					right.setFather(min);
+				}
+				min.setLeft(left);
+				left.setFather(min);
+				replaceChild(node, min);
+				min.size = size(left) + size(min.getRight()) + min.count;
+				if (isUnbalanced(min.size, size(left), size(min.getRight()))) {
+					scapegoat = min;
+				}
+				if (scapegoat != null) {
+					rebuildSubtree(scapegoat, null, 0, 0);
+				}
+			}
+			node.setLeft(null);
+			node.setRight(null);
+			node.setFather(null);
+			node.size = node.count;
+			recycle(node);
+			deleted++;
+		}
+		
+		for (int i = 0; i < restCount; i++) {
+			OSTreeNode node = (OSTreeNode) find(rest[i]);
+			if (node != null) {
+				delete(node);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+	
+	/**
+	 * return true if a node with the given sizes has to be linked again, OSTree keeps no balance
+	 * @param size the size of the node's subtree
+	 * @param leftSize the size of its left subtree
+	 * @param rightSize the size of its right subtree
+	 */
+	protected boolean isUnbalanced (int size, int leftSize, int rightSize) {
+		return false;
+	}
+	
+	/**
+	 * Link the nodes of a subtree again as a balanced subtree in the same place,
+	 * with the new nodes batch[from..to), sorted by key, merged in after the nodes with equal keys
+	 * @param root the root of the subtree
+	 */
+	protected void rebuildSubtree (OSTreeNode root, OSTreeNode[] batch, int from, int to) {
+		OSTreeNode father = root.getFather();
+		boolean isLeft = father != null && father.getLeft() == root;
+		
+		// Collect the nodes in key order, the stack holds the nodes whose left side is being visited
+		OSTreeNode[] nodes = new OSTreeNode[root.size + to - from];
+		int count = 0;
+		ArrayDeque<OSTreeNode> stack = new ArrayDeque<OSTreeNode>();
+		OSTreeNode node = root;
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				stack.push(node);
+				node = node.getLeft();
+			}
+			node = stack.pop();
+			while (from < to && batch[from].getKey() < node.getKey()) {
+				nodes[count++] = batch[from++];
+			}
+			nodes[count++] = node;
+			node = node.getRight();
+		}
+		while (from < to) {
+			nodes[count++] = batch[from++];
+		}
+		
+		OSTreeNode newRoot = linkBalanced(nodes, 0, count, 0, -1);
+		if (father == null) {
+			setRoot(newRoot);
+		} else {
+			newRoot.setFather(father);
+			if (isLeft) {
+				father.setLeft(newRoot);
+			} else {
+				father.setRight(newRoot);
+			}
+		}
+		updateSubtree(newRoot);
+	}
+	
+	/**
+	 * return the index of the first of nodes[from..to) with a key bigger than key
+	 */
+	private static int firstAbove (OSTreeNode[] nodes, int from, int to, int key) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (nodes[middle].getKey() > key) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+		}
+		return from;
+	}
+	
+	/**
+	 * return the index of the first of keys[from..to) that is bigger than key, or not smaller when orEqual is true
+	 */
+	private static int firstAbove (int[] keys, int from, int to, int key, boolean orEqual) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (keys[middle] > key || (orEqual && keys[middle] == key)) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+		}
+		return from;
+	}
+	
+	/**
+	 * A node that deleteSorted reaches, with the part of the batch that goes into its subtree
+	 * and the keys of that part equal to its own key
+	 */
+	private static final class Part {
+		final OSTreeNode node;
+		final int from;
+		final int to;
+		int low;
+		int high;
+		
+		Part(OSTreeNode node, int from, int to) {
+			this.node = node;
+			this.from = from;
+			this.to = to;
+		}
+	}
+	
+	/**
+	 * Make the first count nodes, given in key order, the whole tree, linked as a balanced tree
+	 */
+	protected void rebuild (OSTreeNode[] nodes, int count) {
+		setRoot(linkBalanced(nodes, 0, count, 0, rebuildRedDepth(count)));
+		updateSubtree(getRoot());
 	}
 	
 	/**
 	 * return the i-th node in the list
 	 * @param i
-	 * @return return the i-th node in the list
+	 * @return return the i-th node in the list or null if there is no such node
 	 */
 	   public OSTreeNode select (int i) { 
 		  
-		  // Start from the min node
-		  OSTreeNode tempNode = (OSTreeNode) this.findMin();
-		   
-		  // the the successor i times to find th i-th node in the list
-		  for (int j = 1; j < i; j++) {
-			   tempNode = (OSTreeNode) this.successor(tempNode);
-		   }
-		   return tempNode;
+		  // Start from the root and go down by the sizes of the left subtrees
+		  OSTreeNode tempNode = getRoot();
+		  while (tempNode != null) {
+			  int leftSize = size(tempNode.getLeft());
+			  if (i <= leftSize) {
+				  tempNode = tempNode.getLeft();
+			  } else if (i <= leftSize + tempNode.count) {
+				  return tempNode;
+			  } else {
+				  i -= leftSize + tempNode.count;
+				  tempNode = tempNode.getRight();
+			  }
+		  }
+		  return null;
 	   } 
 	
 	/**
 	 * return the rank of a node
-	 * @param x
+	 * @param node
 	 * @return return the rank of a node
 	 */
 	   public int rank (OSTreeNode node) { 		   
 		   
-		   int counter = 1;
+		   int counter = size(node.getLeft()) + node.count;
 		   OSTreeNode tempNode = node;
 		   
-		   // Keep going to the predecessor until reaching null and count the times
-		   while (this.predecessor(tempNode) != null) {
-			   counter++;
-			   tempNode = (OSTreeNode) super.predecessor(tempNode);
+		   // Go up to the root and count the nodes left of the path every time we come from the right
+		   while (tempNode.getFather() != null) {
+			   OSTreeNode tempFather = tempNode.getFather();
+			   if (tempNode == tempFather.getRight()) {
+				   counter += size(tempFather.getLeft()) + tempFather.count;
+			   }
+			   tempNode = tempFather;
 		   }
 		   return counter;
 	   } 
+	   
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key.
+	 * For a key in the tree this is its rank, the key does not have to be in the tree.
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	   public int rank (int key) {
+		   
+		   int counter = 0;
+		   OSTreeNode tempNode = getRoot();
+		   
+		   // Go down and count the left subtree and the node every time we turn right
+		   while (tempNode != null) {
+			   if (tempNode.getKey() <= key) {
+				   counter += size(tempNode.getLeft()) + tempNode.count;
+				   tempNode = tempNode.getRight();
+			   } else {
+				   tempNode = tempNode.getLeft();
+			   }
+		   }
+		   return counter;
+	   }
+
+	/**
+	 * return the number of nodes with a key in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 * @return the number of nodes with lo <= key <= hi
+	 */
+	   public int countInRange (int lo, int hi) {
+		   if (lo > hi) {
+			   return 0;
+		   }
+		   return rank(hi) - countLess(lo);
+	   }
+	   
+	/**
+	 * return the nodes with a key in [lo, hi] in key order.
+	 * The nodes are found one by one while iterating, the tree must not change meanwhile.
+	 * @param lo
+	 * @param hi
+	 * @return the range of nodes with lo <= key <= hi
+	 */
+	   public OSTreeRange range (int lo, int hi) {
+		   if (lo > hi) {
+			   return new OSTreeRange(this, 1, 0);
+		   }
+		   return new OSTreeRange(this, countLess(lo) + 1, rank(hi));
+	   }
+	   
+	/**
+	 * return the number of nodes with a key smaller than the given key
+	 */
+	   private int countLess (int key) {
+		   return key == Integer.MIN_VALUE ? 0 : rank(key - 1);
+	   }
+	   
+	   /**
+	    * Fix the sizes of the two nodes that took part in a rotation
+	    */
+	   protected void updateAfterRotation (SearchTreeNode lower, SearchTreeNode upper) {
+		   
+		   OSTreeNode lowerNode = (OSTreeNode) lower;
+		   OSTreeNode upperNode = (OSTreeNode) upper;
+		   
+		   // The upper node now holds the whole subtree, the lower node lost part of it
+		   upperNode.size = lowerNode.size;
+		   lowerNode.size = size(lowerNode.getLeft()) + size(lowerNode.getRight()) + lowerNode.count;
+	   }
+	   
+	   /**
+	    * Make the tree take its new nodes from a pool and give its deleted nodes to it
+	    * @param nodePool the pool, or null to stop pooling
+	    */
+	   public void setNodePool (OSTreeNodePool nodePool) {
+		   this.nodePool = nodePool;
+	   }
+	   
+	   /**
+	    * Create the node for a key added by insert(key, data) or insertAll
+	    * @param key
+	    * @param data
+	    * @return a new node of the kind this tree holds
+	    */
+	   protected OSTreeNode newNode (int key, Object data) {
+		   return nodePool == null ? new OSTreeNode(key, data) : nodePool.take(key, data);
+	   }
+	   
+	   /**
+	    * Called with every node that was taken out of the tree, gives it to the node pool if there is one
+	    * @param node
+	    */
+	   protected void recycle (OSTreeNode node) {
+		   if (nodePool != null) {
+			   nodePool.put(node);
+		   }
+	   }
+	   
+	   /**
+	    * return the depth whose nodes are coloured red when the tree is linked again, -1 for none
+	    * @param size the number of nodes in the rebuilt tree
+	    */
+	   protected int rebuildRedDepth (int size) {
+		   return -1;
+	   }
+	   
+	   /**
+	    * Called after a whole subtree was linked again without rotations.
+	    * Subclasses that keep more fields per subtree compute them for every node of the subtree.
+	    * @param node the root of the subtree
+	    */
+	   protected void updateSubtree (OSTreeNode node) {
+	   }
+	   
+	   /**
+	    * return all the nodes of a tree in key order
+	    */
+	   protected static OSTreeNode[] inOrder (OSTree tree) {
+		   OSTreeNode[] nodes = new OSTreeNode[size(tree.getRoot())];
+		   int i = 0;
+		   for (SearchTreeNode node : tree) {
+			   nodes[i++] = (OSTreeNode) node;
+		   }
+		   
+		   // Nodes that hold several copies of their key leave the end of the array empty
+		   return i == nodes.length ? nodes : Arrays.copyOf(nodes, i);
+	   }
+	   
+	   /**
+	    * return the size of the subtree of a node
+	    * @param node
+	    * @return the size of the subtree or 0 if node is null
+	    */
+	   protected static int size (OSTreeNode node) {
+		   return node == null ? 0 : node.size;
+	   }
 
 	   /**
 	    * return root
@@ -153,8 +956,8 @@ public class OSTree extends SearchTree {
 			System.out.println("Select node number 6: " + tree.select(6).getKey());
 			System.out.println("Select node number 9: " + tree.select(9).getKey());
 			System.out.println("Select node number 13: " + tree.select(13).getKey());
-			System.out.println("Select node number 21: " + tree.select(21).getKey());
+			System.out.println("Select node number 17: " + tree.select(17).getKey());
 			System.out.println("Select node number 15: " + tree.select(15).getKey());
-			System.out.println("Select node number 19: " + tree.select(19).getKey());
+			System.out.println("Select node number 16: " + tree.select(16).getKey());
 	   }
 }
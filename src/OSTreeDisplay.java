@@ -3,7 +3,9 @@ import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A class for drawing trees.
@@ -67,6 +69,9 @@ public class OSTreeDisplay extends Frame {
    private List<Node> nodes;
    private List<Connector> connectors;
 
+   // Index of the nodes by id, so looking up a node does not scan the list.
+   private Map<Integer, Node> nodesById;
+
    // Radius of the circle drawn for each node.
    private int nodeSize;
 
@@ -97,6 +102,7 @@ public class OSTreeDisplay extends Frame {
       this.nodeSize = nodeSize;
       nodes = new ArrayList<Node>();
       connectors = new ArrayList<Connector>();
+      nodesById = new HashMap<Integer, Node>();
 
       // Add a listener to make 'X' close the window.
       addWindowListener (new WindowAdapter() {
@@ -123,7 +129,9 @@ public class OSTreeDisplay extends Frame {
       if (getNode (id) != null)
          throw new OSTreeDisplayException ("Duplicate node id: " + id + ".");
 
-      nodes.add (new Node (x, y, id, size));
+      Node node = new Node (x, y, id, size);
+      nodes.add (node);
+      nodesById.put (id, node);
    }
 
 
@@ -170,13 +178,7 @@ public class OSTreeDisplay extends Frame {
     */
    private Node getNode (int id) {
 
-      Node foundNode = null;
-
-      for (Node node: nodes)
-         if (node.id == id)
-            foundNode = node;
-
-      return foundNode;
+      return nodesById.get (id);
    }
 
 
@@ -255,12 +257,16 @@ public class OSTreeDisplay extends Frame {
 
    /**
     * Opens a graphics window and displays the heap in tree format.
+    * Use OSTreeRenderer to draw a tree into a file where there is no display.
     *
     * @throws OSTreeDisplayException Thrown if the tree cannot be drawn.
     * @param tree the tree to draw
     */
    public static void draw (SearchTree tree) throws OSTreeDisplayException {
 
+      if (GraphicsEnvironment.isHeadless ())
+         throw new OSTreeDisplayException ("No display available, use OSTreeRenderer to draw into a file.");
+
       OSTreeDisplay disp =
             new OSTreeDisplay (DEFAULT_X_SIZE, DEFAULT_Y_SIZE, DEFAULT_NODE_SIZE);
 
@@ -0,0 +1,146 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The counters and histograms of an InstrumentedOSTree.
+ * Every histogram also counts its operations, so there are no separate counters.
+ */
+public class OSTreeMetrics implements OSTreeMetricsMXBean {
+
+	private final InstrumentedOSTree tree;
+
+	final PowerOfTwoHistogram insertLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram deleteLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram findLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram successorLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram predecessorLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram selectLatency = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram rankLatency = new PowerOfTwoHistogram();
+
+	final PowerOfTwoHistogram insertDepth = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram findPathLength = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram successorPathLength = new PowerOfTwoHistogram();
+	final PowerOfTwoHistogram predecessorPathLength = new PowerOfTwoHistogram();
+
+	private volatile int maxInsertDepth;
+
+	OSTreeMetrics (InstrumentedOSTree tree) {
+		this.tree = tree;
+	}
+
+	/**
+	 * Count the depth of an insert and keep the deepest one
+	 */
+	void recordInsertDepth (int depth) {
+		insertDepth.record(depth);
+		if (depth > maxInsertDepth) {
+			maxInsertDepth = depth;
+		}
+	}
+
+	/**
+	 * Make the metrics visible through JMX in the platform MBean server
+	 * @param name the object name, for example "OSTree:name=orders"
+	 * @throws JMException if the name is not valid or already taken
+	 */
+	public void register (String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+	}
+
+	/**
+	 * Remove the metrics from the platform MBean server
+	 * @param name the object name they were registered with
+	 * @throws JMException if nothing is registered with the name
+	 */
+	public void unregister (String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+	}
+
+	public PowerOfTwoHistogram getInsertLatency() {
+		return insertLatency;
+	}
+
+	public PowerOfTwoHistogram getDeleteLatency() {
+		return deleteLatency;
+	}
+
+	public PowerOfTwoHistogram getFindLatency() {
+		return findLatency;
+	}
+
+	public PowerOfTwoHistogram getSuccessorLatency() {
+		return successorLatency;
+	}
+
+	public PowerOfTwoHistogram getPredecessorLatency() {
+		return predecessorLatency;
+	}
+
+	public PowerOfTwoHistogram getSelectLatency() {
+		return selectLatency;
+	}
+
+	public PowerOfTwoHistogram getRankLatency() {
+		return rankLatency;
+	}
+
+	public PowerOfTwoHistogram getInsertDepth() {
+		return insertDepth;
+	}
+
+	public PowerOfTwoHistogram getFindPathLength() {
+		return findPathLength;
+	}
+
+	public PowerOfTwoHistogram getSuccessorPathLength() {
+		return successorPathLength;
+	}
+
+	public PowerOfTwoHistogram getPredecessorPathLength() {
+		return predecessorPathLength;
+	}
+
+	/**
+	 * return the number of nodes in the tree
+	 */
+	public int getSize() {
+		return tree.size();
+	}
+
+	/**
+	 * return the deepest spot an insert linked a node at since the tree was wrapped.
+	 * It is kept on every insert and not cleared by reset. Deletes and rotations do not lower it,
+	 * so it follows the height of the tree from above while the tree grows.
+	 */
+	public int getMaxInsertDepth() {
+		return maxInsertDepth;
+	}
+
+	/**
+	 * return the deepest insert since the last reset divided by the height
+	 * of a perfect tree of the current size. A red-black tree stays below 2,
+	 * an unbalanced tree grows towards size / log2(size).
+	 */
+	public double getBalanceFactor() {
+		int size = tree.size();
+		if (size == 0) {
+			return 0;
+		}
+		double perfectHeight = Math.log(size + 1.0) / Math.log(2);
+		return insertDepth.getMax() / Math.ceil(perfectHeight);
+	}
+
+	/**
+	 * Forget all the values counted so far
+	 */
+	public void reset() {
+		PowerOfTwoHistogram[] histograms = { insertLatency, deleteLatency, findLatency, successorLatency,
+				predecessorLatency, selectLatency, rankLatency, insertDepth, findPathLength,
+				successorPathLength, predecessorPathLength };
+		for (PowerOfTwoHistogram histogram : histograms) {
+			histogram.reset();
+		}
+	}
+}
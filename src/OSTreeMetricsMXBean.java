@@ -0,0 +1,36 @@
+/**
+ * The metrics of an InstrumentedOSTree as seen through JMX.
+ * Latencies are in nanoseconds, path lengths and depths are numbers of nodes.
+ */
+public interface OSTreeMetricsMXBean {
+
+	PowerOfTwoHistogram getInsertLatency();
+
+	PowerOfTwoHistogram getDeleteLatency();
+
+	PowerOfTwoHistogram getFindLatency();
+
+	PowerOfTwoHistogram getSuccessorLatency();
+
+	PowerOfTwoHistogram getPredecessorLatency();
+
+	PowerOfTwoHistogram getSelectLatency();
+
+	PowerOfTwoHistogram getRankLatency();
+
+	PowerOfTwoHistogram getInsertDepth();
+
+	PowerOfTwoHistogram getFindPathLength();
+
+	PowerOfTwoHistogram getSuccessorPathLength();
+
+	PowerOfTwoHistogram getPredecessorPathLength();
+
+	int getSize();
+
+	int getMaxInsertDepth();
+
+	double getBalanceFactor();
+
+	void reset();
+}
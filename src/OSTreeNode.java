@@ -1,15 +1,23 @@
 
 public class OSTreeNode extends SearchTreeNode {
 	int size;
+	
+	// Number of copies of the key this node stands for, more than 1 only in a MultisetOSTree
+	int count;
+	
+	// Colour of the node, only used when the node is kept in an RBOSTree
+	boolean red;
 
 	public OSTreeNode(int key, Object data) {
 		super(key, data);
 		this.size = 1;
+		this.count = 1;
 	}
 
 	public OSTreeNode(int key) {
 		super(key, null);
 		this.size = 1;
+		this.count = 1;
 	}
 
 	public void setFather(OSTreeNode node) { 
@@ -43,6 +51,18 @@ public class OSTreeNode extends SearchTreeNode {
 	public void setSize(int size) {
 		this.size = size;
 	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public boolean isRed() {
+		return red;
+	}
+	
+	public void setRed(boolean red) {
+		this.red = red;
+	}
 }
 
 	
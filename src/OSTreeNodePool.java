@@ -0,0 +1,74 @@
+/**
+ * Keeps the nodes deleted from an OS tree and hands them out again for new keys,
+ * so a tree whose size stays about the same allocates no nodes once the pool is warm.
+ *
+ * A tree uses a pool after OSTree.setNodePool. Its deleted nodes go to the pool and
+ * insert(key, data) and insertAll take their nodes from it, so a node must not be used
+ * after it was deleted. Like the trees, a pool is not safe for use by many threads.
+ */
+public class OSTreeNodePool {
+
+	private final OSTreeNode[] free;
+	private int count;
+	private long allocated;
+
+	/**
+	 * Constructor for a pool that keeps up to a given number of free nodes
+	 * @param capacity the most free nodes kept, more deleted nodes are left to the garbage collector
+	 */
+	public OSTreeNodePool(int capacity) {
+		free = new OSTreeNode[capacity];
+	}
+
+	/**
+	 * Take a node from the pool, or make a new one if the pool is empty
+	 * @param key
+	 * @param data
+	 * @return a node with the given key and data and no links
+	 */
+	public OSTreeNode take (int key, Object data) {
+		if (count == 0) {
+			allocated++;
+			return new OSTreeNode(key, data);
+		}
+		OSTreeNode node = free[--count];
+		free[count] = null;
+		node.setKey(key);
+		node.setData(data);
+		return node;
+	}
+
+	/**
+	 * Give a node that was taken out of a tree back to the pool
+	 * @param node
+	 */
+	public void put (OSTreeNode node) {
+		if (count == free.length) {
+			return;
+		}
+
+		// Clear everything so the pool holds no data or other nodes alive
+		node.setLeft(null);
+		node.setRight(null);
+		node.setFather(null);
+		node.setData(null);
+		node.size = 1;
+		node.count = 1;
+		node.red = false;
+		free[count++] = node;
+	}
+
+	/**
+	 * return the number of free nodes in the pool
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * return the number of nodes take() had to allocate because the pool was empty
+	 */
+	public long getAllocated() {
+		return allocated;
+	}
+}
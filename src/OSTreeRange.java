@@ -0,0 +1,86 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The nodes of an OSTree between two ranks, in key order.
+ * The nodes are not collected up front: the first one is found by select
+ * and every next one is the successor of the one before.
+ * A node that holds several copies of its key is returned once for every copy in the range.
+ * A range can be split in two halves of equal size to process them in parallel.
+ */
+public class OSTreeRange implements Iterable<OSTreeNode> {
+
+	private final OSTree tree;
+	private int fromRank;
+	private final int toRank;
+
+	/**
+	 * Constructor for the range of nodes with rank fromRank to toRank (inclusive)
+	 * @param tree
+	 * @param fromRank
+	 * @param toRank
+	 */
+	OSTreeRange(OSTree tree, int fromRank, int toRank) {
+		this.tree = tree;
+		this.fromRank = fromRank;
+		this.toRank = toRank;
+	}
+
+	/**
+	 * return the number of nodes in the range
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return Math.max(toRank - fromRank + 1, 0);
+	}
+
+	/**
+	 * Take the lower half of this range out into a new range, this range keeps the upper half
+	 * @return the lower half or null if the range is too small to split
+	 */
+	public OSTreeRange split() {
+		if (size() < 2) {
+			return null;
+		}
+		int middle = fromRank + size() / 2;
+		OSTreeRange lower = new OSTreeRange(tree, fromRank, middle - 1);
+		fromRank = middle;
+		return lower;
+	}
+
+	/**
+	 * return an iterator over the nodes of the range, in key order
+	 */
+	public Iterator<OSTreeNode> iterator() {
+		return new Iterator<OSTreeNode>() {
+
+			private OSTreeNode next = size() > 0 ? tree.select(fromRank) : null;
+			private int left = size();
+
+			// Copies of the next node's key still in the range, more than 1 only in a MultisetOSTree
+			private int copies = next == null ? 0 : tree.rank(next) - fromRank + 1;
+
+			public boolean hasNext() {
+				return left > 0;
+			}
+
+			public OSTreeNode next() {
+				if (left == 0) {
+					throw new NoSuchElementException();
+				}
+				OSTreeNode node = next;
+				left--;
+				copies--;
+				if (copies == 0) {
+					next = left > 0 ? (OSTreeNode) tree.successor(node) : null;
+					copies = next == null ? 0 : next.getCount();
+				}
+				return node;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,429 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Draws trees into PNG or SVG files, without a display.
+ *
+ * Every node gets its own column in key order and a row by its depth,
+ * so nodes never overlap and the layout takes linear time.
+ * Subtrees deeper than the maximum depth, or under a node chosen with collapse(),
+ * are drawn as a single triangle with the number of nodes they hold.
+ */
+public class OSTreeRenderer {
+
+   /**
+    * A node or a collapsed subtree placed in the picture.
+    */
+   private static class Item {
+
+      private final SearchTreeNode node;
+      private final int column;
+      private final int depth;
+      private final int collapsed;
+
+      public Item (SearchTreeNode node, int column, int depth, int collapsed) {
+         this.node      = node;
+         this.column    = column;
+         this.depth     = depth;
+         this.collapsed = collapsed;
+      }
+   }
+
+
+   // Define colors for different elements, the same as in OSTreeDisplay.
+   private static final Color BACKGROUND_COLOR = Color.white;
+   private static final Color NODE_COLOR       = new Color (130, 230, 170);
+   private static final Color RED_NODE_COLOR   = new Color (240, 120, 120);
+   private static final Color COLLAPSED_COLOR  = new Color (200, 200, 200);
+   private static final Color TEXT_COLOR       = Color.black;
+   private static final Color LINE_COLOR       = Color.black;
+
+   private static final int DEFAULT_NODE_SIZE = 35;
+   private static final int NO_DEPTH_LIMIT    = Integer.MAX_VALUE;
+
+   // Largest PNG width or height, columns are squeezed to fit.
+   private static final int MAX_IMAGE_SIZE    = 16000;
+
+   // Below this column width nodes are drawn as dots without text.
+   private static final int MIN_LABEL_SPACE   = 20;
+
+   // Radius of the circle drawn for each node.
+   private int nodeSize;
+
+   // Nodes deeper than this are collapsed into their ancestor at this depth.
+   private int maxDepth;
+
+   // Keys of nodes whose subtrees are collapsed.
+   private Set<Integer> collapsedKeys;
+
+
+   /**
+    * Default constructor.
+    * Creates a renderer with the default node size (35) and no depth limit.
+    */
+   public OSTreeRenderer () {
+      this (DEFAULT_NODE_SIZE, NO_DEPTH_LIMIT);
+   }
+
+
+   /**
+    * Constructor.
+    *
+    * @param nodeSize radius of the circle drawn for each node.
+    * @param maxDepth deepest level to draw, deeper subtrees are collapsed.
+    */
+   public OSTreeRenderer (int nodeSize, int maxDepth) {
+      this.nodeSize = nodeSize;
+      this.maxDepth = maxDepth;
+      this.collapsedKeys = new HashSet<Integer>();
+   }
+
+
+   /**
+    * Draws the subtree of the node with the given key as one collapsed triangle.
+    *
+    * @param key the key of the subtree's root.
+    */
+   public void collapse (int key) {
+      collapsedKeys.add (key);
+   }
+
+
+   /**
+    * Draws a tree into a PNG file.
+    * Wide trees are squeezed to fit MAX_IMAGE_SIZE, dropping the text when nodes get too small.
+    *
+    * @param tree the tree to draw.
+    * @param file the file to write.
+    * @throws IOException if the file cannot be written.
+    */
+   public void writePng (SearchTree tree, File file) throws IOException {
+
+      List<Item> items = layout (tree);
+      int columns = Math.max (columnCount (items), 1);
+      int rows = Math.max (rowCount (items), 1);
+
+      // Columns may get narrower than a pixel, then neighbours share it.
+      double xStep = Math.min (nodeSize * 1.5, (MAX_IMAGE_SIZE - nodeSize * 2) / (double)columns);
+      boolean labels = xStep >= MIN_LABEL_SPACE;
+      double yStep = labels ? nodeSize * 3 : Math.max (xStep * 3, 6);
+      yStep = Math.min (yStep, (MAX_IMAGE_SIZE - nodeSize * 4) / (double)rows);
+      int radius = Math.max (1, (int)Math.min (nodeSize, xStep - 1) / 2);
+
+      int width = (int)(columns * xStep) + nodeSize * 2;
+      int height = (int)(rows * yStep) + nodeSize * 4;
+      BufferedImage image = new BufferedImage (width, height, BufferedImage.TYPE_INT_RGB);
+      Graphics2D painter = image.createGraphics ();
+
+      // Smoothing tiny dots costs a lot of time and shows nothing.
+      if (labels)
+         painter.setRenderingHint (RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      painter.setColor (BACKGROUND_COLOR);
+      painter.fillRect (0, 0, width, height);
+      painter.setFont (new Font ("sanserif", Font.PLAIN, Math.max (radius, 1)));
+
+      // Lines first, so the nodes are drawn over them.
+      painter.setColor (LINE_COLOR);
+      Map<SearchTreeNode, Item> byNode = index (items);
+      for (Item item: items) {
+         Item father = byNode.get (item.node.getFather ());
+         if (father != null)
+            painter.drawLine (x (father, xStep), y (father, yStep), x (item, xStep), y (item, yStep));
+      }
+
+      for (Item item: items) {
+
+         int x = x (item, xStep);
+         int y = y (item, yStep);
+
+         if (item.collapsed > 0) {
+            int[] xs = { x, x - radius, x + radius };
+            int[] ys = { y - radius, y + radius * 2, y + radius * 2 };
+            painter.setColor (COLLAPSED_COLOR);
+            painter.fillPolygon (xs, ys, 3);
+            painter.setColor (LINE_COLOR);
+            painter.drawPolygon (xs, ys, 3);
+         } else {
+            painter.setColor (fillColor (item));
+            painter.fillOval (x - radius, y - radius, radius * 2, radius * 2);
+            painter.setColor (LINE_COLOR);
+            painter.drawOval (x - radius, y - radius, radius * 2, radius * 2);
+         }
+
+         if (labels) {
+            painter.setColor (TEXT_COLOR);
+            String text = label (item);
+            int textWidth = painter.getFontMetrics ().stringWidth (text);
+            painter.drawString (text, x - textWidth / 2, textY (item, y, radius));
+         }
+      }
+
+      painter.dispose ();
+      ImageIO.write (image, "png", file);
+   }
+
+
+   /**
+    * Draws a tree into an SVG file.
+    * The picture has no size limit, every node keeps its full size and text.
+    *
+    * @param tree the tree to draw.
+    * @param file the file to write.
+    * @throws IOException if the file cannot be written.
+    */
+   public void writeSvg (SearchTree tree, File file) throws IOException {
+
+      Writer out = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (file), "UTF-8"));
+      try {
+         writeSvg (tree, out);
+      } finally {
+         out.close ();
+      }
+   }
+
+
+   /**
+    * Draws a tree as SVG into a writer.
+    *
+    * @param tree the tree to draw.
+    * @param out where to write the SVG document.
+    * @throws IOException if writing fails.
+    */
+   public void writeSvg (SearchTree tree, Writer out) throws IOException {
+
+      List<Item> items = layout (tree);
+      double xStep = nodeSize * 1.5;
+      double yStep = nodeSize * 3;
+      int radius = nodeSize / 2;
+      int width = (int)(Math.max (columnCount (items), 1) * xStep) + nodeSize * 2;
+      int height = (int)(Math.max (rowCount (items), 1) * yStep) + nodeSize * 4;
+
+      // Colors are set once in a style sheet, every element only names its class.
+      out.write ("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height + "\""
+            + " font-family=\"sans-serif\" font-size=\"" + (int)(nodeSize * .4) + "\" text-anchor=\"middle\">\n");
+      out.write ("<style>line,circle,polygon{stroke:" + hex (LINE_COLOR) + "} circle{fill:" + hex (NODE_COLOR)
+            + "} .r{fill:" + hex (RED_NODE_COLOR) + "} polygon{fill:" + hex (COLLAPSED_COLOR)
+            + "} text{fill:" + hex (TEXT_COLOR) + "}</style>\n");
+      out.write ("<rect width=\"100%\" height=\"100%\" fill=\"" + hex (BACKGROUND_COLOR) + "\"/>\n");
+
+      Map<SearchTreeNode, Item> byNode = index (items);
+      for (Item item: items) {
+         Item father = byNode.get (item.node.getFather ());
+         if (father != null) {
+            out.write ("<line x1=\"");
+            out.write (Integer.toString (x (father, xStep)));
+            out.write ("\" y1=\"");
+            out.write (Integer.toString (y (father, yStep)));
+            out.write ("\" x2=\"");
+            out.write (Integer.toString (x (item, xStep)));
+            out.write ("\" y2=\"");
+            out.write (Integer.toString (y (item, yStep)));
+            out.write ("\"/>\n");
+         }
+      }
+
+      for (Item item: items) {
+
+         int x = x (item, xStep);
+         int y = y (item, yStep);
+
+         if (item.collapsed > 0) {
+            out.write ("<polygon points=\"" + x + "," + (y - radius) + " " + (x - radius) + "," + (y + radius * 2)
+                  + " " + (x + radius) + "," + (y + radius * 2) + "\"/>\n");
+         } else {
+            out.write (fillColor (item) == RED_NODE_COLOR ? "<circle class=\"r\" cx=\"" : "<circle cx=\"");
+            out.write (Integer.toString (x));
+            out.write ("\" cy=\"");
+            out.write (Integer.toString (y));
+            out.write ("\" r=\"");
+            out.write (Integer.toString (radius));
+            out.write ("\"/>\n");
+         }
+
+         out.write ("<text x=\"");
+         out.write (Integer.toString (x));
+         out.write ("\" y=\"");
+         out.write (Integer.toString (textY (item, y, radius)));
+         out.write ("\">");
+         out.write (label (item));
+         out.write ("</text>\n");
+      }
+
+      out.write ("</svg>\n");
+   }
+
+
+   /**
+    * Places every node that is drawn: in-order number is the column and depth is the row.
+    * Walks the tree with its own stack, so deep trees do not overflow the call stack.
+    *
+    * @param tree the tree to lay out.
+    * @return the items in key order.
+    */
+   private List<Item> layout (SearchTree tree) {
+
+      List<Item> items = new ArrayList<Item> ();
+      Deque<SearchTreeNode> nodes = new ArrayDeque<SearchTreeNode> ();
+      Deque<Integer> depths = new ArrayDeque<Integer> ();
+
+      SearchTreeNode node = tree.getRoot ();
+      int depth = 0;
+
+      while (node != null || !nodes.isEmpty ()) {
+
+         // Go down left as long as the subtree is drawn in full.
+         while (node != null && !isCollapsed (node, depth)) {
+            nodes.push (node);
+            depths.push (depth);
+            node = node.getLeft ();
+            depth++;
+         }
+
+         // A collapsed subtree takes a single column.
+         if (node != null) {
+            items.add (new Item (node, items.size (), depth, count (node)));
+            node = null;
+            continue;
+         }
+
+         node = nodes.pop ();
+         depth = depths.pop ();
+         items.add (new Item (node, items.size (), depth, 0));
+         node = node.getRight ();
+         depth++;
+      }
+
+      return items;
+   }
+
+
+   private boolean isCollapsed (SearchTreeNode node, int depth) {
+      return (depth >= maxDepth && !node.isLeaf ()) || collapsedKeys.contains (node.getKey ());
+   }
+
+
+   /**
+    * Counts the nodes of a subtree, using the size field of OSTree nodes when there is one.
+    */
+   private static int count (SearchTreeNode node) {
+
+      if (node instanceof OSTreeNode)
+         return ((OSTreeNode)node).getSize ();
+
+      int count = 0;
+      Deque<SearchTreeNode> nodes = new ArrayDeque<SearchTreeNode> ();
+      nodes.push (node);
+      while (!nodes.isEmpty ()) {
+         SearchTreeNode next = nodes.pop ();
+         count++;
+         if (next.getLeft () != null)
+            nodes.push (next.getLeft ());
+         if (next.getRight () != null)
+            nodes.push (next.getRight ());
+      }
+      return count;
+   }
+
+
+   private static Map<SearchTreeNode, Item> index (List<Item> items) {
+      Map<SearchTreeNode, Item> byNode = new IdentityHashMap<SearchTreeNode, Item> (items.size () * 2);
+      for (Item item: items)
+         byNode.put (item.node, item);
+      return byNode;
+   }
+
+
+   private static int columnCount (List<Item> items) {
+      return items.size ();
+   }
+
+
+   private static int rowCount (List<Item> items) {
+      int rows = 0;
+      for (Item item: items)
+         rows = Math.max (rows, item.depth + 1);
+      return rows;
+   }
+
+
+   private int x (Item item, double xStep) {
+      return nodeSize + (int)((item.column + .5) * xStep);
+   }
+
+
+   private int y (Item item, double yStep) {
+      return nodeSize + (int)((item.depth + .5) * yStep);
+   }
+
+
+   /**
+    * Text goes inside a node, or under the triangle of a collapsed subtree.
+    */
+   private static int textY (Item item, int y, int radius) {
+      return item.collapsed > 0 ? y + radius * 3 : y + radius / 3;
+   }
+
+
+   /**
+    * The key, with the size of OSTree nodes or the node count of a collapsed subtree.
+    */
+   private static String label (Item item) {
+      if (item.collapsed > 0)
+         return item.node.getKey () + " +" + item.collapsed;
+      if (item.node instanceof OSTreeNode)
+         return item.node.getKey () + "/" + ((OSTreeNode)item.node).getSize ();
+      return "" + item.node.getKey ();
+   }
+
+
+   private static Color fillColor (Item item) {
+      if (item.node instanceof OSTreeNode && ((OSTreeNode)item.node).isRed ())
+         return RED_NODE_COLOR;
+      return NODE_COLOR;
+   }
+
+
+   private static String hex (Color color) {
+      return String.format ("#%02x%02x%02x", color.getRed (), color.getGreen (), color.getBlue ());
+   }
+
+
+   /**
+    * Main method - draws a large tree into tree.png and tree.svg.
+    *
+    * @param args optional number of nodes and maximum depth.
+    */
+   public static void main (String[] args) throws IOException {
+
+      int count = args.length > 0 ? Integer.parseInt (args[0]) : 100000;
+      int depth = args.length > 1 ? Integer.parseInt (args[1]) : 8;
+
+      int[] keys = new int[count];
+      for (int i = 0; i < count; i++)
+         keys[i] = i;
+
+      RBOSTree tree = RBOSTree.fromSorted (keys, null);
+      OSTreeRenderer renderer = new OSTreeRenderer (DEFAULT_NODE_SIZE, depth);
+      renderer.writePng (tree, new File ("tree.png"));
+      renderer.writeSvg (tree, new File ("tree.svg"));
+   }
+}
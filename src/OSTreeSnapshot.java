@@ -0,0 +1,362 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Writes an OSTree to a compact file and reads it back.
+ *
+ * File layout:
+ *   magic (4 bytes), version (1 byte), flags (1 byte), node count (4 bytes)
+ *   for every node in key order: the key, its count and its data, each only if the flags say so
+ *   CRC32 of all the node bytes (4 bytes)
+ * The first key is a zigzag varint, every other key is the varint of its distance from the key before.
+ * The count is a varint, it is written only for a MultisetOSTree.
+ * Data is a varint of its length plus one (0 for null) and the bytes from the PayloadCodec.
+ *
+ * Reading builds a balanced tree straight from the stream, each node is read in the
+ * order it takes in the tree, so there is no insert and no array of all the keys.
+ */
+public class OSTreeSnapshot {
+
+	private static final int MAGIC       = 0x4f535453;
+	private static final int VERSION     = 1;
+	private static final int HAS_PAYLOAD = 1;
+	private static final int HAS_COUNTS  = 2;
+	private static final int HEADER_SIZE = 10;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private OSTreeSnapshot() {
+	}
+
+	/**
+	 * Write all the nodes of a tree to a file, the tree must not change meanwhile
+	 * @param tree
+	 * @param file
+	 * @param codec writes the data of the nodes, or null to write only the keys
+	 * @throws IOException
+	 */
+	public static void write (OSTree tree, File file, PayloadCodec codec) throws IOException {
+
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			Output out = new Output(stream.getChannel());
+			boolean hasCounts = tree instanceof MultisetOSTree;
+			int count = hasCounts ? ((MultisetOSTree) tree).distinctSize() : OSTree.size(tree.getRoot());
+
+			out.buffer.putInt(MAGIC);
+			out.buffer.put((byte) VERSION);
+			out.buffer.put((byte) ((codec == null ? 0 : HAS_PAYLOAD) | (hasCounts ? HAS_COUNTS : 0)));
+			out.buffer.putInt(count);
+			out.checksumFrom = out.buffer.position();
+
+			// Go over the nodes in key order, each key is written as the distance from the one before
+			SearchTreeNode node = tree.findMin();
+			long previous = 0;
+			for (int i = 0; i < count; i++) {
+				long key = node.getKey();
+				if (i == 0) {
+					out.putVarLong((key << 1) ^ (key >> 63));
+				} else {
+					out.putVarLong(key - previous);
+				}
+				previous = key;
+
+				if (hasCounts) {
+					out.putVarLong(((OSTreeNode) node).count);
+				}
+				if (codec != null) {
+					if (node.getData() == null) {
+						out.putVarLong(0);
+					} else {
+						byte[] bytes = codec.encode(node.getData());
+						out.putVarLong(bytes.length + 1L);
+						out.putBytes(bytes);
+					}
+				}
+				node = tree.successor(node);
+			}
+
+			out.flush();
+			out.buffer.putInt((int) out.crc.getValue());
+			out.checksumFrom = out.buffer.position();
+			out.flush();
+			stream.getChannel().force(false);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read a tree written by write().
+	 * The tree is balanced and coloured as a red-black tree, so it can keep changing as one.
+	 * A snapshot of a MultisetOSTree is read back as a MultisetOSTree.
+	 * @param file
+	 * @param codec reads the data of the nodes, or null to skip the data
+	 * @return the tree
+	 * @throws IOException if the file can not be read, is not a snapshot or is corrupt
+	 */
+	public static RBOSTree read (File file, PayloadCodec codec) throws IOException {
+
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			Input in = new Input(stream.getChannel());
+			in.require(HEADER_SIZE);
+			if (in.buffer.getInt() != MAGIC) {
+				throw new IOException("Not a tree snapshot: " + file);
+			}
+			int version = in.buffer.get();
+			if (version != VERSION) {
+				throw new IOException("Unknown tree snapshot version " + version + ": " + file);
+			}
+			int flags = in.buffer.get();
+			boolean hasPayload = (flags & HAS_PAYLOAD) != 0;
+			boolean hasCounts = (flags & HAS_COUNTS) != 0;
+			int count = in.buffer.getInt();
+			if (count < 0) {
+				throw new IOException("Corrupt tree snapshot: " + file);
+			}
+			in.checksumFrom = in.buffer.position();
+
+			Builder builder = new Builder(in, hasPayload, hasCounts, codec, RBOSTree.redDepth(count));
+			OSTreeNode root = builder.build(count, 0);
+
+			in.updateChecksum();
+			in.require(4);
+			if (in.buffer.getInt() != (int) in.crc.getValue()) {
+				throw new IOException("Checksum mismatch in tree snapshot: " + file);
+			}
+
+			RBOSTree tree = hasCounts ? new MultisetOSTree() : new RBOSTree();
+			tree.setRoot(root);
+			return tree;
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads the nodes in key order and links them into a balanced tree while reading
+	 */
+	private static class Builder {
+
+		private final Input in;
+		private final boolean hasPayload;
+		private final boolean hasCounts;
+		private final PayloadCodec codec;
+		private final int redDepth;
+		private long previous;
+		private boolean first = true;
+
+		Builder (Input in, boolean hasPayload, boolean hasCounts, PayloadCodec codec, int redDepth) {
+			this.in = in;
+			this.hasPayload = hasPayload;
+			this.hasCounts = hasCounts;
+			this.codec = codec;
+			this.redDepth = redDepth;
+		}
+
+		/**
+		 * Build a subtree of the next count nodes, split the same way OSTree.buildBalanced splits
+		 */
+		OSTreeNode build (int count, int depth) throws IOException {
+
+			if (count == 0) {
+				return null;
+			}
+			int leftCount = count / 2;
+			OSTreeNode left = build(leftCount, depth + 1);
+			OSTreeNode node = readNode();
+			OSTreeNode right = build(count - leftCount - 1, depth + 1);
+
+			node.setLeft(left);
+			node.setRight(right);
+			if (left != null) {
+				left.setFather(node);
+			}
+			if (right != null) {
+				right.setFather(node);
+			}
+			node.size = OSTree.size(left) + OSTree.size(right) + node.count;
+			node.red = depth == redDepth;
+			return node;
+		}
+
+		private OSTreeNode readNode() throws IOException {
+
+			long value = in.getVarLong();
+			long key;
+			if (first) {
+				key = (value >>> 1) ^ -(value & 1);
+				first = false;
+			} else {
+				key = previous + value;
+			}
+			if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt tree snapshot: key out of range");
+			}
+			previous = key;
+
+			long nodeCount = 1;
+			if (hasCounts) {
+				nodeCount = in.getVarLong();
+				if (nodeCount < 1 || nodeCount > Integer.MAX_VALUE) {
+					throw new IOException("Corrupt tree snapshot: count out of range");
+				}
+			}
+
+			Object data = null;
+			if (hasPayload) {
+				long length = in.getVarLong() - 1;
+				if (length > Integer.MAX_VALUE) {
+					throw new IOException("Corrupt tree snapshot: data too long");
+				}
+				if (length >= 0) {
+					byte[] bytes = in.getBytes((int) length);
+					data = codec == null ? null : codec.decode(bytes);
+				}
+			}
+			OSTreeNode node = new OSTreeNode((int) key, data);
+			node.count = (int) nodeCount;
+			return node;
+		}
+	}
+
+	/**
+	 * A buffer in front of a channel that keeps a checksum of everything after checksumFrom
+	 */
+	private static class Output {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		private final byte[] crcBytes = new byte[BUFFER_SIZE];
+		private int checksumFrom;
+
+		Output (FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putVarLong (long value) throws IOException {
+			if (buffer.remaining() < 10) {
+				flush();
+			}
+			while ((value & ~0x7fL) != 0) {
+				buffer.put((byte) ((value & 0x7f) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		void putBytes (byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int length = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+
+			// Add the new bytes to the checksum, the header is not part of it
+			int end = buffer.limit();
+			if (checksumFrom < end) {
+				buffer.position(checksumFrom);
+				int length = end - checksumFrom;
+				buffer.get(crcBytes, 0, length);
+				crc.update(crcBytes, 0, length);
+				buffer.position(0);
+			}
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+			checksumFrom = 0;
+		}
+	}
+
+	/**
+	 * A buffer behind a channel that keeps a checksum of everything read after checksumFrom
+	 */
+	private static class Input {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final CRC32 crc = new CRC32();
+		private final byte[] crcBytes = new byte[BUFFER_SIZE];
+		private int checksumFrom;
+
+		Input (FileChannel channel) {
+			this.channel = channel;
+			buffer.flip();
+		}
+
+		/**
+		 * Make sure the buffer holds at least the given number of bytes
+		 */
+		void require (int count) throws IOException {
+			if (buffer.remaining() >= count) {
+				return;
+			}
+			updateChecksum();
+			buffer.compact();
+			while (buffer.position() < count) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("Tree snapshot ends too early");
+				}
+			}
+			buffer.flip();
+			checksumFrom = 0;
+		}
+
+		/**
+		 * Add the bytes read since the last update to the checksum
+		 */
+		void updateChecksum() {
+			int end = buffer.position();
+			if (checksumFrom < end) {
+				buffer.position(checksumFrom);
+				int length = end - checksumFrom;
+				buffer.get(crcBytes, 0, length);
+				crc.update(crcBytes, 0, length);
+			}
+			checksumFrom = end;
+		}
+
+		long getVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				require(1);
+				byte b = buffer.get();
+				value |= (long) (b & 0x7f) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("Corrupt tree snapshot: varint too long");
+		}
+
+		byte[] getBytes (int length) throws IOException {
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				require(1);
+				int count = Math.min(buffer.remaining(), length - offset);
+				buffer.get(bytes, offset, count);
+				offset += count;
+			}
+			return bytes;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+/**
+ * Turns the data of tree nodes into bytes and back, for writing trees and logs to files.
+ */
+public interface PayloadCodec {
+
+	/**
+	 * return the bytes of a node's data, the data is never null
+	 * @param data
+	 */
+	byte[] encode (Object data);
+
+	/**
+	 * return the data written as the given bytes
+	 * @param bytes
+	 */
+	Object decode (byte[] bytes);
+}
@@ -0,0 +1,339 @@
+/**
+ * An OS tree that never changes: insert and delete return a new version of the tree.
+ * A new version copies only the path to the changed node and shares every other
+ * subtree with the old version, so keeping old versions as snapshots costs nothing.
+ * The tree is kept weight balanced by the subtree sizes.
+ */
+public final class PersistentOSTree {
+
+	// Weight balance parameters: a subtree may weigh at most DELTA times its brother,
+	// and a rotation is single if the inner grandchild weighs less than RATIO times the outer one
+	private static final int DELTA = 3;
+	private static final int RATIO = 2;
+
+	private static final PersistentOSTree EMPTY = new PersistentOSTree(null);
+
+	private final ImmutableOSTreeNode root;
+
+	private PersistentOSTree(ImmutableOSTreeNode root) {
+		this.root = root;
+	}
+
+	/**
+	 * return the empty tree
+	 */
+	public static PersistentOSTree empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Checks if a tree is empty
+	 * @return true if tree is empty
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Return the number of nodes in the tree
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return ImmutableOSTreeNode.size(root);
+	}
+
+	/**
+	 * Return a version of the tree with a new key, equal keys go left
+	 * @param key
+	 * @param data
+	 * @return the new version
+	 */
+	public PersistentOSTree insert (int key, Object data) {
+		return new PersistentOSTree(insert(root, key, data));
+	}
+
+	/**
+	 * Return a version of the tree without one node with the given key
+	 * @param key
+	 * @return the new version, or this tree if the key wasn't found
+	 */
+	public PersistentOSTree delete (int key) {
+		if (find(root, key) == null) {
+			return this;
+		}
+		ImmutableOSTreeNode newRoot = delete(root, key);
+		return newRoot == null ? EMPTY : new PersistentOSTree(newRoot);
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public ImmutableOSTreeNode find (int key) {
+		return find(root, key);
+	}
+
+	/**
+	 * Find and return the smallest node in the tree
+	 * @return the min node or null if the tree is empty
+	 */
+	public ImmutableOSTreeNode findMin() {
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null && tempNode.leftChild != null) {
+			tempNode = tempNode.leftChild;
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the biggest node in the tree
+	 * @return the max node or null if the tree is empty
+	 */
+	public ImmutableOSTreeNode findMax() {
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null && tempNode.rightChild != null) {
+			tempNode = tempNode.rightChild;
+		}
+		return tempNode;
+	}
+
+	/**
+	 * Find and return the node with the smallest key bigger than the given key
+	 * @param key
+	 * @return the successor or null if there is none
+	 */
+	public ImmutableOSTreeNode successor (int key) {
+		ImmutableOSTreeNode found = null;
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null) {
+			if (key < tempNode.key) {
+				found = tempNode;
+				tempNode = tempNode.leftChild;
+			} else {
+				tempNode = tempNode.rightChild;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find and return the node with the biggest key smaller than the given key
+	 * @param key
+	 * @return the predecessor or null if there is none
+	 */
+	public ImmutableOSTreeNode predecessor (int key) {
+		ImmutableOSTreeNode found = null;
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null) {
+			if (tempNode.key < key) {
+				found = tempNode;
+				tempNode = tempNode.rightChild;
+			} else {
+				tempNode = tempNode.leftChild;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * return the i-th node in the list
+	 * @param i
+	 * @return the i-th node in the list or null if there is no such node
+	 */
+	public ImmutableOSTreeNode select (int i) {
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null) {
+			int leftSize = ImmutableOSTreeNode.size(tempNode.leftChild);
+			if (i <= leftSize) {
+				tempNode = tempNode.leftChild;
+			} else if (i == leftSize + 1) {
+				return tempNode;
+			} else {
+				i -= leftSize + 1;
+				tempNode = tempNode.rightChild;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		int counter = 0;
+		ImmutableOSTreeNode tempNode = root;
+		while (tempNode != null) {
+			if (tempNode.key <= key) {
+				counter += ImmutableOSTreeNode.size(tempNode.leftChild) + 1;
+				tempNode = tempNode.rightChild;
+			} else {
+				tempNode = tempNode.leftChild;
+			}
+		}
+		return counter;
+	}
+
+	public ImmutableOSTreeNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * Build a perfectly balanced tree with the keys and data of nodes[from..to), given in key order
+	 */
+	static PersistentOSTree fromSorted (ImmutableOSTreeNode[] nodes, int from, int to) {
+		return from >= to ? EMPTY : new PersistentOSTree(build(nodes, from, to));
+	}
+
+	/**
+	 * Put the nodes of the tree in key order into an array from index count on
+	 * @return the index after the last node put
+	 */
+	int collect (ImmutableOSTreeNode[] nodes, int count) {
+		return collect(root, nodes, count);
+	}
+
+	private static ImmutableOSTreeNode build (ImmutableOSTreeNode[] nodes, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		return new ImmutableOSTreeNode(nodes[middle].key, nodes[middle].data,
+				build(nodes, from, middle), build(nodes, middle + 1, to));
+	}
+
+	private static int collect (ImmutableOSTreeNode node, ImmutableOSTreeNode[] nodes, int count) {
+		if (node == null) {
+			return count;
+		}
+		count = collect(node.leftChild, nodes, count);
+		nodes[count++] = node;
+		return collect(node.rightChild, nodes, count);
+	}
+
+	private static ImmutableOSTreeNode find (ImmutableOSTreeNode node, int key) {
+		while (node != null && node.key != key) {
+			if (key < node.key) {
+				node = node.leftChild;
+			} else {
+				node = node.rightChild;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Return a copy of a subtree with a new node, equal keys go left
+	 */
+	private static ImmutableOSTreeNode insert (ImmutableOSTreeNode node, int key, Object data) {
+		if (node == null) {
+			return new ImmutableOSTreeNode(key, data, null, null);
+		}
+		if (node.key < key) {
+			return balance(node.key, node.data, node.leftChild, insert(node.rightChild, key, data));
+		} else {
+			return balance(node.key, node.data, insert(node.leftChild, key, data), node.rightChild);
+		}
+	}
+
+	/**
+	 * Return a copy of a subtree without one node with the given key, the key must be in the subtree
+	 */
+	private static ImmutableOSTreeNode delete (ImmutableOSTreeNode node, int key) {
+		if (key < node.key) {
+			return balance(node.key, node.data, delete(node.leftChild, key), node.rightChild);
+		} else if (key > node.key) {
+			return balance(node.key, node.data, node.leftChild, delete(node.rightChild, key));
+		}
+		return glue(node.leftChild, node.rightChild);
+	}
+
+	/**
+	 * Join two subtrees whose keys are in order and whose sizes are balanced
+	 */
+	private static ImmutableOSTreeNode glue (ImmutableOSTreeNode left, ImmutableOSTreeNode right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+
+		// Take the middle node from the bigger side
+		if (left.size > right.size) {
+			ImmutableOSTreeNode max = left;
+			while (max.rightChild != null) {
+				max = max.rightChild;
+			}
+			return balance(max.key, max.data, deleteMax(left), right);
+		} else {
+			ImmutableOSTreeNode min = right;
+			while (min.leftChild != null) {
+				min = min.leftChild;
+			}
+			return balance(min.key, min.data, left, deleteMin(right));
+		}
+	}
+
+	private static ImmutableOSTreeNode deleteMin (ImmutableOSTreeNode node) {
+		if (node.leftChild == null) {
+			return node.rightChild;
+		}
+		return balance(node.key, node.data, deleteMin(node.leftChild), node.rightChild);
+	}
+
+	private static ImmutableOSTreeNode deleteMax (ImmutableOSTreeNode node) {
+		if (node.rightChild == null) {
+			return node.leftChild;
+		}
+		return balance(node.key, node.data, node.leftChild, deleteMax(node.rightChild));
+	}
+
+	/**
+	 * Create a node over two subtrees, rotating once or twice if one side grew too heavy
+	 */
+	private static ImmutableOSTreeNode balance (int key, Object data, ImmutableOSTreeNode left, ImmutableOSTreeNode right) {
+
+		// Right side is too heavy
+		if (!isBalanced(left, right)) {
+			if (isSingle(right.leftChild, right.rightChild)) {
+				return new ImmutableOSTreeNode(right.key, right.data,
+						new ImmutableOSTreeNode(key, data, left, right.leftChild), right.rightChild);
+			}
+			ImmutableOSTreeNode middle = right.leftChild;
+			return new ImmutableOSTreeNode(middle.key, middle.data,
+					new ImmutableOSTreeNode(key, data, left, middle.leftChild),
+					new ImmutableOSTreeNode(right.key, right.data, middle.rightChild, right.rightChild));
+		}
+
+		// Left side is too heavy
+		if (!isBalanced(right, left)) {
+			if (isSingle(left.rightChild, left.leftChild)) {
+				return new ImmutableOSTreeNode(left.key, left.data,
+						left.leftChild, new ImmutableOSTreeNode(key, data, left.rightChild, right));
+			}
+			ImmutableOSTreeNode middle = left.rightChild;
+			return new ImmutableOSTreeNode(middle.key, middle.data,
+					new ImmutableOSTreeNode(left.key, left.data, left.leftChild, middle.leftChild),
+					new ImmutableOSTreeNode(key, data, middle.rightChild, right));
+		}
+
+		return new ImmutableOSTreeNode(key, data, left, right);
+	}
+
+	/**
+	 * Checks that the second subtree is not too heavy for the first one
+	 */
+	private static boolean isBalanced (ImmutableOSTreeNode light, ImmutableOSTreeNode heavy) {
+		return DELTA * (ImmutableOSTreeNode.size(light) + 1) >= ImmutableOSTreeNode.size(heavy) + 1;
+	}
+
+	/**
+	 * Checks if a single rotation is enough, given the inner and outer grandchildren on the heavy side
+	 */
+	private static boolean isSingle (ImmutableOSTreeNode inner, ImmutableOSTreeNode outer) {
+		return ImmutableOSTreeNode.size(inner) + 1 < RATIO * (ImmutableOSTreeNode.size(outer) + 1);
+	}
+}
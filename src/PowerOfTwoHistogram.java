@@ -0,0 +1,121 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values in buckets whose bounds are powers of two: bucket 0 holds 0,
+ * bucket b holds the values from 2^(b-1) to 2^b - 1.
+ * Recording a value is a few atomic adds and no allocation, so it can run on every operation.
+ * Percentiles are the upper bound of the bucket they fall in, at most twice the real value.
+ */
+public class PowerOfTwoHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Count a value, negative values are counted as 0
+	 * @param value
+	 */
+	public void record (long value) {
+		value = Math.max(value, 0);
+		buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * return the number of values counted
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * return the mean of the values counted, or 0 if there are none
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * return the biggest value counted
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * return an upper bound of the median
+	 */
+	public long getP50() {
+		return getPercentile(50);
+	}
+
+	/**
+	 * return an upper bound of the 99th percentile
+	 */
+	public long getP99() {
+		return getPercentile(99);
+	}
+
+	/**
+	 * return an upper bound of the 99.9th percentile
+	 */
+	public long getP999() {
+		return getPercentile(99.9);
+	}
+
+	/**
+	 * return an upper bound of the given percentile of the values counted
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket the percentile falls in, or 0 if there are no values
+	 */
+	public long getPercentile (double percentile) {
+		long[] counts = getBuckets();
+		long total = 0;
+		for (long bucketCount : counts) {
+			total += bucketCount;
+		}
+		long needed = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts[b];
+			if (seen >= needed && seen > 0) {
+				return Math.min(b == 0 ? 0 : (1L << b) - 1, max.get());
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * return the number of values in every bucket
+	 */
+	public long[] getBuckets() {
+		long[] counts = new long[BUCKETS];
+		for (int b = 0; b < BUCKETS; b++) {
+			counts[b] = buckets.get(b);
+		}
+		return counts;
+	}
+
+	/**
+	 * Forget all values counted so far
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			buckets.set(b, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+}
@@ -0,0 +1,821 @@
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+public class RBOSTree extends OSTree {
+
+	// Orders nodes by their int keys, for the batch descents
+	private static final Comparator<OSTreeNode> KEY_ORDER = new Comparator<OSTreeNode>() {
+		public int compare (OSTreeNode a, OSTreeNode b) {
+			return Integer.compare(a.getKey(), b.getKey());
+		}
+	};
+
+	/**
+	 * Constructor for a red-black OS Tree
+	 */
+	public RBOSTree() {
+		super();
+	}
+
+	/**
+	 * Build a red-black OS tree from sorted keys in linear time
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param data the data of every key or null for no data
+	 * @return a tree holding all the keys
+	 */
+	public static RBOSTree fromSorted (int[] keys, Object[] data) {
+		RBOSTree tree = new RBOSTree();
+		tree.setRoot(buildBalanced(keys, data, redDepth(keys.length), null));
+		return tree;
+	}
+
+	/**
+	 * Build a red-black OS tree from sorted keys, the subtrees are built in parallel on the given pool
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param data the data of every key or null for no data
+	 * @param pool the pool that builds the subtrees
+	 * @return a tree holding all the keys
+	 */
+	public static RBOSTree fromSortedParallel (int[] keys, Object[] data, ForkJoinPool pool) {
+		RBOSTree tree = new RBOSTree();
+		tree.setRoot(buildBalanced(keys, data, redDepth(keys.length), pool));
+		return tree;
+	}
+
+	/**
+	 * Return the depth whose nodes must be red in a balanced tree of the given size.
+	 * A full tree is all black, otherwise only the last level, which is not full, is red.
+	 * @param size
+	 * @return the red depth or -1 if all nodes are black
+	 */
+	static int redDepth (int size) {
+		if ((size & (size + 1)) == 0) {
+			return -1;
+		}
+		return 31 - Integer.numberOfLeadingZeros(size);
+	}
+
+	/**
+	 * Insert a given OS node to the tree and rebalance it
+	 * @param node
+	 * @return the depth the node was linked at, before the rebalancing
+	 */
+	public int insertWithDepth (OSTreeNode node) {
+
+		// Go down to the place of the new node and increase the size of every node on the way
+		OSTreeNode tempNode = getRoot();
+		OSTreeNode tempFather = null;
+		boolean right = false;
+		int depth = 1;
+		while (tempNode != null) {
+			depth++;
+			tempFather = tempNode;
+			tempNode.size += node.count;
+			right = tempNode.getKey() < node.getKey();
+			tempNode = right ? tempNode.getRight() : tempNode.getLeft();
+		}
+		insertAt(node, tempFather, right);
+		return depth;
+	}
+
+	/**
+	 * Link a new node in as a child of the given father and rebalance.
+	 * The caller found the place by the keys and already increased the sizes on the path to it,
+	 * so trees whose nodes have other keys than int can use the same rebalancing.
+	 * @param node the new node
+	 * @param father the node it hangs from, null if the tree is empty
+	 * @param right true to make it the right child
+	 */
+	protected void insertAt (OSTreeNode node, OSTreeNode father, boolean right) {
+
+		// A new node always starts as a red leaf
+		node.setLeft(null);
+		node.setRight(null);
+		node.setFather(father);
+		node.size = node.count;
+		node.red = true;
+
+		if (father == null) {
+			setRoot(node);
+		} else if (right) {
+			father.setRight(node);
+		} else {
+			father.setLeft(node);
+		}
+
+		updatePath(node);
+		insertFixup(node);
+	}
+
+	/**
+	 * Delete a given node from the tree and rebalance it.
+	 * Unlike SearchTree.delete, the given node itself is unlinked, so other nodes keep their data.
+	 * @param node
+	 */
+	public void delete (OSTreeNode node) {
+		unlink(node);
+		recycle(node);
+	}
+
+	/**
+	 * Take a given node out of the tree and rebalance it, the node is not given to the node pool
+	 * @param node
+	 */
+	protected void unlink (OSTreeNode node) {
+
+		OSTreeNode removedNode = node;
+		boolean removedRed = removedNode.red;
+		OSTreeNode child;
+		OSTreeNode childFather;
+
+		// Case 1: node has at most one child, the child takes its place
+		if (node.getLeft() == null) {
+			child = node.getRight();
+			childFather = node.getFather();
+			replaceChild(node, child);
+		} else if (node.getRight() == null) {
+			child = node.getLeft();
+			childFather = node.getFather();
+			replaceChild(node, child);
+
+		// Case 2: node has two children, its successor takes its place
+		} else {
+			removedNode = node.getRight();
+			while (removedNode.getLeft() != null) {
+				removedNode = removedNode.getLeft();
+			}
+			removedRed = removedNode.red;
+			child = removedNode.getRight();
+
+			if (removedNode.getFather() == node) {
+				childFather = removedNode;
+			} else {
+				childFather = removedNode.getFather();
+				replaceChild(removedNode, child);
+				removedNode.setRight(node.getRight());
+				removedNode.getRight().setFather(removedNode);
+			}
+
+			replaceChild(node, removedNode);
+			removedNode.setLeft(node.getLeft());
+			removedNode.getLeft().setFather(removedNode);
+			removedNode.red = node.red;
+		}
+
+		// Fix the sizes of all the nodes above the place where a node was taken out
+		OSTreeNode tempNode = childFather;
+		while (tempNode != null) {
+			tempNode.size = size(tempNode.getLeft()) + size(tempNode.getRight()) + tempNode.count;
+			tempNode = tempNode.getFather();
+		}
+
+		if (childFather != null) {
+			updatePath(childFather);
+		}
+
+		// Removing a black node breaks the black height of its path
+		if (!removedRed) {
+			deleteFixup(child, childFather);
+		}
+
+		// Detach the deleted node completely
+		node.setLeft(null);
+		node.setRight(null);
+		node.setFather(null);
+		node.size = node.count;
+	}
+
+	/**
+	 * Move all the nodes with a key bigger than the given key to a new tree.
+	 * This tree keeps the nodes with a key smaller than or equal to the key.
+	 * No nodes are created, and the work is O(log n).
+	 * @param key
+	 * @return a tree with the nodes bigger than key
+	 */
+	public RBOSTree split (int key) {
+		return splitAfter(rank(key));
+	}
+
+	/**
+	 * Move all the nodes after the first rank ones to a new tree, without looking at the keys.
+	 * The rank counts the copies of a key, and must fall between two nodes.
+	 * @param rank the number of copies this tree keeps
+	 * @return a tree with the rest of the nodes
+	 */
+	protected RBOSTree splitAfter (int rank) {
+		OSTreeNode[] parts = split(getRoot(), blackHeight(getRoot()), rank, new int[2]);
+		RBOSTree upper = newEmptyTree();
+		setRoot(parts[0]);
+		upper.setRoot(parts[1]);
+		return upper;
+	}
+
+	/**
+	 * Move all the nodes of a given tree to the end of this tree.
+	 * Every key in the given tree must be bigger than or equal to every key in this tree.
+	 * The given tree is left empty. The work is O(log n).
+	 * @param right
+	 */
+	public void join (RBOSTree right) {
+
+		if (right.isEmpty()) {
+			return;
+		}
+		if (!isEmpty() && findMax().getKey() > right.findMin().getKey()) {
+			throw new IllegalArgumentException("Keys of the right tree must not be smaller than keys of this tree");
+		}
+		append(right);
+	}
+
+	/**
+	 * Move all the nodes of a given tree to the end of this tree, without looking at the keys.
+	 * The given tree is left empty.
+	 * @param right
+	 */
+	protected void append (RBOSTree right) {
+
+		if (right.isEmpty()) {
+			return;
+		}
+
+		// The smallest node of the right tree links the two trees together
+		// (also when this tree is empty, so a LazyDeleteOSTree on the right drops its tombstones in unlink)
+		OSTreeNode middle = (OSTreeNode) right.findMin();
+		right.unlink(middle);
+		OSTreeNode rightRoot = right.getRoot();
+		right.setRoot(null);
+		join(getRoot(), blackHeight(getRoot()), middle, rightRoot, blackHeight(rightRoot));
+	}
+
+	/**
+	 * Move all the nodes of a given tree into this tree, in time linear in the size of both trees.
+	 * The nodes are merged in key order and linked again into a balanced tree.
+	 * The given tree is left empty.
+	 * @param other
+	 */
+	public void union (RBOSTree other) {
+
+		OSTreeNode[] mine = inOrder(this);
+		OSTreeNode[] others = inOrder(other);
+		OSTreeNode[] merged = new OSTreeNode[mine.length + others.length];
+
+		// Merge the two sorted lists, on equal keys nodes of this tree come first
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < mine.length && j < others.length) {
+			if (others[j].getKey() < mine[i].getKey()) {
+				merged[k++] = others[j++];
+			} else {
+				merged[k++] = mine[i++];
+			}
+		}
+		while (i < mine.length) {
+			merged[k++] = mine[i++];
+		}
+		while (j < others.length) {
+			merged[k++] = others[j++];
+		}
+
+		other.setRoot(null);
+		setRoot(linkBalanced(merged, 0, merged.length, 0, redDepth(merged.length)));
+		updateSubtree(getRoot());
+	}
+
+	/**
+	 * Return a new empty tree of the same kind as this tree, for the upper part of a split
+	 */
+	protected RBOSTree newEmptyTree() {
+		return new RBOSTree();
+	}
+
+	/**
+	 * A rebuilt red-black tree is coloured so its last level, if not full, is red
+	 */
+	protected int rebuildRedDepth (int size) {
+		return redDepth(size);
+	}
+
+	/**
+	 * Insert new nodes, sorted by key, in one descent that joins the tree together again
+	 */
+	protected void insertSorted (OSTreeNode[] nodes) {
+		insertSorted(nodes, KEY_ORDER);
+	}
+
+	/**
+	 * Insert new nodes, sorted in the given order, in one descent of the tree.
+	 * Every node the batch reaches is cut off its children, the batch is split by the node
+	 * and each part goes into its side, and the node joins the two new sides again. The new nodes
+	 * that reach the same empty place are linked there as a balanced subtree. Equal keys go left,
+	 * the same way insert places them. A batch of k nodes reaches O(k log(n/k)) nodes,
+	 * and every join costs the difference of the black heights it joins.
+	 * @param nodes the new nodes in order
+	 * @param order the order of the keys
+	 */
+	void insertSorted (OSTreeNode[] nodes, Comparator<? super OSTreeNode> order) {
+		if (nodes.length == 0) {
+			return;
+		}
+		Descent descent = new Descent(nodes, order);
+		OSTreeNode root = insertSorted(getRoot(), blackHeight(getRoot()), 0, nodes.length, descent);
+		root.red = false;
+		setRoot(root);
+	}
+
+	/**
+	 * Delete one node for every key of a sorted batch in one descent that joins the tree together again
+	 */
+	protected int deleteSorted (int[] keys) {
+		OSTreeNode[] probes = new OSTreeNode[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			probes[i] = new OSTreeNode(keys[i]);
+		}
+		return deleteSorted(probes, KEY_ORDER);
+	}
+
+	/**
+	 * Delete one node for every key of a batch, sorted in the given order, in one descent of the tree.
+	 * The batch goes down the same way as in insertSorted. A node with a key of its part is left out,
+	 * and the smallest node of its new right side is split off to join the two sides.
+	 * More copies of a key in the batch are deleted one by one after the descent.
+	 * @param probes nodes that hold the keys, in order, they are not in the tree
+	 * @param order the order of the keys
+	 * @return the number of nodes deleted
+	 */
+	int deleteSorted (OSTreeNode[] probes, Comparator<? super OSTreeNode> order) {
+		if (probes.length == 0 || isEmpty()) {
+			return 0;
+		}
+		Descent descent = new Descent(probes, order);
+		OSTreeNode root = deleteSorted(getRoot(), blackHeight(getRoot()), 0, probes.length, descent);
+		if (root != null) {
+			root.red = false;
+		}
+		setRoot(root);
+
+		int deleted = descent.deleted;
+		for (int i = 0; i < descent.restCount; i++) {
+			OSTreeNode node = find(descent.rest[i], order);
+			if (node != null) {
+				delete(node);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Insert batch[from..to) into a subtree with the given black height
+	 * @return the root of the new subtree, its black height is left in the descent
+	 */
+	private OSTreeNode insertSorted (OSTreeNode node, int height, int from, int to, Descent descent) {
+
+		if (from == to) {
+			descent.height = height;
+			return node;
+		}
+		if (node == null) {
+			OSTreeNode subtree = linkBalanced(descent.batch, from, to, 0, redDepth(to - from));
+			updateSubtree(subtree);
+			descent.height = blackHeight(subtree);
+			return subtree;
+		}
+
+		OSTreeNode left = detach(node.getLeft());
+		OSTreeNode right = detach(node.getRight());
+		int childHeight = node.red ? height : height - 1;
+
+		int split = firstAbove(descent.batch, from, to, node, descent.order, false);
+		OSTreeNode newLeft = insertSorted(left, childHeight, from, split, descent);
+		int leftHeight = descent.height;
+		OSTreeNode newRight = insertSorted(right, childHeight, split, to, descent);
+		descent.height = join(newLeft, leftHeight, node, newRight, descent.height);
+		return getRoot();
+	}
+
+	/**
+	 * Delete the keys of batch[from..to) from a subtree with the given black height
+	 * @return the root of the new subtree, its black height is left in the descent
+	 */
+	private OSTreeNode deleteSorted (OSTreeNode node, int height, int from, int to, Descent descent) {
+
+		if (node == null || from == to) {
+			descent.height = height;
+			return node;
+		}
+
+		OSTreeNode left = detach(node.getLeft());
+		OSTreeNode right = detach(node.getRight());
+		int childHeight = node.red ? height : height - 1;
+
+		int low = firstAbove(descent.batch, from, to, node, descent.order, true);
+		int high = firstAbove(descent.batch, low, to, node, descent.order, false);
+		OSTreeNode newLeft = deleteSorted(left, childHeight, from, low, descent);
+		int leftHeight = descent.height;
+		OSTreeNode newRight = deleteSorted(right, childHeight, high, to, descent);
+		int rightHeight = descent.height;
+
+		if (low == high) {
+			descent.height = join(newLeft, leftHeight, node, newRight, rightHeight);
+			return getRoot();
+		}
+
+		// The node is left out, the other copies of its key in the batch wait for the end
+		for (int i = low + 1; i < high; i++) {
+			descent.rest[descent.restCount++] = descent.batch[i];
+		}
+		node.setLeft(null);
+		node.setRight(null);
+		node.size = node.count;
+		recycle(node);
+		descent.deleted++;
+
+		if (newRight == null) {
+			descent.height = leftHeight;
+			return newLeft;
+		}
+		if (newLeft == null) {
+			descent.height = rightHeight;
+			return newRight;
+		}
+
+		// The smallest node of the right side joins the two sides
+		OSTreeNode min = newRight;
+		while (min.getLeft() != null) {
+			min = min.getLeft();
+		}
+		int[] heights = new int[2];
+		OSTreeNode[] parts = split(newRight, rightHeight, min.count, heights);
+		descent.height = join(newLeft, leftHeight, parts[0], parts[1], heights[1]);
+		return getRoot();
+	}
+
+	/**
+	 * Find a node with the key of a probe in the given order
+	 */
+	private OSTreeNode find (OSTreeNode probe, Comparator<? super OSTreeNode> order) {
+		OSTreeNode tempNode = getRoot();
+		while (tempNode != null) {
+			int comparison = order.compare(probe, tempNode);
+			if (comparison == 0) {
+				return tempNode;
+			}
+			tempNode = comparison < 0 ? tempNode.getLeft() : tempNode.getRight();
+		}
+		return null;
+	}
+
+	/**
+	 * return the index of the first of batch[from..to) that is bigger than node, or not smaller when orEqual is true
+	 */
+	private static int firstAbove (OSTreeNode[] batch, int from, int to, OSTreeNode node,
+			Comparator<? super OSTreeNode> order, boolean orEqual) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			int comparison = order.compare(batch[middle], node);
+			if (comparison > 0 || (orEqual && comparison == 0)) {
+				to = middle;
+			} else {
+				from = middle + 1;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * Split a red-black subtree into its first nodes, holding rank copies, and the rest of its nodes.
+	 * The black heights are passed down and up instead of measured, so every join costs only
+	 * the difference of the heights it joins. These differences add up to the height of the tree,
+	 * so the whole split is logarithmic.
+	 * @param height the black height of the subtree
+	 * @param heights gets the black heights of the two parts
+	 * @return the roots of the two parts
+	 */
+	private OSTreeNode[] split (OSTreeNode node, int height, int rank, int[] heights) {
+
+		if (node == null) {
+			heights[0] = 0;
+			heights[1] = 0;
+			return new OSTreeNode[2];
+		}
+
+		// Cut the node off its children, it will be used to join the pieces on its side
+		OSTreeNode left = detach(node.getLeft());
+		OSTreeNode right = detach(node.getRight());
+		int childHeight = node.red ? height : height - 1;
+
+		int leftRank = size(left) + node.count;
+		if (leftRank <= rank) {
+			OSTreeNode[] parts = split(right, childHeight, rank - leftRank, heights);
+			heights[0] = join(left, childHeight, node, parts[0], heights[0]);
+			parts[0] = getRoot();
+			return parts;
+		} else {
+			OSTreeNode[] parts = split(left, childHeight, rank, heights);
+			heights[1] = join(parts[1], heights[1], node, right, childHeight);
+			parts[1] = getRoot();
+			return parts;
+		}
+	}
+
+	/**
+	 * Join two red-black subtrees and a middle node between them into one red-black tree.
+	 * The middle node goes down the spine of the higher tree until the black heights match,
+	 * and it is inserted there as a red node, so the work is linear in the difference of the heights.
+	 * The joined tree becomes this tree's root.
+	 * @param leftHeight the black height of the left subtree
+	 * @param rightHeight the black height of the right subtree
+	 * @return the black height of the joined tree
+	 */
+	private int join (OSTreeNode left, int leftHeight, OSTreeNode middle, OSTreeNode right, int rightHeight) {
+
+		// A red root can always be made black, which adds one to its black height
+		if (isRed(left)) {
+			left.red = false;
+			leftHeight++;
+		}
+		if (isRed(right)) {
+			right.red = false;
+			rightHeight++;
+		}
+
+		middle.setFather(null);
+		middle.red = true;
+
+		// Same height: the middle node is the new root
+		if (leftHeight == rightHeight) {
+			link(middle, left, right);
+			middle.red = false;
+			setRoot(middle);
+			updatePath(middle);
+			return leftHeight + 1;
+		}
+
+		// Find the black node on the inner spine of the higher tree with the height of the lower tree
+		OSTreeNode higher = leftHeight > rightHeight ? left : right;
+		int lowerHeight = Math.min(leftHeight, rightHeight);
+		int height = Math.max(leftHeight, rightHeight);
+		OSTreeNode father = null;
+		OSTreeNode tempNode = higher;
+		while (height > lowerHeight || isRed(tempNode)) {
+			father = tempNode;
+			if (!isRed(tempNode)) {
+				height--;
+			}
+			tempNode = leftHeight > rightHeight ? tempNode.getRight() : tempNode.getLeft();
+		}
+
+		// The middle node takes its place, with it and the lower tree as its children
+		setRoot(higher);
+		if (leftHeight > rightHeight) {
+			link(middle, tempNode, right);
+			father.setRight(middle);
+		} else {
+			link(middle, left, tempNode);
+			father.setLeft(middle);
+		}
+		middle.setFather(father);
+
+		// All the nodes above grew by the lower tree and the middle node
+		int added = middle.size - size(tempNode);
+		for (OSTreeNode node = father; node != null; node = node.getFather()) {
+			node.size += added;
+		}
+
+		updatePath(middle);
+		int joinedHeight = Math.max(leftHeight, rightHeight);
+		return insertFixup(middle) ? joinedHeight + 1 : joinedHeight;
+	}
+
+	/**
+	 * Make two subtrees the children of a node and set its size
+	 */
+	private static void link (OSTreeNode node, OSTreeNode left, OSTreeNode right) {
+		node.setLeft(left);
+		node.setRight(right);
+		if (left != null) {
+			left.setFather(node);
+		}
+		if (right != null) {
+			right.setFather(node);
+		}
+		node.size = size(left) + size(right) + node.count;
+	}
+
+	/**
+	 * Cut a node off its father so it becomes the root of its own subtree
+	 */
+	private static OSTreeNode detach (OSTreeNode node) {
+		if (node != null) {
+			node.setFather(null);
+		}
+		return node;
+	}
+
+	/**
+	 * return the number of black nodes on the path from a node down to a leaf
+	 */
+	private static int blackHeight (OSTreeNode node) {
+		int height = 0;
+		while (node != null) {
+			if (!node.red) {
+				height++;
+			}
+			node = node.getLeft();
+		}
+		return height;
+	}
+
+	/**
+	 * Called after a node was linked in or taken out and the sizes are fixed, before rebalancing.
+	 * Subclasses that keep more fields per subtree update the given node and all nodes above it.
+	 * @param node the lowest node whose subtree changed
+	 */
+	protected void updatePath (OSTreeNode node) {
+	}
+
+	/**
+	 * A batch going down the tree: the batch and its order, the keys left for after the descent,
+	 * the nodes deleted and the black height of the last subtree made
+	 */
+	private static final class Descent {
+		final OSTreeNode[] batch;
+		final Comparator<? super OSTreeNode> order;
+		final OSTreeNode[] rest;
+		int restCount;
+		int deleted;
+		int height;
+
+		Descent(OSTreeNode[] batch, Comparator<? super OSTreeNode> order) {
+			this.batch = batch;
+			this.order = order;
+			this.rest = new OSTreeNode[batch.length];
+		}
+	}
+
+	/**
+	 * Restore the red-black properties after a red node was inserted
+	 * @param node the inserted node
+	 * @return true if the root had to be made black, which adds one to the black height of the tree
+	 */
+	private boolean insertFixup (OSTreeNode node) {
+
+		// As long as there are two red nodes in a row
+		while (node.getFather() != null && node.getFather().red) {
+
+			OSTreeNode father = node.getFather();
+			OSTreeNode grandfather = father.getFather();
+
+			if (father == grandfather.getLeft()) {
+				OSTreeNode uncle = grandfather.getRight();
+
+				// Red uncle: recolour and continue from the grandfather
+				if (isRed(uncle)) {
+					father.red = false;
+					uncle.red = false;
+					grandfather.red = true;
+					node = grandfather;
+
+				// Black uncle: at most two rotations finish the job
+				} else {
+					if (node == father.getRight()) {
+						node = father;
+						rotateLeft(node);
+						father = node.getFather();
+					}
+					father.red = false;
+					grandfather.red = true;
+					rotateRight(grandfather);
+				}
+			} else {
+				OSTreeNode uncle = grandfather.getLeft();
+
+				if (isRed(uncle)) {
+					father.red = false;
+					uncle.red = false;
+					grandfather.red = true;
+					node = grandfather;
+				} else {
+					if (node == father.getLeft()) {
+						node = father;
+						rotateRight(node);
+						father = node.getFather();
+					}
+					father.red = false;
+					grandfather.red = true;
+					rotateLeft(grandfather);
+				}
+			}
+		}
+		boolean grew = getRoot().red;
+		getRoot().red = false;
+		return grew;
+	}
+
+	/**
+	 * Restore the red-black properties after a black node was removed
+	 * @param node the node that took the place of the removed node (may be null)
+	 * @param father the father of that place
+	 */
+	private void deleteFixup (OSTreeNode node, OSTreeNode father) {
+
+		// The node carries an extra black until it reaches a red node or the root
+		while (father != null && !isRed(node)) {
+
+			if (node == father.getLeft()) {
+				OSTreeNode brother = father.getRight();
+
+				// Red brother: rotate so that the brother becomes black
+				if (isRed(brother)) {
+					brother.red = false;
+					father.red = true;
+					rotateLeft(father);
+					brother = father.getRight();
+				}
+
+				// Both nephews are black: move the extra black up
+				if (!isRed(brother.getLeft()) && !isRed(brother.getRight())) {
+					brother.red = true;
+					node = father;
+					father = node.getFather();
+
+				// Otherwise make the far nephew red and rotate the extra black away
+				} else {
+					if (!isRed(brother.getRight())) {
+						brother.getLeft().red = false;
+						brother.red = true;
+						rotateRight(brother);
+						brother = father.getRight();
+					}
+					brother.red = father.red;
+					father.red = false;
+					brother.getRight().red = false;
+					rotateLeft(father);
+					node = getRoot();
+					father = null;
+				}
+			} else {
+				OSTreeNode brother = father.getLeft();
+
+				if (isRed(brother)) {
+					brother.red = false;
+					father.red = true;
+					rotateRight(father);
+					brother = father.getLeft();
+				}
+
+				if (!isRed(brother.getLeft()) && !isRed(brother.getRight())) {
+					brother.red = true;
+					node = father;
+					father = node.getFather();
+				} else {
+					if (!isRed(brother.getLeft())) {
+						brother.getRight().red = false;
+						brother.red = true;
+						rotateLeft(brother);
+						brother = father.getLeft();
+					}
+					brother.red = father.red;
+					father.red = false;
+					brother.getLeft().red = false;
+					rotateRight(father);
+					node = getRoot();
+					father = null;
+				}
+			}
+		}
+
+		if (node != null) {
+			node.red = false;
+		}
+	}
+
+	/**
+	 * Checks if a node is red, null leaves are black
+	 * @param node
+	 * @return true if node is red
+	 */
+	private static boolean isRed (OSTreeNode node) {
+		return node != null && node.red;
+	}
+
+
+	public static void main (String[] args) {
+		RBOSTree tree = new RBOSTree();
+
+		// Sorted keys turn an unbalanced tree into a list
+		for (int i = 1; i <= 1000; i++)
+			tree.insert (new OSTreeNode (i));
+		System.out.println("Size of tree is: " + tree.getRoot().getSize());
+		System.out.println("Height of tree is: " + tree.height(tree.getRoot()));
+
+		for (int i = 1; i <= 1000; i += 2)
+			tree.delete ((OSTreeNode) tree.find (i));
+		System.out.println("After delete:");
+		System.out.println("Size of tree is: " + tree.getRoot().getSize());
+		System.out.println("Height of tree is: " + tree.height(tree.getRoot()));
+		System.out.println("Select node number 100: " + tree.select(100).getKey());
+		System.out.println("Rank of 500 is: " + tree.rank((OSTreeNode) tree.find(500)));
+	}
+}
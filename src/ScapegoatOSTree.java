@@ -0,0 +1,90 @@
+/**
+ * An OS tree kept balanced by the subtree sizes alone, with no colours and no rotations.
+ *
+ * Every node keeps each of its children at most alpha of its own size. After an insert or
+ * a delete only the sizes on the path to the root change, so only those nodes are checked,
+ * and the highest one that broke the rule (the scapegoat) has its subtree linked again as
+ * a perfectly balanced subtree, in time linear in its size. The depth of the tree is at most
+ * log base 1/alpha of its size, and the rebuilds cost O(log n) amortized per change.
+ *
+ * Reads are the same as in OSTree, on a tree that is usually shallower than a red-black tree.
+ */
+public class ScapegoatOSTree extends OSTree {
+
+	private static final double DEFAULT_ALPHA = 0.7;
+
+	private final double alpha;
+
+	/**
+	 * Constructor for a scapegoat OS tree with the default balance factor
+	 */
+	public ScapegoatOSTree() {
+		this(DEFAULT_ALPHA);
+	}
+
+	/**
+	 * Constructor for a scapegoat OS tree
+	 * @param alpha the largest part of a subtree one child may hold, between 0.5 and 1 (exclusive).
+	 *        A smaller alpha gives a shallower tree and more rebuilds
+	 */
+	public ScapegoatOSTree(double alpha) {
+		super();
+		if (!(alpha > 0.5 && alpha < 1)) {
+			throw new IllegalArgumentException("alpha must be between 0.5 and 1, got " + alpha);
+		}
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Insert a given OS node to the tree and rebuild the subtree that became unbalanced
+	 * @param node
+	 * @return the depth the node was linked at, before the rebuild
+	 */
+	public int insertWithDepth (OSTreeNode node) {
+		node.setLeft(null);
+		node.setRight(null);
+		node.setFather(null);
+		int depth = super.insertWithDepth(node);
+		rebalanceAbove(node.getFather());
+		return depth;
+	}
+
+	/**
+	 * Delete a given node from the tree and rebuild the subtree that became unbalanced
+	 * @param node
+	 */
+	public void delete (OSTreeNode node) {
+
+		// The node taken out is the successor when node has two children, the same as in OSTree.delete
+		OSTreeNode removed = node;
+		if (!removed.hasOneChild() && !removed.isLeaf()) {
+			removed = (OSTreeNode) successor(removed);
+		}
+		OSTreeNode father = removed.getFather();
+		super.delete(node);
+		rebalanceAbove(father);
+	}
+
+	/**
+	 * Check the nodes from the given node up to the root and rebuild the subtree of the highest
+	 * one whose bigger child holds more than alpha of its size
+	 */
+	private void rebalanceAbove (OSTreeNode node) {
+		OSTreeNode scapegoat = null;
+		for (; node != null; node = node.getFather()) {
+			if (isUnbalanced(node.size, size(node.getLeft()), size(node.getRight()))) {
+				scapegoat = node;
+			}
+		}
+		if (scapegoat != null) {
+			rebuildSubtree(scapegoat, null, 0, 0);
+		}
+	}
+
+	/**
+	 * A child may hold at most alpha of its node's size
+	 */
+	protected boolean isUnbalanced (int size, int leftSize, int rightSize) {
+		return Math.max(leftSize, rightSize) > alpha * size;
+	}
+}
@@ -1,5 +1,8 @@
 
-public class SearchTree {
+import java.util.Arrays;
+import java.util.Iterator;
+
+public class SearchTree implements Iterable<SearchTreeNode> {
 	
 	private SearchTreeNode root;
 	
@@ -68,7 +71,6 @@ public class SearchTree {
 		if (node.isLeaf() || node.hasOneChild()) {
 			
 			SearchTreeNode tempNode = node;
-			SearchTreeNode tempFather = tempNode.getFather();
 			
 			// Find the child
 			if (node.getLeft() != null) {
@@ -81,17 +83,9 @@ public class SearchTree {
 				}
 			}
 			
-			// Parent of child's parent becomes its new parent
-			if (tempNode != null) {
-				tempNode.setFather(tempFather);
-			}
-			
-			// The child replaces the deleted node
-			if (node.equals(tempFather.getLeft())) {
-				tempFather.setLeftChild(tempNode);
-			} else {
-				tempFather.setRightChild(tempNode);
-			}
+			// The child replaces the deleted node, parent of child's parent becomes its new parent
+			// (when the root is deleted the child becomes the root)
+			replaceChild(node, tempNode);
 		
 		// Case 2: node has two children
 		} else {
@@ -177,26 +171,16 @@ public class SearchTree {
 			return tempFather;
 		}
 		
-		// If the node does not have a right child, and the node is a left child
-		if (node.isLeftSon()) {
-			return node.getFather();
-	
-		// If the node does not have a right child, and the node itself is a right child
-		} else if (node.getFather() != null){
-			
-			SearchTreeNode tempNode = node;
-			SearchTreeNode tempFather = tempNode.getFather();
-			
-			while (tempFather != getRoot() && tempNode == tempFather.getRight()) {
-				tempNode = tempFather;
-				tempFather = tempFather.getFather();	
-			}
-			return tempFather;
+		// If the node does not have a right child, go up until we come from a left child.
+		// In case that there is no such father - the given node was the maximum node 
+		SearchTreeNode tempNode = node;
+		SearchTreeNode tempFather = tempNode.getFather();
 		
-		// In case that there was no parent - the given node was the maximum node 
-		} else {
-			return null;
+		while (tempFather != null && tempNode == tempFather.getRight()) {
+			tempNode = tempFather;
+			tempFather = tempFather.getFather();	
 		}
+		return tempFather;
 	}
 	
 	/**
@@ -241,15 +225,34 @@ public class SearchTree {
 			return 0;
 		}
 
-		// Get left and right heights
-		int leftHeight = height(node.getLeft());
-		int rightHeight = height(node.getRight());
-
-		if (leftHeight < rightHeight) {
-			return 1 + rightHeight;
-		} else {
-			return 1 + leftHeight;
+		// Go down the subtree depth first with a stack of (node, depth) pairs, a loop instead of recursion
+		// so a long path can't overflow the stack. The stack holds at most one waiting child per level,
+		// so it takes O(height) memory where a level by level walk holds a whole level.
+		SearchTreeNode[] nodes = new SearchTreeNode[16];
+		int[] depths = new int[16];
+		nodes[0] = node;
+		int top = 1;
+		int height = 0;
+		while (top > 0) {
+			top--;
+			SearchTreeNode tempNode = nodes[top];
+			int depth = depths[top];
+			nodes[top] = null;
+			height = Math.max(height, depth);
+			if (top + 2 > nodes.length) {
+				nodes = Arrays.copyOf(nodes, nodes.length * 2);
+				depths = Arrays.copyOf(depths, depths.length * 2);
+			}
+			if (tempNode.getRight() != null) {
+				nodes[top] = tempNode.getRight();
+				depths[top++] = depth + 1;
+			}
+			if (tempNode.getLeft() != null) {
+				nodes[top] = tempNode.getLeft();
+				depths[top++] = depth + 1;
+			}
 		}
+		return height;
 	}
 	
 	/**
@@ -274,7 +277,121 @@ public class SearchTree {
 		
 	}
 
+	/**
+	 * return an iterator over all the nodes in key order
+	 */
+	public Iterator<SearchTreeNode> iterator() {
+		return new SearchTreeIterator(root, false, false, 0);
+	}
+	
+	/**
+	 * return an iterator over the nodes with a key bigger than or equal to the given key, in key order
+	 * @param fromKey
+	 */
+	public Iterator<SearchTreeNode> iterator (int fromKey) {
+		return new SearchTreeIterator(root, false, true, fromKey);
+	}
+	
+	/**
+	 * return an iterator over all the nodes from the biggest key to the smallest
+	 */
+	public Iterator<SearchTreeNode> descendingIterator() {
+		return new SearchTreeIterator(root, true, false, 0);
+	}
+	
+	/**
+	 * return an iterator over the nodes with a key smaller than or equal to the given key,
+	 * from the biggest key to the smallest
+	 * @param fromKey
+	 */
+	public Iterator<SearchTreeNode> descendingIterator (int fromKey) {
+		return new SearchTreeIterator(root, true, true, fromKey);
+	}
+	
+	/**
+	 * Rotate the subtree of the given node to the left, its right child takes its place
+	 * @param node
+	 */
+	protected void rotateLeft (SearchTreeNode node) {
+		
+		SearchTreeNode rightNode = node.getRight();
+		
+		// The left subtree of the right child moves under the given node
+		node.setRightChild(rightNode.getLeft());
+		if (rightNode.getLeft() != null) {
+			rightNode.getLeft().setFather(node);
+		}
+		
+		// The right child replaces the given node under its father
+		replaceChild(node, rightNode);
+		
+		// The given node becomes the left child of its former right child
+		rightNode.setLeftChild(node);
+		node.setFather(rightNode);
+		
+		updateAfterRotation(node, rightNode);
+	}
+	
+	/**
+	 * Rotate the subtree of the given node to the right, its left child takes its place
+	 * @param node
+	 */
+	protected void rotateRight (SearchTreeNode node) {
+		
+		SearchTreeNode leftNode = node.getLeft();
+		
+		// The right subtree of the left child moves under the given node
+		node.setLeftChild(leftNode.getRight());
+		if (leftNode.getRight() != null) {
+			leftNode.getRight().setFather(node);
+		}
+		
+		// The left child replaces the given node under its father
+		replaceChild(node, leftNode);
+		
+		// The given node becomes the right child of its former left child
+		leftNode.setRightChild(node);
+		node.setFather(leftNode);
+		
+		updateAfterRotation(node, leftNode);
+	}
+	
+	/**
+	 * Put a replacement node (or null) in the place of a node under the node's father
+	 * @param node
+	 * @param replacement
+	 */
+	protected void replaceChild (SearchTreeNode node, SearchTreeNode replacement) {
+		
+		SearchTreeNode father = node.getFather();
+		
+		if (father == null) {
+			root = replacement;
+		} else if (father.getLeft() == node) {
+			father.setLeftChild(replacement);
+		} else {
+			father.setRightChild(replacement);
+		}
+		
+		if (replacement != null) {
+			replacement.setFather(father);
+		}
+	}
+	
+	/**
+	 * Called after a rotation so subclasses can fix the fields they keep per subtree.
+	 * The lower node is already a child of the upper node when this is called.
+	 * @param lower the node that went down
+	 * @param upper the node that went up
+	 */
+	protected void updateAfterRotation (SearchTreeNode lower, SearchTreeNode upper) {
+	}
+
 	public SearchTreeNode getRoot() {
 		return this.root;
 	} 
+	
+	protected void setRoot(SearchTreeNode root) {
+		this.root = root;
+	}
 }
@@ -0,0 +1,64 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Goes over the nodes of a search tree in key order, or in reverse key order.
+ * The nodes still to be visited above the current one are kept on a stack,
+ * so a step never walks up through the fathers and every node is pushed and popped once:
+ * a whole scan is linear and each step is O(1) amortized.
+ * The tree must not change while it is iterated.
+ */
+class SearchTreeIterator implements Iterator<SearchTreeNode> {
+
+	private final ArrayDeque<SearchTreeNode> stack = new ArrayDeque<SearchTreeNode>();
+	private final boolean descending;
+
+	/**
+	 * Constructor for an iterator over a subtree
+	 * @param root the root of the subtree
+	 * @param descending true to go from the biggest key to the smallest
+	 * @param bounded true to start from fromKey instead of the first node
+	 * @param fromKey the first key to return, or the last one when descending
+	 */
+	SearchTreeIterator(SearchTreeNode root, boolean descending, boolean bounded, int fromKey) {
+		this.descending = descending;
+
+		// Go down to the first node and keep every node on the path that comes after it
+		SearchTreeNode tempNode = root;
+		while (tempNode != null) {
+			boolean inRange = !bounded || (descending ? tempNode.getKey() <= fromKey : tempNode.getKey() >= fromKey);
+			if (inRange) {
+				stack.push(tempNode);
+			}
+			if (inRange != descending) {
+				tempNode = tempNode.getLeft();
+			} else {
+				tempNode = tempNode.getRight();
+			}
+		}
+	}
+
+	public boolean hasNext() {
+		return !stack.isEmpty();
+	}
+
+	public SearchTreeNode next() {
+		if (stack.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		SearchTreeNode node = stack.pop();
+
+		// The next nodes are the path to the first node of the subtree on the far side
+		SearchTreeNode tempNode = descending ? node.getLeft() : node.getRight();
+		while (tempNode != null) {
+			stack.push(tempNode);
+			tempNode = descending ? tempNode.getRight() : tempNode.getLeft();
+		}
+		return node;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
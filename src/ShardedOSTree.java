@@ -0,0 +1,416 @@
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An OS tree split by key ranges into shards, each an RBOSTree with its own lock,
+ * so threads that work on different ranges do not wait for each other.
+ *
+ * Shard s holds the keys from bounds[s] up to bounds[s + 1]. An operation reads the bounds
+ * without a lock, locks its shard and then checks that the layout epoch is still the one it
+ * read before the bounds. A rebalance moves the epoch on while it holds every shard lock,
+ * and an operation that sees it changed reads the bounds again. Every shard keeps its size
+ * in a counter on a cache line of its own, written only under the shard's lock, so writers
+ * of different shards share no memory. A global rank or select adds up the counters of
+ * the shards before its shard, in O(K + log n).
+ *
+ * When the keys pile up in some shards, a background thread moves keys between neighbouring
+ * shards with RBOSTree.split and join, which take O(log n) each, so all the shards have
+ * about the same size again. The moves hold every shard lock, which stops all other
+ * operations for O(K log n) time.
+ *
+ * While threads change the tree, a global rank or select sees each shard as it was at a
+ * slightly different moment. Operations on one key are always exact.
+ */
+public class ShardedOSTree implements Closeable {
+
+	// A shard this many times bigger than the average starts a rebalance
+	private static final double SKEW_FACTOR = 2;
+
+	// Trees smaller than this many keys per shard are not worth rebalancing
+	private static final int MIN_KEYS_PER_SHARD = 1024;
+
+	// The counters of the shard sizes are this many ints apart, so each one has its own cache line
+	private static final int COUNTER_SPACING = 16;
+
+	private final RBOSTree[] shards;
+	private final ReentrantLock[] shardLocks;
+	private final long[] bounds;
+
+	// The size of shard s is at s * COUNTER_SPACING
+	private final AtomicIntegerArray sizes;
+
+	// Counts the rebalances, changed only holding every shard lock
+	private volatile int layoutEpoch;
+
+	private final ScheduledExecutorService rebalancer;
+
+	/**
+	 * Constructor for a sharded tree with the given bounds between the shards
+	 * @param splitKeys the first key of every shard but the first, sorted, one less than the number of shards
+	 * @param rebalancePeriod milliseconds between checks of the shard sizes, 0 or less for no background rebalancing
+	 */
+	public ShardedOSTree(int[] splitKeys, long rebalancePeriod) {
+		int shardCount = splitKeys.length + 1;
+		shards = new RBOSTree[shardCount];
+		shardLocks = new ReentrantLock[shardCount];
+		bounds = new long[shardCount];
+		sizes = new AtomicIntegerArray(shardCount * COUNTER_SPACING);
+
+		bounds[0] = Integer.MIN_VALUE;
+		for (int s = 0; s < shardCount; s++) {
+			shards[s] = new RBOSTree();
+			shardLocks[s] = new ReentrantLock();
+			if (s > 0) {
+				if (s > 1 && splitKeys[s - 1] <= bounds[s - 1]) {
+					throw new IllegalArgumentException("Split keys are not sorted at index " + (s - 1));
+				}
+				bounds[s] = splitKeys[s - 1];
+			}
+		}
+
+		if (rebalancePeriod > 0) {
+			rebalancer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ShardedOSTree rebalancer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			rebalancer.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					if (isSkewed()) {
+						rebalance();
+					}
+				}
+			}, rebalancePeriod, rebalancePeriod, TimeUnit.MILLISECONDS);
+		} else {
+			rebalancer = null;
+		}
+	}
+
+	/**
+	 * Constructor for a sharded tree whose shards split the whole int range evenly
+	 * @param shardCount
+	 * @param rebalancePeriod milliseconds between checks of the shard sizes, 0 or less for no background rebalancing
+	 */
+	public ShardedOSTree(int shardCount, long rebalancePeriod) {
+		this(evenSplitKeys(shardCount), rebalancePeriod);
+	}
+
+	private static int[] evenSplitKeys (int shardCount) {
+		if (shardCount < 1) {
+			throw new IllegalArgumentException("A sharded tree needs at least one shard");
+		}
+		int[] splitKeys = new int[shardCount - 1];
+		long step = (1L << 32) / shardCount;
+		for (int s = 1; s < shardCount; s++) {
+			splitKeys[s - 1] = (int) (Integer.MIN_VALUE + s * step);
+		}
+		return splitKeys;
+	}
+
+	/**
+	 * Insert a new key to the tree
+	 * @param key
+	 * @param data
+	 * @return the new node
+	 */
+	public OSTreeNode insert (int key, Object data) {
+		OSTreeNode node = new OSTreeNode(key, data);
+		int s = lockShard(key);
+		try {
+			shards[s].insert(node);
+			addSize(s, 1);
+		} finally {
+			shardLocks[s].unlock();
+		}
+		return node;
+	}
+
+	/**
+	 * Delete one node with the given key from the tree
+	 * @param key
+	 * @return true if a node was deleted or false if the key wasn't found
+	 */
+	public boolean delete (int key) {
+		int s = lockShard(key);
+		try {
+			OSTreeNode node = (OSTreeNode) shards[s].find(key);
+			if (node == null) {
+				return false;
+			}
+			shards[s].delete(node);
+			addSize(s, -1);
+			return true;
+		} finally {
+			shardLocks[s].unlock();
+		}
+	}
+
+	/**
+	 * Find and return a node in the tree with the given key
+	 * @param key
+	 * @return the node with the given key or null if key wasn't found
+	 */
+	public OSTreeNode find (int key) {
+		int s = lockShard(key);
+		try {
+			return (OSTreeNode) shards[s].find(key);
+		} finally {
+			shardLocks[s].unlock();
+		}
+	}
+
+	/**
+	 * return the number of nodes with a key smaller than or equal to the given key
+	 * @param key
+	 * @return the number of nodes with a key smaller than or equal to key
+	 */
+	public int rank (int key) {
+		int s = lockShard(key);
+		try {
+			return sizeBefore(s) + shards[s].rank(key);
+		} finally {
+			shardLocks[s].unlock();
+		}
+	}
+
+	/**
+	 * return the number of nodes with a key in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 * @return the number of nodes with lo <= key <= hi
+	 */
+	public int countInRange (int lo, int hi) {
+		if (lo > hi) {
+			return 0;
+		}
+		return rank(hi) - (lo == Integer.MIN_VALUE ? 0 : rank(lo - 1));
+	}
+
+	/**
+	 * return the i-th node of all the shards together
+	 * @param i
+	 * @return the i-th node or null if there is no such node
+	 */
+	public OSTreeNode select (int i) {
+		if (i < 1) {
+			return null;
+		}
+		int s;
+		int epoch;
+		do {
+			epoch = layoutEpoch;
+			s = shardOfRank(i);
+		} while (!lockIfCurrent(s, epoch));
+		try {
+			return shards[s].select(i - sizeBefore(s));
+		} finally {
+			shardLocks[s].unlock();
+		}
+	}
+
+	/**
+	 * return the number of nodes in all the shards
+	 */
+	public int size() {
+		return sizeBefore(shards.length);
+	}
+
+	/**
+	 * return the number of shards
+	 */
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * return the number of nodes in a shard
+	 * @param s the number of the shard, from 0
+	 */
+	public int shardSize (int s) {
+		return sizes.get(s * COUNTER_SPACING);
+	}
+
+	/**
+	 * Move keys between neighbouring shards so all the shards have about the same size.
+	 * All other operations wait until it is done.
+	 */
+	public void rebalance() {
+
+		// The operations already in a shard finish first, and the later ones wait
+		for (ReentrantLock shardLock : shardLocks) {
+			shardLock.lock();
+		}
+		try {
+			int total = 0;
+			for (RBOSTree shard : shards) {
+				total += OSTree.size(shard.getRoot());
+			}
+
+			// Go from the left, make the shards before each bound hold their share of the keys
+			int placed = 0;
+			for (int s = 0; s < shards.length - 1; s++) {
+				int target = Math.max((int) ((long) total * (s + 1) / shards.length) - placed, 0);
+				int size = OSTree.size(shards[s].getRoot());
+
+				if (size > target) {
+
+					// Too many keys: the highest ones go to the front of the next shard
+					// (copies of a key stay together, so a shard can end up a few keys short)
+					int firstMoved = shards[s].select(target + 1).getKey();
+					if (firstMoved > Integer.MIN_VALUE) {
+						RBOSTree upper = shards[s].split(firstMoved - 1);
+						upper.join(shards[s + 1]);
+						shards[s + 1] = upper;
+					}
+				} else {
+
+					// Too few keys: take the lowest keys of the next shards
+					for (int t = s + 1; t < shards.length && size < target; t++) {
+						int available = OSTree.size(shards[t].getRoot());
+						if (available <= target - size) {
+							shards[s].join(shards[t]);
+						} else {
+							RBOSTree rest = shards[t].split(shards[t].select(target - size).getKey());
+							shards[s].join(shards[t]);
+							shards[t] = rest;
+						}
+						size = OSTree.size(shards[s].getRoot());
+					}
+				}
+				placed += OSTree.size(shards[s].getRoot());
+			}
+
+			// An empty shard takes the bound of the shard after it, or one above all ints
+			// when it is the last shard, so no key goes to it
+			for (int s = shards.length - 1; s > 0; s--) {
+				if (!shards[s].isEmpty()) {
+					bounds[s] = shards[s].findMin().getKey();
+				} else {
+					bounds[s] = s == shards.length - 1 ? Integer.MAX_VALUE + 1L : bounds[s + 1];
+				}
+			}
+
+			for (int s = 0; s < shards.length; s++) {
+				sizes.set(s * COUNTER_SPACING, OSTree.size(shards[s].getRoot()));
+			}
+		} finally {
+
+			// Operations that read the bounds before or during the moves go again once they get their shard
+			layoutEpoch++;
+			for (ReentrantLock shardLock : shardLocks) {
+				shardLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Stop the background rebalancing
+	 */
+	public void close() {
+		if (rebalancer != null) {
+			rebalancer.shutdownNow();
+		}
+	}
+
+	/**
+	 * return true if some shard is much bigger than the average
+	 */
+	private boolean isSkewed() {
+		int total = size();
+		if (total < MIN_KEYS_PER_SHARD * shards.length) {
+			return false;
+		}
+		double average = (double) total / shards.length;
+		for (int s = 0; s < shards.length; s++) {
+			if (shardSize(s) > SKEW_FACTOR * average) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * return the shard of a key: the last shard whose bound is not bigger than the key
+	 */
+	private int shardOf (int key) {
+		int low = 0;
+		int high = bounds.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (bounds[middle] <= key) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Lock the shard of a key and return its number. The bounds are read without a lock,
+	 * and read again if a rebalance moved them before the shard was locked.
+	 */
+	private int lockShard (int key) {
+		int s;
+		int epoch;
+		do {
+			epoch = layoutEpoch;
+			s = shardOf(key);
+		} while (!lockIfCurrent(s, epoch));
+		return s;
+	}
+
+	/**
+	 * Lock a shard that was chosen from the bounds of the given epoch, return false and
+	 * leave it unlocked if a rebalance ended another epoch since
+	 */
+	private boolean lockIfCurrent (int s, int epoch) {
+		shardLocks[s].lock();
+		if (layoutEpoch == epoch) {
+			return true;
+		}
+		shardLocks[s].unlock();
+		return false;
+	}
+
+	/**
+	 * return the shard that holds the i-th node by the counters, the last shard if there are fewer nodes
+	 */
+	private int shardOfRank (int i) {
+		int before = 0;
+		for (int s = 0; s < shards.length - 1; s++) {
+			before += shardSize(s);
+			if (before >= i) {
+				return s;
+			}
+		}
+		return shards.length - 1;
+	}
+
+	/**
+	 * Add to the size of a shard, must be called holding the shard's lock.
+	 * The shard's writers are the only ones that write it, so a plain ordered store is enough.
+	 */
+	private void addSize (int s, int change) {
+		int cell = s * COUNTER_SPACING;
+		sizes.lazySet(cell, sizes.get(cell) + change);
+	}
+
+	/**
+	 * return the number of nodes in the shards before shard s
+	 */
+	private int sizeBefore (int s) {
+		int sum = 0;
+		for (int before = 0; before < s; before++) {
+			sum += shardSize(before);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,169 @@
+import java.util.NoSuchElementException;
+
+/**
+ * An OS tree of the samples of a sliding window, for rolling percentiles.
+ *
+ * Samples are added with a timestamp, in time order. A sample leaves the window when it
+ * gets older than the window length or when more than the maximum number of samples
+ * were added after it; a sample exactly the window length older than the newest one stays.
+ * The values are kept in a MultisetOSTree, so repeated values share a node and a quantile
+ * is a select in O(log n). The samples are also kept in arrival order in a ring of
+ * primitive arrays, so the expired ones are found without a search and are taken out
+ * of the tree together in one deleteAll.
+ */
+public class SlidingWindowOSTree {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final long windowLength;
+	private final int maxSamples;
+
+	private final MultisetOSTree tree = new MultisetOSTree();
+
+	// The samples in arrival order, from head, count of them, wrapping around the arrays
+	private long[] times = new long[INITIAL_CAPACITY];
+	private int[] values = new int[INITIAL_CAPACITY];
+	private int head;
+	private int count;
+
+	/**
+	 * Constructor for a window by time and by number of samples
+	 * @param windowLength samples older than the newest timestamp minus this leave the window,
+	 *                     0 or less to keep samples regardless of their time
+	 * @param maxSamples the most samples in the window, 0 or less for no limit
+	 */
+	public SlidingWindowOSTree(long windowLength, int maxSamples) {
+		this.windowLength = windowLength;
+		this.maxSamples = maxSamples > 0 ? maxSamples : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Add a sample and evict the samples that left the window because of it
+	 * @param timestamp not smaller than the timestamp of the sample added before
+	 * @param value
+	 */
+	public void add (long timestamp, int value) {
+		if (count > 0 && timestamp < times[(head + count - 1) & (times.length - 1)]) {
+			throw new IllegalArgumentException("Timestamp " + timestamp + " is older than the last sample");
+		}
+		if (count == times.length) {
+			grow();
+		}
+		int slot = (head + count) & (times.length - 1);
+		times[slot] = timestamp;
+		values[slot] = value;
+		count++;
+		tree.add(value);
+
+		if (windowLength > 0) {
+			evictBefore(timestamp - windowLength);
+		}
+		if (count > maxSamples) {
+			evictOldest(count - maxSamples);
+		}
+	}
+
+	/**
+	 * Evict all the samples with a timestamp smaller than the given time, the samples at the time stay
+	 * @param time
+	 * @return the number of samples evicted
+	 */
+	public int evictBefore (long time) {
+		int expired = 0;
+		while (expired < count && times[(head + expired) & (times.length - 1)] < time) {
+			expired++;
+		}
+		return evictOldest(expired);
+	}
+
+	/**
+	 * Evict the oldest samples
+	 * @param number the number of samples to evict
+	 * @return the number of samples evicted, less than number if the window had fewer
+	 */
+	public int evictOldest (int number) {
+		number = Math.min(number, count);
+		if (number <= 0) {
+			return 0;
+		}
+		if (number == 1) {
+			tree.remove(values[head]);
+		} else {
+			int[] expired = new int[number];
+			for (int i = 0; i < number; i++) {
+				expired[i] = values[(head + i) & (values.length - 1)];
+			}
+			tree.deleteAll(expired);
+		}
+		head = (head + number) & (times.length - 1);
+		count -= number;
+		return number;
+	}
+
+	/**
+	 * return the value at a quantile of the samples in the window
+	 * @param q the quantile, between 0 and 1, for example 0.99 for the 99th percentile
+	 * @return the smallest value that at least q of the samples are smaller than or equal to
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public int quantile (double q) {
+		if (q < 0 || q > 1) {
+			throw new IllegalArgumentException("Quantile " + q + " is not between 0 and 1");
+		}
+		if (count == 0) {
+			throw new NoSuchElementException("The window is empty");
+		}
+		int i = Math.max((int) Math.ceil(q * count), 1);
+		return tree.select(i).getKey();
+	}
+
+	/**
+	 * return the number of samples in the window with a value smaller than or equal to the given value
+	 * @param value
+	 */
+	public int rank (int value) {
+		return tree.rank(value);
+	}
+
+	/**
+	 * return the number of samples in the window with a value in [lo, hi]
+	 * @param lo
+	 * @param hi
+	 */
+	public int countInRange (int lo, int hi) {
+		return tree.countInRange(lo, hi);
+	}
+
+	/**
+	 * return the number of samples in the window
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * return the timestamp of the oldest sample in the window
+	 * @throws NoSuchElementException if the window is empty
+	 */
+	public long oldestTimestamp() {
+		if (count == 0) {
+			throw new NoSuchElementException("The window is empty");
+		}
+		return times[head];
+	}
+
+	/**
+	 * Double the ring, the samples move to the start of the new arrays
+	 */
+	private void grow() {
+		long[] newTimes = new long[times.length * 2];
+		int[] newValues = new int[values.length * 2];
+		for (int i = 0; i < count; i++) {
+			newTimes[i] = times[(head + i) & (times.length - 1)];
+			newValues[i] = values[(head + i) & (values.length - 1)];
+		}
+		times = newTimes;
+		values = newValues;
+		head = 0;
+	}
+}
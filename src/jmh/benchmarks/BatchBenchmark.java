@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times inserting and deleting a batch of random keys on a big red-black tree of the keys
+ * 0, 2, 4, ..., with insertAll and deleteAll next to a loop of single inserts and deletes.
+ * One invocation is the whole batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class BatchBenchmark {
+
+	private static final MethodHandle FROM_SORTED = Trees.method("RBOSTree", "fromSorted", int[].class, Object[].class);
+	private static final MethodHandle NEW_NODE = Trees.constructor("OSTreeNode", int.class);
+	private static final MethodHandle INSERT = Trees.method("RBOSTree", "insert", "OSTreeNode");
+	private static final MethodHandle FIND = Trees.method("RBOSTree", "find", int.class);
+	private static final MethodHandle DELETE = Trees.method("RBOSTree", "delete", "OSTreeNode");
+	private static final MethodHandle INSERT_ALL = Trees.method("RBOSTree", "insertAll", int[].class, Object[].class);
+	private static final MethodHandle DELETE_ALL = Trees.method("RBOSTree", "deleteAll", int[].class);
+
+	@Param({ "1000000" })
+	public int size;
+
+	@Param({ "1000", "50000", "100000" })
+	public int batch;
+
+	private Object tree;
+	private int[] keys;
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Throwable {
+		int[] sorted = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = 2 * i;
+		}
+		tree = FROM_SORTED.invoke(sorted, null);
+		keys = Keys.random(batch, 2 * size, batch);
+	}
+
+	@Benchmark
+	public Object insertAll() throws Throwable {
+		INSERT_ALL.invokeExact(tree, (Object) keys, (Object) null);
+		return tree;
+	}
+
+	@Benchmark
+	public Object insertLoop() throws Throwable {
+		for (int key : keys) {
+			INSERT.invokeExact(tree, (Object) NEW_NODE.invokeExact(key));
+		}
+		return tree;
+	}
+
+	@Benchmark
+	public int deleteAll() throws Throwable {
+		return (int) DELETE_ALL.invokeExact(tree, (Object) keys);
+	}
+
+	@Benchmark
+	public int deleteLoop() throws Throwable {
+		int deleted = 0;
+		for (int key : keys) {
+			Object node = (Object) FIND.invokeExact(tree, key);
+			if (node != null) {
+				DELETE.invokeExact(tree, node);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+}
@@ -0,0 +1,145 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a read/write mix on ConcurrentOSTree, whose stripes split the keys of the benchmark
+ * evenly, next to an RBOSTree behind one global lock.
+ * Writes are half inserts and half deletes of random keys, so the size of the tree stays steady;
+ * reads are half rank and half select. Run with -t 1,2,4,... to see how it scales with threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentOSTreeBenchmark {
+
+	private static final int STRIPES = 64;
+
+	private static final MethodHandle NEW_CONCURRENT = Trees.constructor("ConcurrentOSTree", int[].class);
+	private static final MethodHandle INSERT = Trees.method("ConcurrentOSTree", "insert", int.class, Object.class);
+	private static final MethodHandle DELETE = Trees.method("ConcurrentOSTree", "delete", int.class);
+	private static final MethodHandle RANK = Trees.method("ConcurrentOSTree", "rank", int.class);
+	private static final MethodHandle SELECT = Trees.method("ConcurrentOSTree", "select", int.class);
+
+	private static final MethodHandle FROM_SORTED = Trees.method("RBOSTree", "fromSorted", int[].class, Object[].class);
+	private static final MethodHandle NEW_NODE = Trees.constructor("OSTreeNode", int.class);
+	private static final MethodHandle LOCKED_INSERT = Trees.method("RBOSTree", "insert", "OSTreeNode");
+	private static final MethodHandle LOCKED_FIND = Trees.method("RBOSTree", "find", int.class);
+	private static final MethodHandle LOCKED_DELETE = Trees.method("RBOSTree", "delete", "OSTreeNode");
+	private static final MethodHandle LOCKED_RANK = Trees.method("RBOSTree", "rank", int.class);
+	private static final MethodHandle LOCKED_SELECT = Trees.method("RBOSTree", "select", int.class);
+
+	@Param({ "ConcurrentOSTree", "LockedRBOSTree" })
+	public String tree;
+
+	@Param({ "1000000" })
+	public int size;
+
+	@Param({ "10" })
+	public int writePercent;
+
+	// One of the two trees, the RBOSTree is only used under its own lock
+	private Object concurrent;
+	private Object locked;
+
+	@State(Scope.Thread)
+	public static class Worker {
+		final Random random = new Random(Thread.currentThread().getId());
+	}
+
+	@Setup
+	public void setUp() throws Throwable {
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = 2 * i;
+		}
+		if (tree.equals("ConcurrentOSTree")) {
+			int[] splitKeys = new int[STRIPES - 1];
+			for (int s = 1; s < STRIPES; s++) {
+				splitKeys[s - 1] = (int) (2L * size * s / STRIPES);
+			}
+			concurrent = NEW_CONCURRENT.invoke(splitKeys);
+			for (int key : keys) {
+				INSERT.invoke(concurrent, key, null);
+			}
+		} else if (tree.equals("LockedRBOSTree")) {
+			locked = FROM_SORTED.invoke(keys, null);
+		} else {
+			throw new IllegalArgumentException("Unknown tree " + tree);
+		}
+	}
+
+	@Benchmark
+	public Object mix (Worker worker) throws Throwable {
+		Random random = worker.random;
+		int key = random.nextInt(2 * size);
+		int operation = random.nextInt(100);
+		if (operation < writePercent / 2) {
+			insert(key);
+			return null;
+		} else if (operation < writePercent) {
+			return delete(key);
+		} else if ((operation & 1) == 0) {
+			return rank(key);
+		}
+		return select(1 + random.nextInt(size));
+	}
+
+	private void insert (int key) throws Throwable {
+		if (concurrent != null) {
+			INSERT.invokeExact(concurrent, key, (Object) null);
+		} else {
+			synchronized (locked) {
+				LOCKED_INSERT.invokeExact(locked, (Object) NEW_NODE.invokeExact(key));
+			}
+		}
+	}
+
+	private boolean delete (int key) throws Throwable {
+		if (concurrent != null) {
+			return (boolean) DELETE.invokeExact(concurrent, key);
+		}
+		synchronized (locked) {
+			Object node = (Object) LOCKED_FIND.invokeExact(locked, key);
+			if (node != null) {
+				LOCKED_DELETE.invokeExact(locked, node);
+			}
+			return node != null;
+		}
+	}
+
+	private int rank (int key) throws Throwable {
+		if (concurrent != null) {
+			return (int) RANK.invokeExact(concurrent, key);
+		}
+		synchronized (locked) {
+			return (int) LOCKED_RANK.invokeExact(locked, key);
+		}
+	}
+
+	private Object select (int i) throws Throwable {
+		if (concurrent != null) {
+			return (Object) SELECT.invokeExact(concurrent, i);
+		}
+		synchronized (locked) {
+			return (Object) LOCKED_SELECT.invokeExact(locked, i);
+		}
+	}
+}
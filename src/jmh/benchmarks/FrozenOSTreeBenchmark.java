@@ -0,0 +1,94 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times rank, find and select on a FrozenOSTree next to the RBOSTree it was copied from,
+ * each on the next key of a random sample of the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FrozenOSTreeBenchmark {
+
+	private static final int SAMPLES = 1 << 20;
+
+	private static final MethodHandle NEW_TREE = Trees.constructor("RBOSTree");
+	private static final MethodHandle INSERT_ALL = Trees.method("RBOSTree", "insertAll", int[].class, Object[].class);
+	private static final MethodHandle RANK = Trees.method("RBOSTree", "rank", int.class);
+	private static final MethodHandle FIND = Trees.method("RBOSTree", "find", int.class);
+	private static final MethodHandle SELECT = Trees.method("RBOSTree", "select", int.class);
+
+	private static final MethodHandle FREEZE = Trees.constructor("FrozenOSTree", "OSTree");
+	private static final MethodHandle FROZEN_RANK = Trees.method("FrozenOSTree", "rank", int.class);
+	private static final MethodHandle FROZEN_FIND = Trees.method("FrozenOSTree", "find", int.class);
+	private static final MethodHandle FROZEN_SELECT = Trees.method("FrozenOSTree", "select", int.class);
+
+	@Param({ "RBOSTree", "FrozenOSTree" })
+	public String tree;
+
+	@Param({ "4000000" })
+	public int size;
+
+	// One of the two, the other is null
+	private Object linked;
+	private Object frozen;
+
+	private int[] lookups;
+	private int next;
+
+	@Setup
+	public void setUp() throws Throwable {
+		int[] keys = Keys.random(size, 0, 1);
+		linked = NEW_TREE.invoke();
+		INSERT_ALL.invoke(linked, keys, null);
+		if (tree.equals("FrozenOSTree")) {
+			frozen = FREEZE.invoke(linked);
+			linked = null;
+		} else if (!tree.equals("RBOSTree")) {
+			throw new IllegalArgumentException("Unknown tree " + tree);
+		}
+		Random random = new Random(2);
+		lookups = new int[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			lookups[i] = keys[random.nextInt(size)];
+		}
+	}
+
+	private int next() {
+		return lookups[next = (next + 1) & (SAMPLES - 1)];
+	}
+
+	@Benchmark
+	public int rank() throws Throwable {
+		return frozen != null ? (int) FROZEN_RANK.invokeExact(frozen, next()) : (int) RANK.invokeExact(linked, next());
+	}
+
+	@Benchmark
+	public Object find() throws Throwable {
+		return frozen != null ? (Object) (int) FROZEN_FIND.invokeExact(frozen, next()) : (Object) FIND.invokeExact(linked, next());
+	}
+
+	@Benchmark
+	public Object select() throws Throwable {
+		int i = 1 + (next() & 0x7fffffff) % size;
+		return frozen != null ? (Object) (int) FROZEN_SELECT.invokeExact(frozen, i) : (Object) SELECT.invokeExact(linked, i);
+	}
+}
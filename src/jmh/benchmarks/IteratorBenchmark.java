@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a scan of all the nodes of a red-black tree of random keys with the stack-based iterator,
+ * next to a walk from findMin through successor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IteratorBenchmark {
+
+	private static final MethodHandle NEW_TREE = Trees.constructor("RBOSTree");
+	private static final MethodHandle INSERT_ALL = Trees.method("RBOSTree", "insertAll", int[].class, Object[].class);
+	private static final MethodHandle ITERATOR = Trees.method("SearchTree", "iterator");
+	private static final MethodHandle FIND_MIN = Trees.method("SearchTree", "findMin");
+	private static final MethodHandle SUCCESSOR = Trees.method("SearchTree", "successor", "SearchTreeNode");
+	private static final MethodHandle GET_KEY = Trees.method("SearchTreeNode", "getKey");
+
+	@Param({ "2000000" })
+	public int size;
+
+	private Object tree;
+
+	@Setup
+	public void setUp() throws Throwable {
+		tree = NEW_TREE.invoke();
+		INSERT_ALL.invoke(tree, Keys.random(size, 0, 1), null);
+	}
+
+	@Benchmark
+	public long iterator() throws Throwable {
+		long sum = 0;
+		for (Iterator<?> nodes = (Iterator<?>) (Object) ITERATOR.invokeExact(tree); nodes.hasNext();) {
+			sum += (int) GET_KEY.invokeExact(nodes.next());
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long successorWalk() throws Throwable {
+		long sum = 0;
+		for (Object node = (Object) FIND_MIN.invokeExact(tree); node != null; node = (Object) SUCCESSOR.invokeExact(tree, node)) {
+			sum += (int) GET_KEY.invokeExact(node);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Keys for the benchmarks
+ */
+final class Keys {
+
+	// An unbalanced tree built from ordered keys is a list, so bigger runs would take hours
+	static final int UNBALANCED_ORDERED_LIMIT = 10000;
+
+	private Keys() {
+	}
+
+	/**
+	 * Create even keys in the given order: random, sorted, or zigzag from both ends inwards
+	 * (a worst case for an unbalanced tree and many rotations for a balanced one)
+	 */
+	static int[] keys (String order, int size) {
+		int[] keys = new int[size];
+		if (order.equals("zigzag")) {
+			for (int i = 0, low = 0, high = size - 1; i < size; i++) {
+				keys[i] = 2 * ((i & 1) == 0 ? low++ : high--);
+			}
+		} else if (order.equals("sorted") || order.equals("random")) {
+			for (int i = 0; i < size; i++) {
+				keys[i] = 2 * i;
+			}
+			if (order.equals("random")) {
+				shuffle(keys, new Random(size));
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown key order " + order);
+		}
+		return keys;
+	}
+
+	/**
+	 * Create random keys
+	 * @param bound the keys are below it, or any int if it is 0
+	 */
+	static int[] random (int size, int bound, long seed) {
+		Random random = new Random(seed);
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = bound > 0 ? random.nextInt(bound) : random.nextInt();
+		}
+		return keys;
+	}
+
+	static void shuffle (int[] keys, Random random) {
+		for (int i = keys.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = temp;
+		}
+	}
+
+	/**
+	 * return the tree of a run given as tree/order, such as RBOSTree/sorted
+	 */
+	static String tree (String run) {
+		return run.substring(0, run.indexOf('/'));
+	}
+
+	/**
+	 * return the key order of a run given as tree/order
+	 */
+	static String order (String run) {
+		return run.substring(run.indexOf('/') + 1);
+	}
+
+	/**
+	 * Create an empty tree of the given class: OSTree, RBOSTree or ScapegoatOSTree
+	 * @param order the order the keys will come in, an unbalanced tree refuses big ordered runs
+	 */
+	static Object newTree (String tree, String order, int size) throws Throwable {
+		if (tree.equals("OSTree") && !order.equals("random") && size > UNBALANCED_ORDERED_LIMIT) {
+			throw new IllegalArgumentException("An OSTree of " + size + " " + order
+					+ " keys is a list, runs are limited to " + UNBALANCED_ORDERED_LIMIT + " keys");
+		}
+		if (!tree.equals("OSTree") && !tree.equals("RBOSTree") && !tree.equals("ScapegoatOSTree")) {
+			throw new IllegalArgumentException("Unknown tree " + tree);
+		}
+		return Trees.constructor(tree).invoke();
+	}
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times a burst of deletes of a fifth of a big tree, given their nodes, on a LazyDeleteOSTree
+ * next to an RBOSTree. One invocation is the whole burst.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LazyDeleteOSTreeBenchmark {
+
+	private static final MethodHandle INSERT = Trees.method("RBOSTree", "insert", int.class, Object.class);
+	private static final MethodHandle DELETE = Trees.method("RBOSTree", "delete", "OSTreeNode");
+	private static final MethodHandle GET_ROOT = Trees.method("RBOSTree", "getRoot");
+
+	@Param({ "RBOSTree", "LazyDeleteOSTree" })
+	public String tree;
+
+	@Param({ "1000000" })
+	public int size;
+
+	@Param({ "200000" })
+	public int burst;
+
+	private Object target;
+	private Object[] nodes;
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Throwable {
+		if (!tree.equals("RBOSTree") && !tree.equals("LazyDeleteOSTree")) {
+			throw new IllegalArgumentException("Unknown tree " + tree);
+		}
+		target = Trees.constructor(tree).invoke();
+		int[] keys = Keys.random(size, 0, 1);
+		nodes = new Object[burst];
+		for (int i = 0; i < size; i++) {
+			Object node = INSERT.invoke(target, keys[i], null);
+			if (i < burst) {
+				nodes[i] = node;
+			}
+		}
+	}
+
+	@Benchmark
+	public Object deleteBurst() throws Throwable {
+		for (Object node : nodes) {
+			DELETE.invokeExact(target, node);
+		}
+		return (Object) GET_ROOT.invokeExact(target);
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of durable inserts into a LoggedOSTree from several threads (run with -t),
+ * with one fsync per commit interval for the records of all the threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggedOSTreeBenchmark {
+
+	private static final MethodHandle NEW_TREE = Trees.constructor("LoggedOSTree", File.class, "PayloadCodec", long.class);
+	private static final MethodHandle INSERT = Trees.method("LoggedOSTree", "insert", int.class, Object.class);
+	private static final MethodHandle CLOSE = Trees.method("LoggedOSTree", "close");
+
+	@Param({ "0", "2" })
+	public long commitInterval;
+
+	private File directory;
+	private Object tree;
+
+	@State(Scope.Thread)
+	public static class Worker {
+		int next = (int) Thread.currentThread().getId() << 20;
+	}
+
+	@Setup
+	public void setUp() throws Throwable {
+		directory = Files.createTempDirectory("logged").toFile();
+		tree = NEW_TREE.invoke(directory, null, commitInterval);
+	}
+
+	@TearDown
+	public void tearDown() throws Throwable {
+		CLOSE.invoke(tree);
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Benchmark
+	public Object insert (Worker worker) throws Throwable {
+		return (Object) INSERT.invokeExact(tree, worker.next++, (Object) null);
+	}
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times adding a day of events, keyed by the second they happened in, to a MultisetOSTree,
+ * which keeps one node per second, next to an RBOSTree with one node per event.
+ * One invocation adds all the events to an empty tree; run with -prof gc to see the memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MultisetOSTreeBenchmark {
+
+	private static final MethodHandle NEW_MULTISET = Trees.constructor("MultisetOSTree");
+	private static final MethodHandle NEW_TREE = Trees.constructor("RBOSTree");
+	private static final MethodHandle INSERT_ALL = Trees.method("RBOSTree", "insertAll", int[].class, Object[].class);
+	private static final MethodHandle GET_ROOT = Trees.method("RBOSTree", "getRoot");
+
+	@Param({ "MultisetOSTree", "RBOSTree" })
+	public String tree;
+
+	@Param({ "2000000" })
+	public int events;
+
+	@Param({ "86400" })
+	public int distinct;
+
+	private int[] keys;
+
+	@Setup
+	public void setUp() {
+		if (!tree.equals("MultisetOSTree") && !tree.equals("RBOSTree")) {
+			throw new IllegalArgumentException("Unknown tree " + tree);
+		}
+		keys = Keys.random(events, distinct, 9);
+	}
+
+	@Benchmark
+	public Object insertAll() throws Throwable {
+		Object target = tree.equals("MultisetOSTree") ? (Object) NEW_MULTISET.invokeExact() : (Object) NEW_TREE.invokeExact();
+		INSERT_ALL.invokeExact(target, (Object) keys, (Object) null);
+		return (Object) GET_ROOT.invokeExact(target);
+	}
+}
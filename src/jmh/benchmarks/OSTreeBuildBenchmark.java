@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times building a tree of the given size by single inserts, and emptying it again by single
+ * deletes in random order. One invocation is the whole run of inserts or deletes, so the time of
+ * one operation is the score divided by the size. The distribution of single inserts and deletes
+ * is in OSTreeOperationsBenchmark.
+ *
+ * An OSTree of sorted or zigzag keys is a list, so it is not in the default runs; give it
+ * with -p run=OSTree/sorted -p size=1000,10000 (more than 10000 keys fail in setup).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class OSTreeBuildBenchmark {
+
+	private static final MethodHandle NEW_NODE = Trees.constructor("OSTreeNode", int.class);
+	private static final MethodHandle INSERT = Trees.method("OSTree", "insert", "OSTreeNode");
+	private static final MethodHandle FIND = Trees.method("OSTree", "find", int.class);
+	private static final MethodHandle DELETE = Trees.method("OSTree", "delete", "OSTreeNode");
+	private static final MethodHandle IS_EMPTY = Trees.method("OSTree", "isEmpty");
+
+	@State(Scope.Thread)
+	public static class Parameters {
+
+		// The tree and the order of its keys
+		@Param({ "OSTree/random", "RBOSTree/random", "RBOSTree/sorted", "RBOSTree/zigzag",
+				"ScapegoatOSTree/random", "ScapegoatOSTree/sorted", "ScapegoatOSTree/zigzag" })
+		public String run;
+
+		@Param({ "1000", "10000", "1000000", "10000000" })
+		public int size;
+	}
+
+	/**
+	 * An empty tree and the keys to insert into it
+	 */
+	@State(Scope.Thread)
+	public static class Empty {
+		Object tree;
+		int[] keys;
+
+		@Setup(Level.Invocation)
+		public void setUp (Parameters parameters) throws Throwable {
+			keys = Keys.keys(Keys.order(parameters.run), parameters.size);
+			tree = Keys.newTree(Keys.tree(parameters.run), Keys.order(parameters.run), parameters.size);
+		}
+	}
+
+	/**
+	 * A full tree and its keys in random order, to delete them
+	 */
+	@State(Scope.Thread)
+	public static class Full {
+		Object tree;
+		int[] keys;
+
+		@Setup(Level.Invocation)
+		public void setUp (Parameters parameters) throws Throwable {
+			keys = Keys.keys(Keys.order(parameters.run), parameters.size);
+			tree = Keys.newTree(Keys.tree(parameters.run), Keys.order(parameters.run), parameters.size);
+			for (int key : keys) {
+				INSERT.invoke(tree, NEW_NODE.invoke(key));
+			}
+			Keys.shuffle(keys, new Random(parameters.size));
+		}
+	}
+
+	@Benchmark
+	public Object insert (Empty state) throws Throwable {
+		Object tree = state.tree;
+		for (int key : state.keys) {
+			INSERT.invokeExact(tree, (Object) NEW_NODE.invokeExact(key));
+		}
+		return tree;
+	}
+
+	@Benchmark
+	public boolean delete (Full state) throws Throwable {
+		Object tree = state.tree;
+		for (int key : state.keys) {
+			DELETE.invokeExact(tree, (Object) FIND.invokeExact(tree, key));
+		}
+		return (boolean) IS_EMPTY.invokeExact(tree);
+	}
+}
@@ -0,0 +1,178 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the SearchTree and OSTree operations one by one on OSTree, RBOSTree and ScapegoatOSTree,
+ * for random, sorted and zigzag key orders and a range of tree sizes, and reports the distribution
+ * of their times (p50, p99 and so on). Each operation works on a tree of the given size built by
+ * single inserts, and picks its keys from a fixed random sample of the tree.
+ *
+ * insert adds a key that is not in the tree and delete takes one out, and the change is undone
+ * before the next one, so every insert and delete is timed on a tree of the same size.
+ * pooledChurn deletes a key and inserts it again on a tree with a node pool; run with -prof gc
+ * to see that it allocates nothing. Building and emptying the tree are in OSTreeBuildBenchmark.
+ *
+ * An OSTree of sorted or zigzag keys is a list, so it is not in the default runs; give it
+ * with -p run=OSTree/sorted -p size=1000,10000 (more than 10000 keys fail in setup).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class OSTreeOperationsBenchmark {
+
+	private static final int SAMPLES = 1 << 16;
+
+	private static final MethodHandle NEW_POOL = Trees.constructor("OSTreeNodePool", int.class);
+	private static final MethodHandle NEW_NODE = Trees.constructor("OSTreeNode", int.class);
+	private static final MethodHandle INSERT = Trees.method("OSTree", "insert", "OSTreeNode");
+	private static final MethodHandle INSERT_KEY = Trees.method("OSTree", "insert", int.class, Object.class);
+	private static final MethodHandle DELETE = Trees.method("OSTree", "delete", "OSTreeNode");
+	private static final MethodHandle SET_NODE_POOL = Trees.method("OSTree", "setNodePool", "OSTreeNodePool");
+	private static final MethodHandle FIND = Trees.method("OSTree", "find", int.class);
+	private static final MethodHandle SUCCESSOR = Trees.method("OSTree", "successor", "SearchTreeNode");
+	private static final MethodHandle PREDECESSOR = Trees.method("OSTree", "predecessor", "SearchTreeNode");
+	private static final MethodHandle SELECT = Trees.method("OSTree", "select", int.class);
+	private static final MethodHandle RANK = Trees.method("OSTree", "rank", "OSTreeNode");
+	private static final MethodHandle DEPTH = Trees.method("OSTree", "depth", "SearchTreeNode");
+	private static final MethodHandle HEIGHT = Trees.method("OSTree", "height", "SearchTreeNode");
+	private static final MethodHandle GET_ROOT = Trees.method("OSTree", "getRoot");
+
+	// The tree and the order of its keys
+	@Param({ "OSTree/random", "RBOSTree/random", "RBOSTree/sorted", "RBOSTree/zigzag",
+			"ScapegoatOSTree/random", "ScapegoatOSTree/sorted", "ScapegoatOSTree/zigzag" })
+	public String run;
+
+	@Param({ "1000", "10000", "1000000", "10000000" })
+	public int size;
+
+	private Object target;
+
+	// Keys of the tree and their nodes, picked at random, used in turn
+	private int[] lookups;
+	private Object[] nodes;
+	private int next;
+
+	@Setup
+	public void setUp() throws Throwable {
+		String order = Keys.order(run);
+		int[] keys = Keys.keys(order, size);
+		target = Keys.newTree(Keys.tree(run), order, size);
+		for (int key : keys) {
+			INSERT.invoke(target, NEW_NODE.invoke(key));
+		}
+		SET_NODE_POOL.invoke(target, NEW_POOL.invoke(16));
+
+		Random random = new Random(size);
+		lookups = new int[SAMPLES];
+		nodes = new Object[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			lookups[i] = keys[random.nextInt(size)];
+			nodes[i] = FIND.invoke(target, lookups[i]);
+		}
+	}
+
+	private int next() {
+		return next = (next + 1) & (SAMPLES - 1);
+	}
+
+	/**
+	 * The change of the last insert or delete, undone before the next one outside of the timing
+	 */
+	@State(Scope.Thread)
+	public static class Undo {
+		Object tree;
+		Object inserted;
+		int deleted = -1;
+
+		@Setup(Level.Invocation)
+		public void undo() throws Throwable {
+			if (inserted != null) {
+				DELETE.invoke(tree, inserted);
+				inserted = null;
+			}
+			if (deleted >= 0) {
+				INSERT.invoke(tree, NEW_NODE.invoke(deleted));
+				deleted = -1;
+			}
+		}
+	}
+
+	@Benchmark
+	public Object find() throws Throwable {
+		return (Object) FIND.invokeExact(target, lookups[next()]);
+	}
+
+	@Benchmark
+	public Object successor() throws Throwable {
+		return (Object) SUCCESSOR.invokeExact(target, nodes[next()]);
+	}
+
+	@Benchmark
+	public Object predecessor() throws Throwable {
+		return (Object) PREDECESSOR.invokeExact(target, nodes[next()]);
+	}
+
+	@Benchmark
+	public Object select() throws Throwable {
+		return (Object) SELECT.invokeExact(target, 1 + lookups[next()] / 2 % size);
+	}
+
+	@Benchmark
+	public int rank() throws Throwable {
+		return (int) RANK.invokeExact(target, nodes[next()]);
+	}
+
+	@Benchmark
+	public int depth() throws Throwable {
+		return (int) DEPTH.invokeExact(target, nodes[next()]);
+	}
+
+	@Benchmark
+	public int height() throws Throwable {
+		return (int) HEIGHT.invokeExact(target, (Object) GET_ROOT.invokeExact(target));
+	}
+
+	@Benchmark
+	public Object insert (Undo undo) throws Throwable {
+		// The keys of the tree are even, so the next odd key is not in it
+		Object node = (Object) NEW_NODE.invokeExact(lookups[next()] + 1);
+		INSERT.invokeExact(target, node);
+		undo.tree = target;
+		return undo.inserted = node;
+	}
+
+	@Benchmark
+	public int delete (Undo undo) throws Throwable {
+		int key = lookups[next()];
+		DELETE.invokeExact(target, (Object) FIND.invokeExact(target, key));
+		undo.tree = target;
+		return undo.deleted = key;
+	}
+
+	@Benchmark
+	public Object pooledChurn() throws Throwable {
+		// The node of the key changes, so the sample of nodes is not used here
+		int key = lookups[next()];
+		DELETE.invokeExact(target, (Object) FIND.invokeExact(target, key));
+		return (Object) INSERT_KEY.invokeExact(target, key, (Object) null);
+	}
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times drawing a big red-black tree of random keys to a PNG and to an SVG file, headless.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class OSTreeRendererBenchmark {
+
+	private static final MethodHandle NEW_TREE = Trees.constructor("RBOSTree");
+	private static final MethodHandle NEW_NODE = Trees.constructor("OSTreeNode", int.class);
+	private static final MethodHandle INSERT = Trees.method("RBOSTree", "insert", "OSTreeNode");
+	private static final MethodHandle NEW_RENDERER = Trees.constructor("OSTreeRenderer");
+	private static final MethodHandle WRITE_PNG = Trees.method("OSTreeRenderer", "writePng", "SearchTree", File.class);
+	private static final MethodHandle WRITE_SVG = Trees.method("OSTreeRenderer", "writeSvg", "SearchTree", File.class);
+
+	@Param({ "100000" })
+	public int size;
+
+	private Object tree;
+	private File png;
+	private File svg;
+
+	@Setup
+	public void setUp() throws Throwable {
+		tree = NEW_TREE.invoke();
+		for (int key : Keys.random(size, 0, 1)) {
+			INSERT.invoke(tree, NEW_NODE.invoke(key));
+		}
+		png = File.createTempFile("tree", ".png");
+		svg = File.createTempFile("tree", ".svg");
+	}
+
+	@TearDown
+	public void tearDown() {
+		png.delete();
+		svg.delete();
+	}
+
+	@Benchmark
+	public long png() throws Throwable {
+		WRITE_PNG.invokeExact((Object) NEW_RENDERER.invokeExact(), tree, (Object) png);
+		return png.length();
+	}
+
+	@Benchmark
+	public long svg() throws Throwable {
+		WRITE_SVG.invokeExact((Object) NEW_RENDERER.invokeExact(), tree, (Object) svg);
+		return svg.length();
+	}
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times writing a big red-black tree to a snapshot file and reading it back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class OSTreeSnapshotBenchmark {
+
+	private static final MethodHandle FROM_SORTED = Trees.method("RBOSTree", "fromSorted", int[].class, Object[].class);
+	private static final MethodHandle WRITE = Trees.method("OSTreeSnapshot", "write", "OSTree", File.class, "PayloadCodec");
+	private static final MethodHandle READ = Trees.method("OSTreeSnapshot", "read", File.class, "PayloadCodec");
+
+	@Param({ "5000000" })
+	public int size;
+
+	private Object tree;
+	private File file;
+
+	@Setup
+	public void setUp() throws Throwable {
+		int[] keys = new int[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = 7 * i;
+		}
+		tree = FROM_SORTED.invoke(keys, null);
+		file = File.createTempFile("snapshot", ".ost");
+		WRITE.invoke(tree, file, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public long write() throws Throwable {
+		WRITE.invokeExact(tree, (Object) file, (Object) null);
+		return file.length();
+	}
+
+	@Benchmark
+	public Object read() throws Throwable {
+		return (Object) READ.invokeExact((Object) file, (Object) null);
+	}
+}
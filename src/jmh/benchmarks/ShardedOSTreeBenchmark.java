@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of inserts with an occasional select on a ShardedOSTree, from several threads
+ * (run with -t). The keys are skewed: half of them fall in the lowest thousandth of the key
+ * range, so the background rebalance has work to do. One shard is a single locked tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedOSTreeBenchmark {
+
+	private static final MethodHandle NEW_TREE = Trees.constructor("ShardedOSTree", int[].class, long.class);
+	private static final MethodHandle INSERT = Trees.method("ShardedOSTree", "insert", int.class, Object.class);
+	private static final MethodHandle SELECT = Trees.method("ShardedOSTree", "select", int.class);
+	private static final MethodHandle SIZE = Trees.method("ShardedOSTree", "size");
+
+	@Param({ "1", "8" })
+	public int shards;
+
+	@Param({ "50" })
+	public long rebalancePeriod;
+
+	private Object tree;
+
+	@State(Scope.Thread)
+	public static class Worker {
+		final Random random = new Random(Thread.currentThread().getId());
+		int operations;
+	}
+
+	@Setup
+	public void setUp() throws Throwable {
+		int[] splitKeys = new int[shards - 1];
+		for (int i = 0; i < splitKeys.length; i++) {
+			splitKeys[i] = (int) ((long) (i + 1) * (1 << 30) / shards);
+		}
+		tree = NEW_TREE.invoke(splitKeys, rebalancePeriod);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		((Closeable) tree).close();
+	}
+
+	@Benchmark
+	public Object insert (Worker worker) throws Throwable {
+		Random random = worker.random;
+		if (++worker.operations % 10 == 0) {
+			return (Object) SELECT.invokeExact(tree, 1 + random.nextInt(Math.max(1, (int) SIZE.invokeExact(tree))));
+		}
+		return (Object) INSERT.invokeExact(tree, random.nextInt(random.nextBoolean() ? 1 << 20 : 1 << 30), (Object) null);
+	}
+}
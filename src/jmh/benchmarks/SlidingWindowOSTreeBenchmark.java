@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times adding samples to a full SlidingWindowOSTree, each add evicting the oldest sample,
+ * and asking it for quantiles. The samples are latencies of about 5000, gaussian, one per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingWindowOSTreeBenchmark {
+
+	private static final int SAMPLES = 1 << 16;
+
+	private static final MethodHandle NEW_WINDOW = Trees.constructor("SlidingWindowOSTree", long.class, int.class);
+	private static final MethodHandle ADD = Trees.method("SlidingWindowOSTree", "add", long.class, int.class);
+	private static final MethodHandle QUANTILE = Trees.method("SlidingWindowOSTree", "quantile", double.class);
+
+	@Param({ "1000000" })
+	public int window;
+
+	private Object tree;
+	private int[] values;
+	private long time;
+
+	@Setup
+	public void setUp() throws Throwable {
+		Random random = new Random(1);
+		values = new int[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			values[i] = (int) (Math.abs(random.nextGaussian()) * 5000);
+		}
+		tree = NEW_WINDOW.invoke((long) window, 0);
+		for (time = 0; time < window; time++) {
+			ADD.invoke(tree, time, values[(int) time & (SAMPLES - 1)]);
+		}
+	}
+
+	@Benchmark
+	public long add() throws Throwable {
+		ADD.invokeExact(tree, time, values[(int) time & (SAMPLES - 1)]);
+		return ++time;
+	}
+
+	@Benchmark
+	public int quantile() throws Throwable {
+		return (int) QUANTILE.invokeExact(tree, (time++ % 100) / 100.0);
+	}
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * JMH only runs benchmarks that are in a package, and a class in a package can not name the
+ * trees, which are in the default package. So the benchmarks call the trees through method
+ * handles found here by name, with Object in place of every class. A handle in a static final
+ * field is a constant to the JIT, which then calls the method directly and inlines it, so a call
+ * through it costs the same as a plain call.
+ */
+final class Trees {
+
+	private Trees() {
+	}
+
+	/**
+	 * return a handle on a public constructor
+	 * @param className the class, of the default package
+	 * @param parameterTypes the type of every parameter: a Class, or the name of a class of the default package
+	 */
+	static MethodHandle constructor (String className, Object... parameterTypes) {
+		try {
+			return erase(MethodHandles.publicLookup().unreflectConstructor(
+					Class.forName(className).getConstructor(classes(parameterTypes))));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("No constructor " + className + Arrays.toString(parameterTypes), e);
+		}
+	}
+
+	/**
+	 * return a handle on a public method. The object a method is called on is its first parameter.
+	 * @param className the class, of the default package
+	 * @param name the name of the method
+	 * @param parameterTypes the type of every parameter: a Class, or the name of a class of the default package
+	 */
+	static MethodHandle method (String className, String name, Object... parameterTypes) {
+		try {
+			return erase(MethodHandles.publicLookup().unreflect(
+					Class.forName(className).getMethod(name, classes(parameterTypes))));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("No method " + className + "." + name + Arrays.toString(parameterTypes), e);
+		}
+	}
+
+	/**
+	 * Make every class in the type of a handle Object, so a benchmark can call it with invokeExact
+	 */
+	private static MethodHandle erase (MethodHandle handle) {
+		return handle.asType(handle.type().erase());
+	}
+
+	private static Class<?>[] classes (Object[] types) throws ClassNotFoundException {
+		Class<?>[] classes = new Class<?>[types.length];
+		for (int i = 0; i < types.length; i++) {
+			classes[i] = types[i] instanceof Class ? (Class<?>) types[i] : Class.forName((String) types[i]);
+		}
+		return classes;
+	}
+}
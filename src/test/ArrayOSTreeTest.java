@@ -0,0 +1,58 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the array backed OS tree against a sorted list
+ */
+public class ArrayOSTreeTest {
+
+	@Test
+	public void agreesWithASortedList() {
+		Random random = new Random(4);
+		for (int round = 0; round < 200; round++) {
+			ArrayOSTree tree = new ArrayOSTree(2);
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 400; i++) {
+				int key = random.nextInt(150);
+				if (keys.isEmpty() || random.nextInt(3) > 0) {
+					tree.insert(key, "v" + key);
+					keys.add(key);
+				} else {
+					assertEquals(keys.remove((Integer) key), tree.delete(key));
+				}
+			}
+			Collections.sort(keys);
+
+			assertEquals(keys.size(), tree.size());
+			for (int i = 1; i <= keys.size(); i++) {
+				int node = tree.select(i);
+				assertEquals((int) keys.get(i - 1), tree.getKey(node));
+				assertEquals("v" + keys.get(i - 1), tree.getData(node));
+			}
+			for (int key = -1; key <= 151; key++) {
+				assertEquals(TreeChecks.countAtMost(keys, key), tree.rank(key));
+				int node = tree.find(key);
+				assertEquals(keys.contains(key), node != ArrayOSTree.NIL);
+				if (node != ArrayOSTree.NIL) {
+					int index = TreeChecks.countAtMost(keys, key);
+					int successor = tree.successor(node);
+					if (index == keys.size()) {
+						assertEquals(ArrayOSTree.NIL, successor);
+					} else {
+						assertEquals((int) keys.get(index), tree.getKey(successor));
+					}
+				}
+			}
+			if (!keys.isEmpty()) {
+				assertEquals((int) keys.get(0), tree.getKey(tree.findMin()));
+				assertEquals((int) keys.get(keys.size() - 1), tree.getKey(tree.findMax()));
+			}
+		}
+	}
+}
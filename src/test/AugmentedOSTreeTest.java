@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of range aggregates over an augmented OS tree
+ */
+public class AugmentedOSTreeTest {
+
+	/**
+	 * Joins the keys in order, so the order of combining matters
+	 */
+	private static final Augmentation<String> KEYS = new Augmentation<String>() {
+		@Override
+		public String identity() {
+			return "";
+		}
+
+		@Override
+		public String of (OSTreeNode node) {
+			return node.getKey() + ",";
+		}
+
+		@Override
+		public String combine (String left, String right) {
+			return left + right;
+		}
+	};
+
+	/**
+	 * Delete the first node with the given key and value
+	 */
+	private static void delete (AugmentedOSTree<?> tree, int key, Object value) {
+		for (OSTreeNode node : tree.range(key, key)) {
+			if (value == null || value.equals(node.getData())) {
+				tree.delete(node);
+				return;
+			}
+		}
+	}
+
+	@Test
+	public void aggregatesAgreeWithAList() {
+		Random random = new Random(9);
+		for (int round = 0; round < 100; round++) {
+			AugmentedOSTree<Long> sums = new AugmentedOSTree<Long>(Augmentations.sum());
+			AugmentedOSTree<Long> maxima = new AugmentedOSTree<Long>(Augmentations.max());
+			AugmentedOSTree<String> keys = new AugmentedOSTree<String>(KEYS);
+			List<long[]> items = new ArrayList<long[]>();
+			for (int i = 0; i < 300; i++) {
+				if (items.isEmpty() || random.nextInt(3) > 0) {
+					int key = random.nextInt(100);
+					long value = random.nextInt(1000);
+					sums.insert(key, value);
+					maxima.insert(key, value);
+					keys.insert(key, null);
+					items.add(new long[] { key, value });
+				} else {
+					long[] item = items.remove(random.nextInt(items.size()));
+					delete(sums, (int) item[0], item[1]);
+					delete(maxima, (int) item[0], item[1]);
+					delete(keys, (int) item[0], null);
+				}
+
+				int lo = random.nextInt(110) - 5;
+				int hi = random.nextInt(110) - 5;
+				long sum = 0;
+				Long max = null;
+				List<Integer> inRange = new ArrayList<Integer>();
+				for (long[] item : items) {
+					if (item[0] >= lo && item[0] <= hi) {
+						sum += item[1];
+						max = max == null ? item[1] : Math.max(max, item[1]);
+						inRange.add((int) item[0]);
+					}
+				}
+				Collections.sort(inRange);
+				StringBuilder joined = new StringBuilder();
+				for (int key : inRange) {
+					joined.append(key).append(',');
+				}
+				assertEquals(sum, (long) sums.aggregate(lo, hi));
+				assertEquals(max, maxima.aggregate(lo, hi));
+				assertEquals(joined.toString(), keys.aggregate(lo, hi));
+			}
+			TreeChecks.assertRedBlack(sums);
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void splitJoinAndUnionKeepTheAggregates() {
+		Random random = new Random(11);
+		for (int round = 0; round < 300; round++) {
+			AugmentedOSTree<Long> tree = new AugmentedOSTree<Long>(Augmentations.sum());
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 200; i++) {
+				int key = random.nextInt(100);
+				tree.insert(key, (long) key);
+				keys.add(key);
+			}
+			int key = random.nextInt(100);
+			AugmentedOSTree<Long> upper = (AugmentedOSTree<Long>) tree.split(key);
+			long lowerSum = 0;
+			long upperSum = 0;
+			for (int x : keys) {
+				if (x <= key) {
+					lowerSum += x;
+				} else {
+					upperSum += x;
+				}
+			}
+			assertEquals(lowerSum, (long) tree.aggregate());
+			assertEquals(upperSum, (long) upper.aggregate());
+
+			tree.join(upper);
+			assertEquals(lowerSum + upperSum, (long) tree.aggregate());
+
+			AugmentedOSTree<Long> other = new AugmentedOSTree<Long>(Augmentations.sum());
+			other.insert(5, 5L);
+			tree.union(other);
+			assertEquals(lowerSum + upperSum + 5, (long) tree.aggregate());
+		}
+	}
+}
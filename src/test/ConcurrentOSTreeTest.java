@@ -0,0 +1,192 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the concurrent OS tree, alone and with several writing threads
+ */
+public class ConcurrentOSTreeTest {
+
+	/**
+	 * Check the sizes of a subtree and return its height
+	 */
+	private static int checkSubtree (ImmutableOSTreeNode node) {
+		if (node == null) {
+			return 0;
+		}
+		assertEquals(1 + ImmutableOSTreeNode.size(node.getLeft()) + ImmutableOSTreeNode.size(node.getRight()), node.getSize());
+		return 1 + Math.max(checkSubtree(node.getLeft()), checkSubtree(node.getRight()));
+	}
+
+	/**
+	 * Check the sizes of all the stripes and return the biggest height
+	 */
+	private static int checkStripes (ConcurrentOSTree tree) {
+		int height = 0;
+		for (PersistentOSTree stripe : tree.snapshot()) {
+			height = Math.max(height, checkSubtree(stripe.getRoot()));
+		}
+		return height;
+	}
+
+	@Test
+	public void agreesWithASortedList() {
+		Random random = new Random(6);
+		for (int round = 0; round < 100; round++) {
+			ConcurrentOSTree tree = round % 2 == 0 ? new ConcurrentOSTree() : new ConcurrentOSTree(new int[] { 10, 50, 51, 100 });
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 400; i++) {
+				int key = random.nextInt(150);
+				if (keys.isEmpty() || random.nextInt(3) > 0) {
+					tree.insert(key, key);
+					keys.add(key);
+				} else {
+					assertEquals(keys.remove((Integer) key), tree.delete(key));
+				}
+			}
+			Collections.sort(keys);
+			checkStripes(tree);
+			assertEquals(keys.size(), tree.size());
+			for (int i = 1; i <= keys.size(); i++) {
+				assertEquals((int) keys.get(i - 1), tree.select(i).getKey());
+			}
+			for (int key = -1; key <= 151; key++) {
+				int rank = TreeChecks.countAtMost(keys, key);
+				assertEquals(rank, tree.rank(key));
+				ImmutableOSTreeNode successor = tree.successor(key);
+				assertEquals(rank < keys.size() ? keys.get(rank) : null, successor == null ? null : successor.getKey());
+				ImmutableOSTreeNode predecessor = tree.predecessor(key);
+				int below = TreeChecks.countAtMost(keys, key - 1);
+				assertEquals(below > 0 ? keys.get(below - 1) : null, predecessor == null ? null : predecessor.getKey());
+			}
+			if (!keys.isEmpty()) {
+				assertEquals((int) keys.get(0), tree.findMin().getKey());
+				assertEquals((int) keys.get(keys.size() - 1), tree.findMax().getKey());
+			}
+		}
+	}
+
+	@Test
+	public void sortedInsertsStayBalanced() {
+		ConcurrentOSTree tree = new ConcurrentOSTree();
+		for (int i = 0; i < 100000; i++) {
+			tree.insert(i, null);
+		}
+		assertTrue(checkStripes(tree) <= 2 * 17);
+	}
+
+	@Test
+	public void defaultStripesFollowTheKeys() {
+		ConcurrentOSTree tree = new ConcurrentOSTree();
+		Random random = new Random(4);
+		int size = 50000;
+		for (int i = 0; i < size; i++) {
+			tree.insert(1000 + random.nextInt(5000), null);
+		}
+		assertTrue(tree.stripeCount() > 1);
+		int biggest = 0;
+		for (PersistentOSTree stripe : tree.snapshot()) {
+			biggest = Math.max(biggest, stripe.size());
+		}
+		assertTrue(biggest <= Math.max(1024, 2 * size / tree.stripeCount()) + 1);
+		assertEquals(size, tree.size());
+		checkStripes(tree);
+	}
+
+	@Test
+	public void concurrentWritersLoseNoUpdates() throws InterruptedException {
+		final ConcurrentOSTree tree = new ConcurrentOSTree();
+		final int threads = 8;
+		final int perThread = 5000;
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int base = t * 1000000;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						tree.insert(base + i, null);
+					}
+					for (int i = 0; i < perThread; i += 2) {
+						tree.delete(base + i);
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertEquals(threads * perThread / 2, tree.size());
+		checkStripes(tree);
+		for (int t = 0; t < threads; t++) {
+			assertEquals((t + 1) * perThread / 2, tree.rank(t * 1000000 + perThread));
+		}
+	}
+
+	@Test
+	public void readersSeeAllTheStripesAtOneMoment() throws InterruptedException {
+		final ConcurrentOSTree tree = new ConcurrentOSTree(new int[] { 100, 200, 300, 400, 500, 600, 700 });
+		final int moves = 300000;
+		final boolean[] failed = new boolean[1];
+		tree.insert(750, null);
+
+		// The writer moves one key down the stripes: it inserts the new key before it deletes the old one,
+		// so at every moment there are one or two keys
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				int key = 750;
+				for (int i = 0; i < moves; i++) {
+					int next = key < 100 ? 750 : key - 100;
+					tree.insert(next, null);
+					tree.delete(key);
+					key = next;
+				}
+			}
+		};
+		Thread[] readers = new Thread[3];
+		final boolean[] done = new boolean[1];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread() {
+				@Override
+				public void run() {
+					while (!done()) {
+						int size = tree.size();
+						if (size < 1 || size > 2 || tree.select(1) == null || tree.rank(Integer.MAX_VALUE) < 1) {
+							synchronized (failed) {
+								failed[0] = true;
+							}
+						}
+					}
+				}
+
+				private boolean done() {
+					synchronized (done) {
+						return done[0];
+					}
+				}
+			};
+			readers[r].start();
+		}
+		writer.start();
+		writer.join();
+		synchronized (done) {
+			done[0] = true;
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		synchronized (failed) {
+			assertFalse(failed[0]);
+		}
+		assertEquals(1, tree.size());
+	}
+}
@@ -0,0 +1,42 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that a frozen OS tree answers like the tree it was built from
+ */
+public class FrozenOSTreeTest {
+
+	@Test
+	public void answersLikeTheSourceTree() {
+		Random random = new Random(3);
+		for (int round = 0; round < 200; round++) {
+			int[] keys;
+			if (round == 0) {
+				keys = new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE, 0 };
+			} else {
+				keys = new int[random.nextInt(300)];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = random.nextInt(100) - 50;
+				}
+			}
+			RBOSTree tree = new RBOSTree();
+			tree.insertAll(keys, null);
+			FrozenOSTree frozen = new FrozenOSTree(tree);
+
+			assertEquals(keys.length, frozen.size());
+			for (int key = -60; key <= 60; key++) {
+				assertEquals(tree.rank(key), frozen.rank(key));
+				assertEquals(tree.find(key) != null, frozen.contains(key));
+				assertEquals(tree.countInRange(key, key + 7), frozen.countInRange(key, key + 7));
+			}
+			assertEquals(tree.rank(Integer.MIN_VALUE), frozen.rank(Integer.MIN_VALUE));
+			assertEquals(tree.rank(Integer.MAX_VALUE), frozen.rank(Integer.MAX_VALUE));
+			for (int i = 1; i <= keys.length; i++) {
+				assertEquals(tree.select(i).getKey(), frozen.select(i));
+			}
+		}
+	}
+}
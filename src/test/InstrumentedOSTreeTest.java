@@ -0,0 +1,155 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+/**
+ * Tests that the instrumented wrapper answers like the tree and counts what it does
+ */
+public class InstrumentedOSTreeTest {
+
+	@Test
+	public void answersLikeTheWrappedTree() {
+		for (OSTree base : new OSTree[] { new RBOSTree(), new OSTree() }) {
+			InstrumentedOSTree tree = new InstrumentedOSTree(base);
+			Random random = new Random(1);
+			int size = base instanceof RBOSTree ? 20000 : 2000;
+			for (int i = 0; i < size; i++) {
+				tree.insert(new OSTreeNode(base instanceof RBOSTree ? random.nextInt() : i));
+			}
+			assertEquals(size, tree.size());
+
+			int visited = 0;
+			OSTreeNode node = tree.findMin();
+			while (node != null) {
+				OSTreeNode successor = tree.successor(node);
+				assertSame(base.successor(node), successor);
+				node = successor;
+				visited++;
+			}
+			assertEquals(size, visited);
+			node = tree.findMax();
+			while (node != null) {
+				OSTreeNode predecessor = tree.predecessor(node);
+				assertSame(base.predecessor(node), predecessor);
+				node = predecessor;
+			}
+			for (int i = 1; i <= 1000; i++) {
+				int key = random.nextInt();
+				assertSame(base.find(key), tree.find(key));
+				assertEquals(base.rank(key), tree.rank(key));
+				assertSame(base.select(i), tree.select(i));
+			}
+
+			OSTreeMetrics metrics = tree.getMetrics();
+			assertEquals(size, metrics.getInsertLatency().getCount());
+			assertEquals(size, metrics.getSuccessorPathLength().getCount());
+			assertEquals(1000, metrics.getFindPathLength().getCount());
+			assertEquals(1000, metrics.getRankLatency().getCount());
+			assertEquals(metrics.getInsertDepth().getMax(), metrics.getMaxInsertDepth());
+			assertTrue(metrics.getMaxInsertDepth() >= tree.height());
+		}
+	}
+
+	@Test
+	public void passesTheOperationsToTheWrappedTree() {
+		LazyDeleteOSTree base = new LazyDeleteOSTree(0.9);
+		InstrumentedOSTree tree = new InstrumentedOSTree(base);
+		OSTreeNode[] nodes = new OSTreeNode[10];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new OSTreeNode(i);
+			tree.insert(nodes[i]);
+		}
+		for (int i = 2; i < 8; i++) {
+			tree.delete(nodes[i]);
+		}
+		assertEquals(6, base.tombstoneCount());
+		assertNull(tree.find(4));
+		assertSame(nodes[8], tree.successor(nodes[1]));
+		assertSame(nodes[1], tree.predecessor(nodes[8]));
+		assertNull(tree.successor(nodes[9]));
+		assertEquals(4, tree.size());
+
+		OSTreeMetrics metrics = tree.getMetrics();
+		assertEquals(1, metrics.getFindPathLength().getCount());
+		assertEquals(2, metrics.getSuccessorPathLength().getCount());
+		assertTrue(metrics.getSuccessorPathLength().getMax() >= 1);
+		metrics.reset();
+		assertEquals(0, metrics.getInsertDepth().getCount());
+		assertTrue(metrics.getMaxInsertDepth() > 0);
+	}
+
+	@Test
+	public void countsThePathsOfTheOperations() {
+		InstrumentedOSTree tree = new InstrumentedOSTree(new OSTree());
+		OSTreeNode[] nodes = new OSTreeNode[5];
+		int[] keys = { 5, 3, 8, 1, 4 };
+		for (int i = 0; i < keys.length; i++) {
+			nodes[i] = new OSTreeNode(keys[i]);
+			tree.insert(nodes[i]);
+		}
+		OSTreeMetrics metrics = tree.getMetrics();
+		assertEquals(3, metrics.getMaxInsertDepth());
+
+		// 5, 3, 4 on the way to 4, and 5, 8 before the search for 6 runs out
+		tree.find(4);
+		assertEquals(3, metrics.getFindPathLength().getMax());
+		tree.find(6);
+		assertEquals(2.5, metrics.getFindPathLength().getMean(), 1e-9);
+
+		// Up from 4 to 3 and to 5, and from 1 up to the root without finding a predecessor
+		assertSame(nodes[0], tree.successor(nodes[4]));
+		assertEquals(2, metrics.getSuccessorPathLength().getMax());
+		assertNull(tree.predecessor(nodes[3]));
+		assertEquals(2, metrics.getPredecessorPathLength().getMax());
+	}
+
+	@Test
+	public void registersWithJmx() throws Exception {
+		InstrumentedOSTree tree = new InstrumentedOSTree(new RBOSTree());
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(new OSTreeNode(i));
+		}
+		tree.find(5);
+		String name = "OSTree:name=InstrumentedOSTreeTest";
+		tree.getMetrics().register(name);
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			assertEquals(1000, server.getAttribute(objectName, "Size"));
+			CompositeData inserts = (CompositeData) server.getAttribute(objectName, "InsertLatency");
+			assertEquals(1000L, inserts.get("count"));
+			CompositeData finds = (CompositeData) server.getAttribute(objectName, "FindPathLength");
+			assertEquals(1L, finds.get("count"));
+			assertTrue((Long) finds.get("max") <= 2 * 10);
+			int maxInsertDepth = (Integer) server.getAttribute(objectName, "MaxInsertDepth");
+			assertTrue(maxInsertDepth >= 10 && maxInsertDepth <= 2 * 10);
+		} finally {
+			tree.getMetrics().unregister(name);
+		}
+	}
+
+	@Test
+	public void histogramPercentiles() {
+		PowerOfTwoHistogram histogram = new PowerOfTwoHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 1e-9);
+		assertEquals(1000, histogram.getMax());
+		assertTrue(histogram.getP50() >= 500 && histogram.getP50() < 1024);
+		assertTrue(histogram.getP99() >= 990);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+}
@@ -0,0 +1,164 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that tombstones in a lazy delete OS tree are never seen from outside
+ */
+public class LazyDeleteOSTreeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Assert that a tree holds the keys of a count map, walking it without meeting a tombstone
+	 */
+	private static void assertKeys (TreeMap<Integer, Integer> counts, OSTree tree) {
+		TreeChecks.assertRedBlack(tree);
+		int rank = 0;
+		for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			rank += entry.getValue();
+			assertEquals(rank, tree.rank(entry.getKey()));
+			assertEquals((int) entry.getKey(), tree.select(rank).getKey());
+			assertTrue(((OSTreeNode) tree.find(entry.getKey())).count > 0);
+		}
+		assertEquals(rank, OSTree.size(tree.getRoot()));
+
+		int walked = 0;
+		for (SearchTreeNode node = tree.findMin(); node != null; node = tree.successor(node)) {
+			assertTrue(((OSTreeNode) node).count > 0);
+			walked++;
+		}
+		assertEquals(rank, walked);
+		walked = 0;
+		for (SearchTreeNode node = tree.findMax(); node != null; node = tree.predecessor(node)) {
+			walked++;
+		}
+		assertEquals(rank, walked);
+	}
+
+	private static void deleteOne (TreeMap<Integer, Integer> counts, OSTree tree, int key) {
+		OSTreeNode node = (OSTreeNode) tree.find(key);
+		assertEquals(counts.containsKey(key), node != null);
+		if (node != null) {
+			tree.delete(node);
+			int count = counts.get(key);
+			if (count == 1) {
+				counts.remove(key);
+			} else {
+				counts.put(key, count - 1);
+			}
+		}
+	}
+
+	private static void addOne (TreeMap<Integer, Integer> counts, int key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	@Test
+	public void tombstonesStayHidden() throws IOException {
+		Random random = new Random(3);
+		LazyDeleteOSTree tree = new LazyDeleteOSTree();
+		tree.setNodePool(new OSTreeNodePool(64));
+		TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(3000);
+			if (random.nextBoolean()) {
+				tree.insert(key, null);
+				addOne(counts, key);
+			} else {
+				deleteOne(counts, tree, key);
+			}
+			if (i % 20000 == 0) {
+				assertKeys(counts, tree);
+			}
+		}
+		assertKeys(counts, tree);
+
+		// Split and join with tombstones on both sides
+		RBOSTree upper = tree.split(1500);
+		assertTrue(upper instanceof LazyDeleteOSTree);
+		TreeMap<Integer, Integer> lower = new TreeMap<Integer, Integer>(counts.headMap(1500, true));
+		TreeMap<Integer, Integer> higher = new TreeMap<Integer, Integer>(counts.tailMap(1500, false));
+		assertKeys(lower, tree);
+		assertKeys(higher, upper);
+		for (int i = 0; i < 200; i++) {
+			deleteOne(higher, upper, higher.firstKey());
+		}
+		RBOSTree plain = new RBOSTree();
+		plain.join(upper);
+		assertKeys(higher, plain);
+
+		LazyDeleteOSTree right = new LazyDeleteOSTree();
+		for (int key = 5000; key <= 5002; key++) {
+			right.insert(key, null);
+		}
+		right.delete((OSTreeNode) right.find(5000));
+		tree.join(right);
+		lower.put(5001, 1);
+		lower.put(5002, 1);
+		assertKeys(lower, tree);
+
+		// Batches, a frozen copy and a snapshot see only the live keys
+		int[] deletes = new int[400];
+		int expected = 0;
+		for (int i = 0; i < deletes.length; i++) {
+			deletes[i] = i;
+			Integer count = lower.get(i);
+			if (count != null) {
+				expected++;
+				if (count == 1) {
+					lower.remove(i);
+				} else {
+					lower.put(i, count - 1);
+				}
+			}
+		}
+		assertEquals(expected, tree.deleteAll(deletes));
+		assertKeys(lower, tree);
+		for (int i = 0; i < 50; i++) {
+			deleteOne(lower, tree, lower.lastKey());
+		}
+		assertEquals(OSTree.size(tree.getRoot()), new FrozenOSTree(tree).size());
+
+		File file = folder.newFile();
+		OSTreeSnapshot.write(tree, file, null);
+		assertKeys(lower, OSTreeSnapshot.read(file, null));
+
+		int[] inserts = new int[5000];
+		for (int i = 0; i < inserts.length; i++) {
+			inserts[i] = random.nextInt(3000);
+			addOne(lower, inserts[i]);
+		}
+		tree.insertAll(inserts, null);
+		assertKeys(lower, tree);
+		assertEquals(0, tree.tombstoneCount());
+	}
+
+	@Test
+	public void burstOfDeletesCompacts() {
+		LazyDeleteOSTree tree = new LazyDeleteOSTree();
+		OSTreeNode[] nodes = new OSTreeNode[10000];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = tree.insert(i, null);
+		}
+		for (int i = 0; i < nodes.length / 2; i++) {
+			tree.delete(nodes[i]);
+		}
+		assertTrue(tree.tombstoneCount() <= 0.25 * nodes.length);
+		assertEquals(nodes.length / 2, OSTree.size(tree.getRoot()));
+		assertNotNull(tree.find(nodes.length - 1));
+		assertEquals(nodes.length / 2, tree.findMin().getKey());
+	}
+}
@@ -0,0 +1,238 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of recovering a logged OS tree from its snapshot and log
+ */
+public class LoggedOSTreeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recoversConcurrentWritesAfterACheckpoint() throws Exception {
+		File directory = folder.newFolder();
+		final LoggedOSTree tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 2);
+		Thread[] writers = new Thread[8];
+		final IOException[] failure = new IOException[1];
+		for (int t = 0; t < writers.length; t++) {
+			final int base = t * 1000;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 200; i++) {
+							tree.insert(base + i, "v" + (base + i));
+						}
+					} catch (IOException e) {
+						failure[0] = e;
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertNull(failure[0]);
+		for (int i = 0; i < 100; i++) {
+			tree.delete(i);
+		}
+		tree.checkpoint();
+		for (int i = 0; i < 50; i++) {
+			tree.delete(1000 + i);
+		}
+		tree.insert(-5, null);
+		tree.close();
+
+		LoggedOSTree back = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 2);
+		try {
+			assertEquals(1600 - 150 + 1, back.size());
+			assertEquals("v2005", back.find(2005).getData());
+			assertNull(back.find(-5).getData());
+			assertNull(back.find(5));
+			assertEquals(1600 - 150 + 1, back.countInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+		} finally {
+			back.close();
+		}
+	}
+
+	@Test
+	public void dropsATornRecordAtTheEndOfTheLog() throws IOException {
+		File directory = folder.newFolder();
+		LoggedOSTree tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		for (int i = 0; i < 10; i++) {
+			tree.insert(i, "v" + i);
+		}
+		tree.close();
+
+		File log = null;
+		for (File file : directory.listFiles()) {
+			if (file.getName().startsWith("log-")) {
+				log = file;
+			}
+		}
+		RandomAccessFile raw = new RandomAccessFile(log, "rw");
+		try {
+			raw.seek(raw.length());
+			raw.write(new byte[] { 1, 0, 0 });
+		} finally {
+			raw.close();
+		}
+
+		tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		assertEquals(10, tree.size());
+		tree.insert(70, "x");
+		tree.close();
+
+		tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		try {
+			assertEquals(11, tree.size());
+			assertEquals("x", tree.find(70).getData());
+		} finally {
+			tree.close();
+		}
+	}
+
+	@Test
+	public void replaysALogBiggerThanItsReadBuffer() throws IOException {
+		File directory = folder.newFolder();
+		LoggedOSTree tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		StringBuilder padding = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			padding.append('p');
+		}
+		for (int i = 0; i < 300; i++) {
+			tree.insert(i, padding.toString() + i);
+		}
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			big.append((char) ('a' + i % 26));
+		}
+		tree.insert(1000, big.toString());
+		tree.delete(7);
+		tree.close();
+
+		// A header whose length runs past the end of the log is dropped
+		RandomAccessFile raw = new RandomAccessFile(new File(directory, "log-0"), "rw");
+		try {
+			raw.seek(raw.length());
+			raw.write(new byte[] { 1, 0, 0, 0, 5, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0, 0 });
+		} finally {
+			raw.close();
+		}
+
+		tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		try {
+			assertEquals(300, tree.size());
+			assertNull(tree.find(7));
+			assertEquals(padding.toString() + 299, tree.find(299).getData());
+			assertEquals(big.toString(), tree.find(1000).getData());
+			tree.insert(2000, "after");
+		} finally {
+			tree.close();
+		}
+
+		tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		try {
+			assertEquals(301, tree.size());
+			assertEquals("after", tree.find(2000).getData());
+		} finally {
+			tree.close();
+		}
+	}
+
+	@Test
+	public void readersSeeOnlyDurableChanges() throws Exception {
+		final LoggedOSTree tree = new LoggedOSTree(folder.newFolder(), null, 1000);
+		try {
+			Thread writer = new Thread() {
+				@Override
+				public void run() {
+					try {
+						tree.insert(9, null);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			writer.start();
+			Thread.sleep(100);
+
+			// The insert waits for the commit, but a delete already counts it
+			assertEquals(0, tree.size());
+			assertNull(tree.find(9));
+			assertTrue(tree.delete(9));
+			writer.join();
+			assertEquals(0, tree.size());
+		} finally {
+			tree.close();
+		}
+	}
+
+	/**
+	 * return the data of the nodes with a key, in key order
+	 */
+	private static List<Object> dataOf (LoggedOSTree tree, int key) {
+		List<Object> data = new ArrayList<Object>();
+		int rank = tree.rank(key - 1);
+		for (int i = rank + 1; i <= tree.rank(key); i++) {
+			data.add(tree.select(i).getData());
+		}
+		return data;
+	}
+
+	@Test
+	public void recoveryKeepsTheDataOfRepeatedKeys() throws IOException {
+		File directory = folder.newFolder();
+		LoggedOSTree tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		for (String data : new String[] { "a", "b", "c", "d" }) {
+			tree.insert(5, data);
+		}
+		tree.checkpoint();
+		tree.insert(5, "e");
+		assertTrue(tree.delete(5));
+		assertTrue(tree.delete(5));
+		tree.insert(5, "f");
+		List<Object> before = dataOf(tree, 5);
+		assertEquals(4, before.size());
+		tree.close();
+
+		tree = new LoggedOSTree(directory, OSTreeSnapshotTest.STRINGS, 0);
+		try {
+			assertEquals(before, dataOf(tree, 5));
+		} finally {
+			tree.close();
+		}
+	}
+
+	@Test
+	public void deleteOfTheSmallestKey() throws IOException {
+		File directory = folder.newFolder();
+		LoggedOSTree tree = new LoggedOSTree(directory, null, 0);
+		tree.insert(Integer.MIN_VALUE, null);
+		tree.insert(Integer.MIN_VALUE, null);
+		assertTrue(tree.delete(Integer.MIN_VALUE));
+		tree.close();
+
+		tree = new LoggedOSTree(directory, null, 0);
+		try {
+			assertEquals(1, tree.size());
+			assertTrue(tree.delete(Integer.MIN_VALUE));
+			assertEquals(0, tree.size());
+		} finally {
+			tree.close();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the OS trees over long keys and over keys ordered by a comparator
+ */
+public class LongOSTreeTest {
+
+	/**
+	 * A string key for a long that sorts like the long, as long as it is above -2^40
+	 */
+	private static String text (long key) {
+		return String.format("%015d", key + (1L << 40));
+	}
+
+	@Test
+	public void agreesWithASortedList() {
+		Random random = new Random(4);
+		for (int round = 0; round < 100; round++) {
+			LongOSTree tree = new LongOSTree();
+			ComparatorOSTree<Long> natural = new ComparatorOSTree<Long>();
+			ComparatorOSTree<String> reversed = new ComparatorOSTree<String>(Collections.reverseOrder());
+			List<Long> keys = new ArrayList<Long>();
+			for (int op = 0; op < 800; op++) {
+				long key = (random.nextInt(200) - 100) * (1L << 33) + random.nextInt(3);
+				if (random.nextInt(3) > 0) {
+					tree.insert(key, null);
+					natural.insert(key, null);
+					reversed.insert(text(key), null);
+					keys.add(key);
+				} else {
+					boolean present = keys.remove((Long) key);
+					assertEquals(present, tree.delete(key));
+					assertEquals(present, natural.delete(key));
+					assertEquals(present, reversed.delete(text(key)));
+				}
+			}
+			Collections.sort(keys);
+
+			assertEquals(keys.size(), tree.size());
+			for (int i = 1; i <= keys.size(); i++) {
+				assertEquals((long) keys.get(i - 1), tree.select(i).getLongKey());
+				assertEquals(keys.get(i - 1), natural.select(i).getObjectKey());
+				assertEquals(text(keys.get(i - 1)), reversed.select(keys.size() - i + 1).getObjectKey());
+			}
+			for (int query = 0; query < 200; query++) {
+				long key = (random.nextInt(210) - 105) * (1L << 33) + random.nextInt(3);
+				long hi = key + (5L << 33);
+				int atMost = 0;
+				int inRange = 0;
+				for (long x : keys) {
+					if (x <= key) {
+						atMost++;
+					}
+					if (x >= key && x <= hi) {
+						inRange++;
+					}
+				}
+				assertEquals(atMost, tree.rank(key));
+				assertEquals(atMost, natural.rank(key));
+				assertEquals(inRange, tree.countInRange(key, hi));
+				assertEquals(inRange, natural.countInRange(key, hi));
+			}
+
+			int rank = 0;
+			for (LongOSTreeNode node = tree.findMin(); node != null; node = tree.successor(node)) {
+				assertEquals(++rank, tree.rank(node));
+			}
+			assertEquals(keys.size(), rank);
+			for (LongOSTreeNode node = tree.findMax(); node != null; node = tree.predecessor(node)) {
+				rank--;
+			}
+			assertEquals(0, rank);
+		}
+	}
+
+	@Test
+	public void splitJoinAndBatches() {
+		Random random = new Random(9);
+		for (int round = 0; round < 200; round++) {
+			LongOSTree tree = new LongOSTree();
+			ComparatorOSTree<Long> natural = new ComparatorOSTree<Long>();
+			List<Long> keys = new ArrayList<Long>();
+			int size = random.nextInt(300);
+			long[] batch = new long[size];
+			Long[] boxed = new Long[size];
+			for (int i = 0; i < size; i++) {
+				batch[i] = (random.nextInt(100) - 50) * (1L << 40);
+				boxed[i] = batch[i];
+				keys.add(batch[i]);
+			}
+			tree.insertAll(batch, null);
+			natural.insertAll(boxed, null);
+			int more = random.nextInt(40);
+			for (int i = 0; i < more; i++) {
+				long key = (random.nextInt(100) - 50) * (1L << 40);
+				tree.insertAll(new long[] { key }, null);
+				natural.insertAll(new Long[] { key }, null);
+				keys.add(key);
+			}
+			Collections.sort(keys);
+			assertEquals(keys, longKeys(tree));
+			assertEquals(keys, objectKeys(natural));
+			TreeChecks.assertRedBlackLinks(tree.tree);
+			TreeChecks.assertRedBlackLinks(natural.tree);
+
+			long key = (random.nextInt(110) - 55) * (1L << 40);
+			LongOSTree upper = tree.split(key);
+			ComparatorOSTree<Long> naturalUpper = natural.split(key);
+			TreeChecks.assertRedBlackLinks(tree.tree);
+			TreeChecks.assertRedBlackLinks(upper.tree);
+			int lower = 0;
+			while (lower < keys.size() && keys.get(lower) <= key) {
+				lower++;
+			}
+			assertEquals(keys.subList(0, lower), longKeys(tree));
+			assertEquals(keys.subList(lower, keys.size()), longKeys(upper));
+			assertEquals(keys.subList(lower, keys.size()), objectKeys(naturalUpper));
+			if (!tree.isEmpty() && !upper.isEmpty()) {
+				try {
+					upper.join(tree);
+					fail("joined a tree of smaller keys to the right");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+			}
+			tree.join(upper);
+			natural.join(naturalUpper);
+			assertTrue(upper.isEmpty());
+			assertEquals(keys, longKeys(tree));
+			assertEquals(keys, objectKeys(natural));
+			TreeChecks.assertRedBlackLinks(tree.tree);
+
+			long lo = (random.nextInt(110) - 55) * (1L << 40);
+			long hi = lo + (10L << 40);
+			List<Long> inRange = new ArrayList<Long>();
+			for (LongOSTreeNode node : tree.range(lo, hi)) {
+				inRange.add(node.getLongKey());
+			}
+			List<Long> expected = new ArrayList<Long>();
+			for (long x : keys) {
+				if (x >= lo && x <= hi) {
+					expected.add(x);
+				}
+			}
+			assertEquals(expected, inRange);
+			Iterator<LongOSTreeNode> from = tree.iterator(lo);
+			Iterator<LongOSTreeNode> down = tree.descendingIterator(lo);
+			int below = 0;
+			int atMost = 0;
+			for (long x : keys) {
+				if (x < lo) {
+					below++;
+				}
+				if (x <= lo) {
+					atMost++;
+				}
+			}
+			for (int i = below; i < keys.size(); i++) {
+				assertEquals((long) keys.get(i), from.next().getLongKey());
+			}
+			assertFalse(from.hasNext());
+			for (int i = atMost - 1; i >= 0; i--) {
+				assertEquals((long) keys.get(i), down.next().getLongKey());
+			}
+			assertFalse(down.hasNext());
+
+			long[] gone = new long[random.nextInt(2) == 0 ? 3 : size];
+			Long[] goneBoxed = new Long[gone.length];
+			for (int i = 0; i < gone.length; i++) {
+				gone[i] = (random.nextInt(100) - 50) * (1L << 40);
+				goneBoxed[i] = gone[i];
+			}
+			int deleted = 0;
+			for (long x : gone) {
+				if (keys.remove((Long) x)) {
+					deleted++;
+				}
+			}
+			assertEquals(deleted, tree.deleteAll(gone));
+			assertEquals(deleted, natural.deleteAll(goneBoxed));
+			assertEquals(keys, longKeys(tree));
+			assertEquals(keys, objectKeys(natural));
+			TreeChecks.assertRedBlackLinks(tree.tree);
+			TreeChecks.assertRedBlackLinks(natural.tree);
+		}
+	}
+
+	@Test
+	public void nodesAreNotReturnedAsOSTreeNodes() {
+		assertFalse(OSTreeNode.class.isAssignableFrom(LongOSTreeNode.class));
+		assertFalse(OSTreeNode.class.isAssignableFrom(ComparatorOSTreeNode.class));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void intKeyOfALongNodeIsNotUsed() {
+		new LongNode(1L << 40, null).getKey();
+	}
+
+	private static List<Long> longKeys (LongOSTree tree) {
+		List<Long> keys = new ArrayList<Long>();
+		for (LongOSTreeNode node : tree) {
+			keys.add(node.getLongKey());
+		}
+		return keys;
+	}
+
+	private static List<Long> objectKeys (ComparatorOSTree<Long> tree) {
+		List<Long> keys = new ArrayList<Long>();
+		for (ComparatorOSTreeNode<Long> node : tree) {
+			keys.add(node.getObjectKey());
+		}
+		return keys;
+	}
+}
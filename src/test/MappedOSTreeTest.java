@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the memory mapped OS tree, across reopening the file
+ */
+public class MappedOSTreeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsItsNodesAcrossReopening() throws IOException {
+		Random random = new Random(5);
+		File file = new File(folder.getRoot(), "tree.bin");
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int round = 0; round < 5; round++) {
+			MappedOSTree tree = new MappedOSTree(file);
+			try {
+				assertEquals(keys.size(), tree.size());
+				for (int i = 0; i < 3000; i++) {
+					int key = random.nextInt(1500);
+					if (keys.isEmpty() || random.nextInt(3) > 0) {
+						tree.insert(key, key * 10L);
+						keys.add(key);
+					} else {
+						assertEquals(keys.remove((Integer) key), tree.delete(key));
+					}
+				}
+				List<Integer> sorted = new ArrayList<Integer>(keys);
+				Collections.sort(sorted);
+				for (int i = 1; i <= sorted.size(); i++) {
+					int node = tree.select(i);
+					assertEquals((int) sorted.get(i - 1), tree.getKey(node));
+					assertEquals(sorted.get(i - 1) * 10L, tree.getValue(node));
+				}
+				for (int key = 0; key < 1500; key += 7) {
+					assertEquals(TreeChecks.countAtMost(sorted, key), tree.rank(key));
+				}
+			} finally {
+				tree.close();
+			}
+		}
+	}
+}
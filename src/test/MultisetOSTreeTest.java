@@ -0,0 +1,182 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the multiset OS tree, which keeps one node per distinct key
+ */
+public class MultisetOSTreeTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void add (Map<Integer, Integer> counts, int key, int times) {
+		Integer count = counts.get(key);
+		counts.put(key, (count == null ? 0 : count) + times);
+	}
+
+	@Test
+	public void agreesWithACountMap() throws IOException {
+		Random random = new Random(9);
+		for (int round = 0; round < 200; round++) {
+			MultisetOSTree tree = new MultisetOSTree();
+			TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+			for (int op = 0; op < 600; op++) {
+				int key = random.nextInt(40);
+				int times = 1 + random.nextInt(5);
+				switch (random.nextInt(4)) {
+				case 0:
+				case 1:
+					tree.add(key, times);
+					add(counts, key, times);
+					break;
+				case 2:
+					int have = counts.containsKey(key) ? counts.get(key) : 0;
+					assertEquals(Math.min(have, times), tree.remove(key, times));
+					if (have > times) {
+						counts.put(key, have - times);
+					} else {
+						counts.remove(key);
+					}
+					break;
+				default:
+					int[] batch = new int[random.nextInt(30)];
+					for (int i = 0; i < batch.length; i++) {
+						batch[i] = random.nextInt(40);
+						add(counts, batch[i], 1);
+					}
+					tree.insertAll(batch, null);
+				}
+			}
+
+			List<Integer> flat = new ArrayList<Integer>();
+			for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+				for (int i = 0; i < entry.getValue(); i++) {
+					flat.add(entry.getKey());
+				}
+			}
+			TreeChecks.assertRedBlack(tree);
+			assertEquals(flat.size(), tree.size());
+			assertEquals(counts.size(), tree.distinctSize());
+			TreeChecks.assertOrder(flat, tree);
+			FrozenOSTree frozen = new FrozenOSTree(tree);
+			for (int key = -1; key < 42; key++) {
+				assertEquals(counts.containsKey(key) ? (int) counts.get(key) : 0, tree.count(key));
+				List<Integer> inRange = new ArrayList<Integer>();
+				for (int x : flat) {
+					if (x >= key && x <= key + 5) {
+						inRange.add(x);
+					}
+				}
+				assertEquals(inRange.size(), tree.countInRange(key, key + 5));
+				List<Integer> got = new ArrayList<Integer>();
+				for (OSTreeNode node : tree.range(key, key + 5)) {
+					got.add(node.getKey());
+				}
+				assertEquals(inRange, got);
+				assertEquals(tree.rank(key), frozen.rank(key));
+			}
+
+			if (round % 20 == 0) {
+				File file = folder.newFile();
+				OSTreeSnapshot.write(tree, file, null);
+				RBOSTree back = OSTreeSnapshot.read(file, null);
+				assertTrue(back instanceof MultisetOSTree);
+				TreeChecks.assertRedBlack(back);
+				TreeChecks.assertOrder(flat, back);
+			}
+
+			MultisetOSTree upper = (MultisetOSTree) tree.split(20);
+			upper.add(20, 3);
+			tree.union(upper);
+			TreeChecks.assertRedBlack(tree);
+			assertEquals((counts.containsKey(20) ? counts.get(20) : 0) + 3, tree.count(20));
+		}
+	}
+
+	@Test
+	public void manyEventsOnFewKeysKeepFewNodes() {
+		Random random = new Random(9);
+		int[] events = new int[2000000];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = random.nextInt(86400);
+		}
+		MultisetOSTree tree = new MultisetOSTree();
+		tree.insertAll(events, null);
+		assertEquals(events.length, tree.size());
+		assertEquals(86400, tree.distinctSize());
+	}
+
+	@Test
+	public void inheritedInsertAndDeleteWorkOnCopies() {
+		MultisetOSTree tree = new MultisetOSTree();
+		OSTreeNode node = tree.add(5);
+		assertSame(node, tree.insert(5, null));
+		tree.insert(new OSTreeNode(5));
+		tree.insert(new OSTreeNode(7, "seven"));
+		assertEquals(3, tree.count(5));
+		assertEquals(4, tree.size());
+		assertEquals(2, tree.distinctSize());
+		TreeChecks.assertRedBlack(tree);
+
+		tree.delete(node);
+		assertEquals(2, tree.count(5));
+		assertEquals(3, tree.size());
+		tree.delete(node);
+		tree.delete(node);
+		assertEquals(0, tree.count(5));
+		assertNull(tree.find(5));
+		assertEquals("seven", tree.find(7).getData());
+		assertEquals(1, tree.size());
+		TreeChecks.assertRedBlack(tree);
+	}
+
+	@Test
+	public void joinAndSplitKeepOneNodePerKey() {
+		MultisetOSTree left = new MultisetOSTree();
+		left.add(1);
+		left.add(5, 2);
+		MultisetOSTree right = new MultisetOSTree();
+		right.add(5, 3);
+		right.add(9);
+		left.join(right);
+		assertEquals(5, left.count(5));
+		assertEquals(7, left.size());
+		assertEquals(3, left.distinctSize());
+		assertEquals(0, right.size());
+		TreeChecks.assertRedBlack(left);
+
+		// A rank inside the copies of 5 leaves a node of 5 on both sides
+		MultisetOSTree upper = (MultisetOSTree) left.splitAfter(3);
+		assertEquals(3, left.size());
+		assertEquals(2, left.count(5));
+		assertEquals(4, upper.size());
+		assertEquals(3, upper.count(5));
+		assertEquals(2, upper.distinctSize());
+		TreeChecks.assertRedBlack(left);
+		TreeChecks.assertRedBlack(upper);
+
+		left.join(upper);
+		assertEquals(5, left.count(5));
+		assertEquals(3, left.distinctSize());
+
+		// A split by key never cuts a node
+		upper = (MultisetOSTree) left.split(5);
+		assertEquals(6, left.size());
+		assertEquals(1, upper.size());
+		assertEquals(1, upper.count(9));
+	}
+}
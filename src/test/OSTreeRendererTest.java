@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the renderer draws trees to files without a display
+ */
+public class OSTreeRendererTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesSvgAndPng() throws IOException {
+		OSTree tree = RBOSTree.fromSorted(new int[] { 1, 2, 3, 4, 5, 6, 7 }, null);
+		StringWriter svg = new StringWriter();
+		new OSTreeRenderer().writeSvg(tree, svg);
+		assertTrue(svg.toString().startsWith("<"));
+		assertTrue(svg.toString().contains("</svg>"));
+
+		File png = folder.newFile("tree.png");
+		new OSTreeRenderer().writePng(tree, png);
+		assertTrue(ImageIO.read(png).getWidth() > 0);
+	}
+
+	@Test
+	public void collapsedSubtreesAreNotDrawn() throws IOException {
+		OSTree tree = RBOSTree.fromSorted(new int[] { 1, 2, 3, 4, 5, 6, 7 }, null);
+		OSTreeRenderer renderer = new OSTreeRenderer();
+		StringWriter full = new StringWriter();
+		renderer.writeSvg(tree, full);
+		renderer.collapse(tree.getRoot().getLeft().getKey());
+		StringWriter collapsed = new StringWriter();
+		renderer.writeSvg(tree, collapsed);
+		assertTrue(collapsed.toString().length() < full.toString().length());
+	}
+
+	@Test
+	public void bigTreesRender() throws IOException {
+		int[] keys = new int[100000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		File png = folder.newFile("big.png");
+		new OSTreeRenderer().writePng(RBOSTree.fromSorted(keys, null), png);
+		assertEquals(true, png.length() > 0);
+	}
+}
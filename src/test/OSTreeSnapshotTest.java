@@ -0,0 +1,102 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of writing a tree to a snapshot file and reading it back
+ */
+public class OSTreeSnapshotTest {
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Stores strings as UTF-8
+	 */
+	static final PayloadCodec STRINGS = new PayloadCodec() {
+		@Override
+		public byte[] encode (Object data) {
+			return ((String) data).getBytes(UTF_8);
+		}
+
+		@Override
+		public Object decode (byte[] bytes) {
+			return new String(bytes, UTF_8);
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsBackWhatWasWritten() throws IOException {
+		Random random = new Random(13);
+		File file = folder.newFile();
+		for (int round = 0; round < 100; round++) {
+			int size = round < 10 ? round : random.nextInt(3000);
+			RBOSTree tree = new RBOSTree();
+			for (int i = 0; i < size; i++) {
+				int key;
+				if (random.nextInt(5) == 0) {
+					key = random.nextBoolean() ? Integer.MIN_VALUE + random.nextInt(3) : Integer.MAX_VALUE - random.nextInt(3);
+				} else {
+					key = random.nextInt();
+				}
+				String data;
+				if (random.nextInt(4) == 0) {
+					data = null;
+				} else if (random.nextInt(20) == 0) {
+					data = new String(new char[random.nextInt(70000)]).replace('\0', 'x');
+				} else {
+					data = "v" + key;
+				}
+				tree.insert(new OSTreeNode(key, data));
+			}
+
+			OSTreeSnapshot.write(tree, file, STRINGS);
+			RBOSTree back = OSTreeSnapshot.read(file, STRINGS);
+			TreeChecks.assertRedBlack(back);
+			assertEquals(size, OSTree.size(back.getRoot()));
+			for (int i = 1; i <= size; i++) {
+				assertEquals(tree.select(i).getKey(), back.select(i).getKey());
+				assertEquals(tree.select(i).getData(), back.select(i).getData());
+			}
+
+			OSTreeSnapshot.write(tree, file, null);
+			assertEquals(size, OSTree.size(OSTreeSnapshot.read(file, null).getRoot()));
+		}
+	}
+
+	@Test
+	public void detectsACorruptFile() throws IOException {
+		RBOSTree tree = new RBOSTree();
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(new OSTreeNode(i * 3));
+		}
+		File file = folder.newFile();
+		OSTreeSnapshot.write(tree, file, null);
+
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.seek(500);
+			int b = raw.read();
+			raw.seek(500);
+			raw.write(b ^ 1);
+		} finally {
+			raw.close();
+		}
+		try {
+			OSTreeSnapshot.read(file, null);
+			fail("a flipped bit was not detected");
+		} catch (IOException expected) {
+		}
+	}
+}
@@ -0,0 +1,217 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests of the unbalanced OS tree: select, rank, ranges, bulk build, batches and the node pool
+ */
+public class OSTreeTest {
+
+	@Test
+	public void selectAndRankWithRepeatedKeys() {
+		Random random = new Random(2);
+		for (int round = 0; round < 100; round++) {
+			OSTree tree = new OSTree();
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 300; i++) {
+				int key = random.nextInt(200);
+				tree.insert(new OSTreeNode(key));
+				keys.add(key);
+			}
+			for (int i = 0; i < 100; i++) {
+				int key = keys.get(random.nextInt(keys.size()));
+				tree.delete((OSTreeNode) tree.find(key));
+				keys.remove((Integer) key);
+			}
+			Collections.sort(keys);
+
+			TreeChecks.assertValid(tree);
+			TreeChecks.assertOrder(keys, tree);
+			for (int key = -1; key <= 201; key++) {
+				assertEquals(TreeChecks.countAtMost(keys, key), tree.rank(key));
+			}
+			for (int i = 1; i <= keys.size(); i++) {
+				assertEquals(i, tree.rank(tree.select(i)));
+			}
+		}
+	}
+
+	@Test
+	public void rangesCountAndSplit() {
+		Random random = new Random(8);
+		for (int round = 0; round < 50; round++) {
+			OSTree tree = new OSTree();
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 200; i++) {
+				int key = random.nextInt(100);
+				tree.insert(new OSTreeNode(key));
+				keys.add(key);
+			}
+			Collections.sort(keys);
+
+			for (int query = 0; query < 50; query++) {
+				int lo = random.nextInt(120) - 10;
+				int hi = random.nextInt(120) - 10;
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int key : keys) {
+					if (key >= lo && key <= hi) {
+						expected.add(key);
+					}
+				}
+				assertEquals(expected.size(), tree.countInRange(lo, hi));
+
+				// The two halves of a split range together are the whole range
+				OSTreeRange range = tree.range(lo, hi);
+				OSTreeRange lower = range.split();
+				List<Integer> got = new ArrayList<Integer>();
+				if (lower != null) {
+					for (OSTreeNode node : lower) {
+						got.add(node.getKey());
+					}
+				}
+				for (OSTreeNode node : range) {
+					got.add(node.getKey());
+				}
+				assertEquals(expected, got);
+			}
+		}
+
+		OSTree single = new OSTree();
+		single.insert(new OSTreeNode(5));
+		assertEquals(1, single.countInRange(Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void fromSortedBuildsBalancedTree() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (int size : new int[] { 0, 1, 2, 3, 100, 1023, 1024, 200000 }) {
+				int[] keys = new int[size];
+				Object[] data = new Object[size];
+				for (int i = 0; i < size; i++) {
+					keys[i] = 2 * i;
+					data[i] = "v" + i;
+				}
+				OSTree sequential = OSTree.fromSorted(keys, data);
+				OSTree parallel = OSTree.fromSortedParallel(keys, data, pool);
+				for (OSTree tree : new OSTree[] { sequential, parallel }) {
+					TreeChecks.assertValid(tree);
+					assertEquals(size, OSTree.size(tree.getRoot()));
+					assertEquals(size == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(size) - 1, tree.height(tree.getRoot()));
+					for (int i = 1; i <= size; i += 1 + size / 100) {
+						assertEquals(keys[i - 1], tree.select(i).getKey());
+						assertEquals(data[i - 1], tree.select(i).getData());
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void fromSortedRejectsUnsortedKeys() {
+		OSTree.fromSorted(new int[] { 1, 3, 2 }, null);
+	}
+
+	private static void assertBalancedIfRedBlack (OSTree tree) {
+		if (tree instanceof RBOSTree) {
+			TreeChecks.assertRedBlack(tree);
+		} else {
+			TreeChecks.assertValid(tree);
+		}
+	}
+
+	@Test
+	public void insertAllAndDeleteAll() {
+		Random random = new Random(1);
+		for (int round = 0; round < 200; round++) {
+			OSTree tree = round % 2 == 0 ? new OSTree() : new RBOSTree();
+			List<Integer> keys = new ArrayList<Integer>();
+			int size = random.nextInt(2000);
+			for (int i = 0; i < size; i++) {
+				int key = random.nextInt(500);
+				tree.insert(new OSTreeNode(key));
+				keys.add(key);
+			}
+
+			// Small batches go down the tree in one descent, big ones rebuild the tree
+			int[] batch = new int[random.nextInt(round % 4 < 2 ? 50 : 3000)];
+			Object[] data = new Object[batch.length];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = random.nextInt(600) - 50;
+				data[i] = "d" + batch[i];
+				keys.add(batch[i]);
+			}
+			tree.insertAll(batch, data);
+			Collections.sort(keys);
+			assertBalancedIfRedBlack(tree);
+			assertEquals(keys, TreeChecks.keys(tree));
+
+			int[] deletes = new int[random.nextInt(round % 3 == 0 ? 40 : 4000)];
+			int expected = 0;
+			for (int i = 0; i < deletes.length; i++) {
+				deletes[i] = random.nextInt(700) - 100;
+				if (keys.remove((Integer) deletes[i])) {
+					expected++;
+				}
+			}
+			assertEquals(expected, tree.deleteAll(deletes));
+			assertBalancedIfRedBlack(tree);
+			assertEquals(keys, TreeChecks.keys(tree));
+		}
+	}
+
+	@Test
+	public void nodePoolReusesDeletedNodes() {
+		for (OSTree tree : new OSTree[] { new OSTree(), new RBOSTree() }) {
+			OSTreeNodePool pool = new OSTreeNodePool(1000);
+			tree.setNodePool(pool);
+			Random random = new Random(3);
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 1000; i++) {
+				int key = random.nextInt(5000);
+				tree.insert(key, null);
+				keys.add(key);
+			}
+			assertEquals(1000, pool.getAllocated());
+
+			// Deleting and inserting again takes every node from the pool
+			for (int i = 0; i < 10000; i++) {
+				int index = random.nextInt(keys.size());
+				tree.delete((OSTreeNode) tree.find(keys.get(index)));
+				int key = random.nextInt(5000);
+				OSTreeNode node = tree.insert(key, "v" + key);
+				assertEquals(key, node.getKey());
+				assertEquals("v" + key, node.getData());
+				keys.set(index, key);
+			}
+			assertEquals(1000, pool.getAllocated());
+			Collections.sort(keys);
+			TreeChecks.assertValid(tree);
+			TreeChecks.assertOrder(keys, tree);
+		}
+	}
+
+	@Test
+	public void nodePoolKeepsOnlyItsCapacity() {
+		OSTreeNodePool pool = new OSTreeNodePool(2);
+		for (int i = 0; i < 5; i++) {
+			pool.put(new OSTreeNode(i));
+		}
+		assertEquals(2, pool.size());
+		OSTreeNode node = pool.take(7, "x");
+		assertEquals(7, node.getKey());
+		assertNull(node.getLeft());
+		assertSame("x", node.getData());
+		assertEquals(1, pool.size());
+	}
+}
@@ -0,0 +1,34 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests that every version of a persistent OS tree stays as it was
+ */
+public class PersistentOSTreeTest {
+
+	@Test
+	public void oldVersionsDoNotChange() {
+		PersistentOSTree tree = PersistentOSTree.empty();
+		PersistentOSTree[] versions = new PersistentOSTree[101];
+		versions[0] = tree;
+		for (int i = 1; i <= 100; i++) {
+			tree = tree.insert(i, null);
+			versions[i] = tree;
+		}
+		for (int i = 0; i <= 100; i++) {
+			assertEquals(i, versions[i].size());
+			if (i > 0) {
+				assertEquals(i, versions[i].select(i).getKey());
+			}
+		}
+
+		PersistentOSTree deleted = tree.delete(50);
+		assertEquals(99, deleted.size());
+		assertEquals(100, tree.size());
+		assertEquals(49, deleted.rank(50));
+		assertEquals(50, tree.rank(50));
+		assertSame(tree, tree.delete(1000));
+	}
+}
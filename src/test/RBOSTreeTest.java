@@ -0,0 +1,160 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests of the red-black OS tree: the red-black rules, bulk build, split, join and union
+ */
+public class RBOSTreeTest {
+
+	@Test
+	public void randomInsertsAndDeletesKeepTheRules() {
+		Random random = new Random(1);
+		for (int round = 0; round < 100; round++) {
+			RBOSTree tree = new RBOSTree();
+			List<OSTreeNode> nodes = new ArrayList<OSTreeNode>();
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < 500; i++) {
+				if (nodes.isEmpty() || random.nextInt(3) > 0) {
+					OSTreeNode node = new OSTreeNode(random.nextInt(300));
+					tree.insert(node);
+					nodes.add(node);
+					keys.add(node.getKey());
+				} else {
+					OSTreeNode node = nodes.remove(random.nextInt(nodes.size()));
+					tree.delete(node);
+					keys.remove((Integer) node.getKey());
+				}
+			}
+			TreeChecks.assertRedBlack(tree);
+			Collections.sort(keys);
+			TreeChecks.assertOrder(keys, tree);
+		}
+	}
+
+	@Test
+	public void sortedInsertsStayLogarithmic() {
+		RBOSTree tree = new RBOSTree();
+		for (int i = 0; i < 100000; i++) {
+			tree.insert(new OSTreeNode(i));
+		}
+		TreeChecks.assertRedBlack(tree);
+		assertTrue(tree.height(tree.getRoot()) <= 2 * 17);
+	}
+
+	@Test
+	public void fromSortedKeepsTheRules() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (int size = 0; size < 300; size++) {
+				int[] keys = new int[size];
+				for (int i = 0; i < size; i++) {
+					keys[i] = 2 * i;
+				}
+				RBOSTree tree = size % 2 == 0 ? RBOSTree.fromSorted(keys, null) : RBOSTree.fromSortedParallel(keys, null, pool);
+				TreeChecks.assertRedBlack(tree);
+				assertEquals(size, OSTree.size(tree.getRoot()));
+
+				// The rebuilt tree must take normal inserts afterwards
+				for (int i = 0; i < size; i++) {
+					tree.insert(new OSTreeNode(2 * i + 1));
+				}
+				TreeChecks.assertRedBlack(tree);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void splitJoinAndUnion() {
+		Random random = new Random(11);
+		for (int round = 0; round < 1000; round++) {
+			RBOSTree tree = new RBOSTree();
+			List<Integer> keys = new ArrayList<Integer>();
+			int size = random.nextInt(300);
+			for (int i = 0; i < size; i++) {
+				int key = random.nextInt(200);
+				tree.insert(new OSTreeNode(key));
+				keys.add(key);
+			}
+			Collections.sort(keys);
+
+			int key = random.nextInt(220) - 10;
+			RBOSTree upper = tree.split(key);
+			TreeChecks.assertRedBlack(tree);
+			TreeChecks.assertRedBlack(upper);
+			List<Integer> lower = new ArrayList<Integer>();
+			List<Integer> higher = new ArrayList<Integer>();
+			for (int x : keys) {
+				(x <= key ? lower : higher).add(x);
+			}
+			TreeChecks.assertOrder(lower, tree);
+			TreeChecks.assertOrder(higher, upper);
+
+			tree.join(upper);
+			TreeChecks.assertRedBlack(tree);
+			assertTrue(upper.isEmpty());
+			assertEquals(keys, TreeChecks.keys(tree));
+
+			RBOSTree other = new RBOSTree();
+			int otherSize = random.nextInt(100);
+			for (int i = 0; i < otherSize; i++) {
+				int x = random.nextInt(300);
+				other.insert(new OSTreeNode(x));
+				keys.add(x);
+			}
+			tree.union(other);
+			Collections.sort(keys);
+			TreeChecks.assertRedBlack(tree);
+			assertTrue(other.isEmpty());
+			assertEquals(keys, TreeChecks.keys(tree));
+		}
+	}
+
+	@Test
+	public void splitOfBuiltTreesAtEveryKey() {
+		for (int size = 1; size <= 70; size++) {
+			int[] keys = new int[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = 2 * i;
+			}
+			for (int key = -1; key < 2 * size; key++) {
+				RBOSTree tree = RBOSTree.fromSorted(keys, null);
+				RBOSTree upper = tree.split(key);
+				TreeChecks.assertRedBlack(tree);
+				TreeChecks.assertRedBlack(upper);
+				assertEquals(Math.min(size, (key + 2) / 2), OSTree.size(tree.getRoot()));
+				tree.join(upper);
+				TreeChecks.assertRedBlack(tree);
+				assertEquals(size, OSTree.size(tree.getRoot()));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void joinRejectsOverlappingKeys() {
+		RBOSTree left = RBOSTree.fromSorted(new int[] { 1, 5 }, null);
+		RBOSTree right = RBOSTree.fromSorted(new int[] { 3, 9 }, null);
+		left.join(right);
+	}
+
+	@Test
+	public void joinKeepsThePivotOutOfTheNodePool() {
+		RBOSTree left = RBOSTree.fromSorted(new int[] { 1, 2, 3 }, null);
+		RBOSTree right = RBOSTree.fromSorted(new int[] { 10, 11, 12 }, new Object[] { "a", "b", "c" });
+		OSTreeNodePool pool = new OSTreeNodePool(10);
+		right.setNodePool(pool);
+		left.join(right);
+		assertEquals(0, pool.size());
+		assertEquals("a", left.find(10).getData());
+		TreeChecks.assertRedBlack(left);
+	}
+}
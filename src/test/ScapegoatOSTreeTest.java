@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests that the scapegoat OS tree stays weight balanced
+ */
+public class ScapegoatOSTreeTest {
+
+	/**
+	 * Assert that no child of a subtree holds more than alpha of its nodes
+	 */
+	private static void assertWeightBalanced (OSTreeNode node, double alpha) {
+		if (node == null) {
+			return;
+		}
+		int left = OSTree.size(node.getLeft());
+		int right = OSTree.size(node.getRight());
+		assertTrue("subtree of " + node.getKey() + " is out of balance", Math.max(left, right) <= alpha * node.size);
+		assertWeightBalanced(node.getLeft(), alpha);
+		assertWeightBalanced(node.getRight(), alpha);
+	}
+
+	@Test
+	public void randomInsertsAndDeletes() {
+		Random random = new Random(5);
+		ScapegoatOSTree tree = new ScapegoatOSTree();
+		TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(5000);
+			if (random.nextInt(3) > 0) {
+				tree.insert(new OSTreeNode(key));
+				Integer count = counts.get(key);
+				counts.put(key, count == null ? 1 : count + 1);
+			} else {
+				OSTreeNode node = (OSTreeNode) tree.find(key);
+				assertEquals(counts.containsKey(key), node != null);
+				if (node != null) {
+					tree.delete(node);
+					int count = counts.get(key);
+					if (count == 1) {
+						counts.remove(key);
+					} else {
+						counts.put(key, count - 1);
+					}
+				}
+			}
+		}
+		TreeChecks.assertValid(tree);
+		assertWeightBalanced(tree.getRoot(), 0.7);
+		int rank = 0;
+		for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			rank += entry.getValue();
+			assertEquals(rank, tree.rank(entry.getKey()));
+			assertEquals((int) entry.getKey(), tree.select(rank).getKey());
+		}
+		assertEquals(rank, OSTree.size(tree.getRoot()));
+	}
+
+	@Test
+	public void sortedInsertsAndBatchDeletes() {
+		ScapegoatOSTree tree = new ScapegoatOSTree();
+		int size = 100000;
+		for (int i = 0; i < size; i++) {
+			tree.insert(new OSTreeNode(i));
+		}
+		TreeChecks.assertValid(tree);
+		assertWeightBalanced(tree.getRoot(), 0.7);
+
+		int[] evens = new int[size / 2];
+		for (int i = 0; i < evens.length; i++) {
+			evens[i] = 2 * i;
+		}
+		assertEquals(evens.length, tree.deleteAll(evens));
+		assertWeightBalanced(tree.getRoot(), 0.7);
+
+		int[] few = new int[1000];
+		for (int i = 0; i < few.length; i++) {
+			few[i] = 2 * i + 1;
+		}
+		assertEquals(few.length, tree.deleteAll(few));
+		TreeChecks.assertValid(tree);
+		assertWeightBalanced(tree.getRoot(), 0.7);
+		assertNotNull(tree.find(2001));
+	}
+
+	@Test
+	public void smallBatchesStayBalanced() {
+		Random random = new Random(8);
+		ScapegoatOSTree tree = new ScapegoatOSTree();
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int round = 0; round < 300; round++) {
+
+			// Batches below an eighth of the tree go down it in one descent, clustered ones unbalance it most
+			int[] batch = new int[1 + random.nextInt(1 + keys.size() / 10)];
+			int base = random.nextInt(10000);
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = base + random.nextInt(round % 2 == 0 ? 20 : 10000);
+				keys.add(batch[i]);
+			}
+			tree.insertAll(batch, null);
+			Collections.sort(keys);
+			TreeChecks.assertValid(tree);
+			assertWeightBalanced(tree.getRoot(), 0.7);
+			assertEquals(keys, TreeChecks.keys(tree));
+
+			int[] deletes = new int[random.nextInt(1 + keys.size() / 12)];
+			int expected = 0;
+			for (int i = 0; i < deletes.length; i++) {
+				deletes[i] = keys.isEmpty() || random.nextBoolean() ? random.nextInt(20000) : keys.get(random.nextInt(keys.size()));
+				if (keys.remove((Integer) deletes[i])) {
+					expected++;
+				}
+			}
+			assertEquals(expected, tree.deleteAll(deletes));
+			TreeChecks.assertValid(tree);
+			assertWeightBalanced(tree.getRoot(), 0.7);
+			assertEquals(keys, TreeChecks.keys(tree));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAlphaOfOneHalf() {
+		new ScapegoatOSTree(0.5);
+	}
+}
@@ -0,0 +1,138 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the plain binary search tree: successor, delete, iterators and height
+ */
+public class SearchTreeTest {
+
+	private static SearchTree treeOf (int... keys) {
+		SearchTree tree = new SearchTree();
+		for (int key : keys) {
+			tree.insert(new SearchTreeNode(key, null));
+		}
+		return tree;
+	}
+
+	@Test
+	public void successorOfMaxIsNull() {
+		SearchTree tree = treeOf(5, 3, 8, 7);
+		assertEquals(7, tree.successor(tree.find(5)).getKey());
+		assertEquals(8, tree.successor(tree.find(7)).getKey());
+		assertNull(tree.successor(tree.find(8)));
+
+		// A root without a right child is the maximum
+		SearchTree single = treeOf(1);
+		assertNull(single.successor(single.getRoot()));
+	}
+
+	@Test
+	public void predecessorOfMinIsNull() {
+		SearchTree tree = treeOf(5, 3, 8, 4);
+		assertEquals(4, tree.predecessor(tree.find(5)).getKey());
+		assertEquals(3, tree.predecessor(tree.find(4)).getKey());
+		assertNull(tree.predecessor(tree.find(3)));
+	}
+
+	@Test
+	public void deleteRootWithOneChild() {
+		SearchTree tree = treeOf(5, 3);
+		tree.delete(tree.getRoot());
+		assertEquals(3, tree.getRoot().getKey());
+		assertNull(tree.getRoot().getFather());
+
+		tree.delete(tree.getRoot());
+		assertTrue(tree.isEmpty());
+	}
+
+	@Test
+	public void iteratorsFollowKeyOrder() {
+		Random random = new Random(5);
+		for (int round = 0; round < 100; round++) {
+			RBOSTree tree = new RBOSTree();
+			List<Integer> keys = new ArrayList<Integer>();
+			int count = random.nextInt(200);
+			for (int i = 0; i < count; i++) {
+				int key = random.nextInt(60);
+				tree.insert(new OSTreeNode(key));
+				keys.add(key);
+			}
+			Collections.sort(keys);
+
+			List<Integer> got = new ArrayList<Integer>();
+			for (SearchTreeNode node : tree) {
+				got.add(node.getKey());
+			}
+			assertEquals(keys, got);
+
+			for (int from = -2; from < 63; from += 5) {
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int key : keys) {
+					if (key >= from) {
+						expected.add(key);
+					}
+				}
+				assertEquals(expected, collect(tree.iterator(from)));
+
+				expected.clear();
+				for (int i = keys.size() - 1; i >= 0; i--) {
+					if (keys.get(i) <= from) {
+						expected.add(keys.get(i));
+					}
+				}
+				assertEquals(expected, collect(tree.descendingIterator(from)));
+			}
+
+			Collections.reverse(keys);
+			assertEquals(keys, collect(tree.descendingIterator()));
+		}
+	}
+
+	@Test
+	public void heightFollowsTheLongestPath() {
+		SearchTree tree = new SearchTree();
+		for (int key : new int[] { 50, 30, 70, 20, 40, 80, 35, 37 }) {
+			tree.insert(new SearchTreeNode(key, null));
+		}
+
+		// 50, 30, 40, 35, 37 is the longest path, deeper than the right side
+		assertEquals(4, tree.height(tree.getRoot()));
+		assertEquals(1, tree.height(tree.getRoot().getRight()));
+	}
+
+	@Test
+	public void heightOfDegenerateTreeDoesNotOverflowTheStack() {
+		OSTree tree = new OSTree();
+		OSTreeNode last = null;
+		for (int i = 0; i < 200000; i++) {
+			OSTreeNode node = new OSTreeNode(i);
+			if (last == null) {
+				tree.setRoot(node);
+			} else {
+				last.setRight(node);
+				node.setFather(last);
+			}
+			last = node;
+		}
+		assertEquals(199999, tree.height(tree.getRoot()));
+		assertSame(last, tree.findMax());
+	}
+
+	private static List<Integer> collect (Iterator<SearchTreeNode> iterator) {
+		List<Integer> keys = new ArrayList<Integer>();
+		while (iterator.hasNext()) {
+			keys.add(iterator.next().getKey());
+		}
+		return keys;
+	}
+}
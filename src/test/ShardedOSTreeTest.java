@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests that the sharded OS tree answers like one tree, before and after rebalancing
+ */
+public class ShardedOSTreeTest {
+
+	@Test
+	public void answersLikeOneTree() {
+		Random random = new Random(7);
+		for (int round = 0; round < 60; round++) {
+			ShardedOSTree tree = new ShardedOSTree(1 + random.nextInt(9), 0);
+			RBOSTree reference = new RBOSTree();
+			for (int op = 0; op < 3000; op++) {
+				int key;
+				if (round % 2 == 0) {
+					key = random.nextInt(200) - 100;
+				} else {
+					key = random.nextBoolean() ? Integer.MIN_VALUE + random.nextInt(3) : Integer.MAX_VALUE - random.nextInt(3);
+				}
+				if (random.nextInt(4) > 0) {
+					tree.insert(key, null);
+					reference.insert(new OSTreeNode(key));
+				} else {
+					OSTreeNode node = (OSTreeNode) reference.find(key);
+					assertEquals(node != null, tree.delete(key));
+					if (node != null) {
+						reference.delete(node);
+					}
+				}
+				if (op % 500 == 0) {
+					tree.rebalance();
+				}
+			}
+
+			int size = OSTree.size(reference.getRoot());
+			assertEquals(size, tree.size());
+			assertNull(tree.select(0));
+			assertNull(tree.select(size + 1));
+			for (int i = 1; i <= size; i++) {
+				assertEquals(reference.select(i).getKey(), tree.select(i).getKey());
+			}
+			for (int key = -105; key < 105; key++) {
+				assertEquals(reference.rank(key), tree.rank(key));
+				assertEquals(reference.countInRange(key, key + 9), tree.countInRange(key, key + 9));
+			}
+			for (int key : new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MAX_VALUE }) {
+				assertEquals(reference.rank(key), tree.rank(key));
+			}
+
+			tree.rebalance();
+			assertEquals(size, tree.size());
+			for (int i = 1; i <= size; i++) {
+				assertEquals(reference.select(i).getKey(), tree.select(i).getKey());
+			}
+		}
+	}
+
+	@Test
+	public void backgroundRebalanceUnderConcurrentWriters() throws Exception {
+		final ShardedOSTree tree = new ShardedOSTree(8, 20);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		final int perThread = 50000;
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 4; t++) {
+				final int seed = t;
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						Random random = new Random(seed);
+						for (int i = 0; i < perThread; i++) {
+							// Skewed to the low keys, so the background rebalance has work
+							tree.insert(random.nextInt(1 << (random.nextBoolean() ? 10 : 20)), null);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(4 * perThread, tree.size());
+		int last = Integer.MIN_VALUE;
+		for (int i = 1; i <= tree.size(); i += 997) {
+			int key = tree.select(i).getKey();
+			assertTrue(key >= last);
+			assertTrue(tree.rank(key) >= i);
+			last = key;
+		}
+		tree.close();
+	}
+}
@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the sliding window against a queue of the samples
+ */
+public class SlidingWindowOSTreeTest {
+
+	@Test
+	public void agreesWithAQueueOfSamples() {
+		Random random = new Random(2);
+		for (int round = 0; round < 50; round++) {
+			long windowLength = round % 4 == 1 ? 0 : 1 + random.nextInt(500);
+			int maxSamples = round % 3 == 0 ? 0 : 1 + random.nextInt(3000);
+			SlidingWindowOSTree window = new SlidingWindowOSTree(windowLength, maxSamples);
+			ArrayDeque<long[]> samples = new ArrayDeque<long[]>();
+			long time = 0;
+			for (int i = 0; i < 5000; i++) {
+				time += random.nextInt(3);
+				int value = random.nextInt(100);
+				window.add(time, value);
+				samples.add(new long[] { time, value });
+				if (windowLength > 0) {
+					while (!samples.isEmpty() && samples.peek()[0] < time - windowLength) {
+						samples.poll();
+					}
+				}
+				if (maxSamples > 0) {
+					while (samples.size() > maxSamples) {
+						samples.poll();
+					}
+				}
+				if (random.nextInt(500) == 0) {
+					long cutoff = time - random.nextInt(50);
+					window.evictBefore(cutoff);
+					while (!samples.isEmpty() && samples.peek()[0] < cutoff) {
+						samples.poll();
+					}
+				}
+				assertEquals(samples.size(), window.size());
+
+				if (i % 97 == 0 && !samples.isEmpty()) {
+					int[] values = new int[samples.size()];
+					int j = 0;
+					for (long[] sample : samples) {
+						values[j++] = (int) sample[1];
+					}
+					Arrays.sort(values);
+					for (double q : new double[] { 0, 0.5, 0.9, 0.99, 1 }) {
+						assertEquals(values[Math.max((int) Math.ceil(q * values.length), 1) - 1], window.quantile(q));
+					}
+					assertEquals(samples.peek()[0], window.oldestTimestamp());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void samplesAtTheEdgeOfTheWindowStay() {
+		SlidingWindowOSTree window = new SlidingWindowOSTree(10, 0);
+		window.add(5, 1);
+		window.add(15, 2);
+		assertEquals(2, window.size());
+		window.add(16, 3);
+		assertEquals(2, window.size());
+		assertEquals(15, window.oldestTimestamp());
+		assertEquals(0, window.evictBefore(15));
+		assertEquals(1, window.evictBefore(16));
+		assertEquals(16, window.oldestTimestamp());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsSamplesOutOfTimeOrder() {
+		SlidingWindowOSTree window = new SlidingWindowOSTree(10, 0);
+		window.add(5, 1);
+		window.add(4, 1);
+	}
+}
@@ -0,0 +1,134 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks shared by the tree tests
+ */
+final class TreeChecks {
+
+	private TreeChecks() {
+	}
+
+	/**
+	 * Assert that the father links, the sizes and the key order of a tree are right
+	 * @param tree
+	 */
+	static void assertValid (OSTree tree) {
+		OSTreeNode root = tree.getRoot();
+		if (root != null) {
+			assertNull("root has a father", root.getFather());
+			checkSubtree(root, Long.MIN_VALUE, Long.MAX_VALUE, false, true);
+		}
+	}
+
+	/**
+	 * Assert that a tree is valid and also keeps the red-black rules
+	 * @param tree
+	 */
+	static void assertRedBlack (OSTree tree) {
+		OSTreeNode root = tree.getRoot();
+		if (root != null) {
+			assertNull("root has a father", root.getFather());
+			assertFalse("root is red", root.red);
+			checkSubtree(root, Long.MIN_VALUE, Long.MAX_VALUE, true, true);
+		}
+	}
+
+	/**
+	 * Assert that the links, sizes and colours of a tree keep the red-black rules, without
+	 * looking at the int keys, for trees whose nodes hold another kind of key
+	 * @param tree
+	 */
+	static void assertRedBlackLinks (OSTree tree) {
+		OSTreeNode root = tree.getRoot();
+		if (root != null) {
+			assertNull("root has a father", root.getFather());
+			assertFalse("root is red", root.red);
+			checkSubtree(root, Long.MIN_VALUE, Long.MAX_VALUE, true, false);
+		}
+	}
+
+	/**
+	 * Check a subtree and return its black height, the int keys are checked only if keys is true
+	 */
+	private static int checkSubtree (OSTreeNode node, long low, long high, boolean redBlack, boolean keys) {
+		if (node == null) {
+			return 1;
+		}
+		String name = keys ? "node " + node.getKey() : "node";
+		if (keys) {
+			assertTrue(name + " out of order", node.getKey() >= low && node.getKey() <= high);
+		}
+		OSTreeNode left = node.getLeft();
+		OSTreeNode right = node.getRight();
+		if (left != null) {
+			assertSame("father of the left child of " + name, node, left.getFather());
+		}
+		if (right != null) {
+			assertSame("father of the right child of " + name, node, right.getFather());
+		}
+		assertEquals("size of " + name, OSTree.size(left) + OSTree.size(right) + node.count, node.size);
+
+		int leftHeight = checkSubtree(left, low, keys ? node.getKey() : high, redBlack, keys);
+		int rightHeight = checkSubtree(right, keys ? node.getKey() : low, high, redBlack, keys);
+		if (redBlack) {
+			assertFalse(name + " is red and has a red child",
+					node.red && ((left != null && left.red) || (right != null && right.red)));
+			assertEquals("black height under " + name, leftHeight, rightHeight);
+		}
+		return leftHeight + (node.red ? 0 : 1);
+	}
+
+	/**
+	 * return the keys of a tree in order, a key once for every copy
+	 * @param tree
+	 */
+	static List<Integer> keys (OSTree tree) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (OSTreeNode node : tree.range(Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+			keys.add(node.getKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * Assert that select and rank of a tree agree with a sorted list of keys
+	 * @param expected the keys, sorted
+	 * @param tree
+	 */
+	static void assertOrder (List<Integer> expected, OSTree tree) {
+		assertEquals("size", expected.size(), OSTree.size(tree.getRoot()));
+		for (int i = 1; i <= expected.size(); i++) {
+			assertEquals("select " + i, (int) expected.get(i - 1), tree.select(i).getKey());
+		}
+		assertNull(tree.select(0));
+		assertNull(tree.select(expected.size() + 1));
+		int rank = 0;
+		for (int i = 0; i < expected.size(); i++) {
+			int key = expected.get(i);
+			while (rank < expected.size() && expected.get(rank) <= key) {
+				rank++;
+			}
+			assertEquals("rank of " + key, rank, tree.rank(key));
+		}
+	}
+
+	/**
+	 * return the number of keys in a list that are smaller than or equal to a key
+	 */
+	static int countAtMost (List<Integer> keys, int key) {
+		int count = 0;
+		for (int x : keys) {
+			if (x <= key) {
+				count++;
+			}
+		}
+		return count;
+	}
+}